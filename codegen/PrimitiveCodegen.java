@@ -0,0 +1,161 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/**
+ * Generates primitive collections from the templates in this folder:
+ * <code>Fast*Buffer</code> classes from <code>FastBuffer.template</code>,
+ * <code>*ArrayList</code> classes from <code>ArrayList.template</code> and
+ * <code>OffHeap*Array</code> classes from <code>OffHeapArray.template</code>.
+ * Generated classes are committed, so the generator has to be run only
+ * after the template is changed, from the project root:
+ * <pre>
+ * javac -d bin codegen/PrimitiveCodegen.java
+ * java -cp bin PrimitiveCodegen
+ * </pre>
+ * <p>
+ * Template placeholders: <code>$type$</code> is the primitive type, <code>$Type$</code>
+ * the capitalized type, <code>$sum$</code> the type of sums and <code>$size$</code>
+ * and <code>$shift$</code> the size of the type in bytes and its log2. Lines between
+ * <code>//#if flag</code>, optional <code>//#else</code>, and <code>//#endif</code> are
+ * included only if the type has the flag, or doesn't, when the flag is negated
+ * with <code>!</code>. Flags are the type name itself, <code>floating</code> and
+ * <code>integral</code>.
+ * <p>
+ * When the existing class contains two <code>// @@generated</code> comments, only the
+ * code between them is replaced, so hand-written code outside of them is kept.
+ * Otherwise, whole class is written, without these comments.
+ */
+public class PrimitiveCodegen {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String MARKER = "\t// @@generated\n";
+
+	private static final String[] TYPES = {"boolean", "byte", "char", "short", "int", "long", "float", "double"};
+	private static final String[] OFF_HEAP_TYPES = {"int", "long", "double"};
+
+	public static void main(String[] args) throws IOException {
+		File root = new File(args.length > 0 ? args[0] : ".");
+		File codegen = new File(root, "codegen");
+		File src = new File(root, "src");
+
+		String buffer = read(new File(codegen, "FastBuffer.template"));
+		String list = read(new File(codegen, "ArrayList.template"));
+		String offHeap = read(new File(codegen, "OffHeapArray.template"));
+
+		for (String type : TYPES) {
+			String name = capitalize(type);
+			generate(buffer, type, new File(src, "iminto/util/buffer/Fast" + name + "Buffer.java"));
+			generate(list, type, new File(src, "iminto/collection/" + name + "ArrayList.java"));
+		}
+		for (String type : OFF_HEAP_TYPES) {
+			generate(offHeap, type, new File(src, "iminto/collection/OffHeap" + capitalize(type) + "Array.java"));
+		}
+	}
+
+	/**
+	 * Generates class of the type from the template.
+	 */
+	static void generate(String template, String type, File target) throws IOException {
+		String code = preprocess(template, type);
+		code = code.replace("$type$", type);
+		code = code.replace("$Type$", capitalize(type));
+		code = code.replace("$sum$", isFloating(type) ? "double" : "long");
+		int size = sizeOf(type);
+		code = code.replace("$size$", String.valueOf(size));
+		code = code.replace("$shift$", String.valueOf(Integer.numberOfTrailingZeros(size)));
+
+		if (target.exists()) {
+			String existing = read(target);
+			int start = existing.indexOf(MARKER);
+			int end = existing.lastIndexOf(MARKER);
+			if (start != -1 && end > start) {
+				String generated = code.substring(code.indexOf(MARKER) + MARKER.length(), code.lastIndexOf(MARKER));
+				code = existing.substring(0, start + MARKER.length()) + generated + existing.substring(end);
+				write(target, code);
+				return;
+			}
+		}
+		write(target, code.replace(MARKER + "\n", ""));
+	}
+
+	/**
+	 * Resolves conditional lines of the template.
+	 */
+	static String preprocess(String template, String type) {
+		StringBuilder out = new StringBuilder(template.length());
+		boolean include = true;
+		boolean inCondition = false;
+		for (String line : template.split("\n", -1)) {
+			String trimmed = line.trim();
+			if (trimmed.startsWith("//#if ")) {
+				if (inCondition) {
+					throw new IllegalStateException("Nested condition: " + line);
+				}
+				String flag = trimmed.substring(6).trim();
+				boolean negate = flag.startsWith("!");
+				if (negate) {
+					flag = flag.substring(1);
+				}
+				include = hasFlag(type, flag) != negate;
+				inCondition = true;
+				continue;
+			}
+			if (trimmed.equals("//#else")) {
+				include = !include;
+				continue;
+			}
+			if (trimmed.equals("//#endif")) {
+				include = true;
+				inCondition = false;
+				continue;
+			}
+			if (include) {
+				out.append(line).append('\n');
+			}
+		}
+		out.setLength(out.length() - 1);
+		return out.toString();
+	}
+
+	static boolean hasFlag(String type, String flag) {
+		if (flag.equals("floating")) {
+			return isFloating(type);
+		}
+		if (flag.equals("integral")) {
+			return isFloating(type) == false && type.equals("boolean") == false;
+		}
+		return flag.equals(type);
+	}
+
+	static boolean isFloating(String type) {
+		return type.equals("float") || type.equals("double");
+	}
+
+	static int sizeOf(String type) {
+		if (type.equals("boolean") || type.equals("byte")) {
+			return 1;
+		}
+		if (type.equals("char") || type.equals("short")) {
+			return 2;
+		}
+		if (type.equals("int") || type.equals("float")) {
+			return 4;
+		}
+		return 8;
+	}
+
+	static String capitalize(String type) {
+		return Character.toUpperCase(type.charAt(0)) + type.substring(1);
+	}
+
+	static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), UTF8);
+	}
+
+	static void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(UTF8));
+		System.out.println("generated " + file.getPath());
+	}
+}
@@ -14,15 +14,29 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * Uses <code>ReentrantReadWriteLock</code> to synchronize access.
  * Since upgrading from a read lock to the write lock is not possible,
  * be careful withing {@link #get(Object)} method.
+ * <p>
+ * Objects with timeout are kept in the hierarchical timing wheel, ordered by their
+ * expiration time. {@link #pruneExpired()} only visits the wheel buckets that passed
+ * since the previous call, so removing expired objects costs in proportion to their
+ * number, not to the cache size. Objects accessed meanwhile are not expired yet and
+ * are simply rescheduled to the bucket of their new expiration time.
  */
 public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 
-	class CacheObject<K2,V2> {
+	/**
+	 * Link of the cached object in the timing wheel bucket.
+	 */
+	static class WheelNode {
+		WheelNode wheelPrev;		// null when object is not scheduled
+		WheelNode wheelNext;
+	}
+
+	class CacheObject<K2,V2> extends WheelNode {
 		CacheObject(K2 key, V2 object, long ttl) {
 			this.key = key;
 			this.cachedObject = object;
 			this.ttl = ttl;
-			this.lastAccess = System.currentTimeMillis();
+			this.lastAccess = ticker.currentTimeMillis();
 		}
 
 		final K2 key;
@@ -30,15 +44,28 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 		long lastAccess;		// time of last access
 		long accessCount;		// number of accesses
 		long ttl;				// objects timeout (time-to-live), 0 = no timeout
+		int weight;				// objects weight, 0 when cache has no weigher
 
 		boolean isExpired() {
 			if (ttl == 0) {
 				return false;
 			}
-			return lastAccess + ttl < System.currentTimeMillis();
+			return lastAccess + ttl < ticker.currentTimeMillis();
+		}
+		boolean isExpired(long now) {
+			if (ttl == 0) {
+				return false;
+			}
+			return lastAccess + ttl < now;
+		}
+		long expirationTime() {
+			return lastAccess + ttl;
 		}
-		V2 getObject() {
-			lastAccess = System.currentTimeMillis();
+		K2 getKey() {
+			return key;
+		}
+		V2 getObject(long now) {
+			lastAccess = now;
 			accessCount++;
 			return cachedObject;
 		}
@@ -53,6 +80,44 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 
 	// ---------------------------------------------------------------- properties
 
+	protected final CacheStats stats = new CacheStats(this);
+
+	/**
+	 * Returns cache statistics.
+	 */
+	public CacheStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Enables or disables collecting of cache statistics.
+	 * Statistics are enabled by default.
+	 */
+	public void setStatsEnabled(boolean enabled) {
+		stats.setEnabled(enabled);
+	}
+
+	protected Ticker ticker = Ticker.SYSTEM;
+
+	/**
+	 * Returns time source used for access times and expiration.
+	 */
+	public Ticker getTicker() {
+		return ticker;
+	}
+
+	/**
+	 * Sets time source used for access times and expiration, e.g. shared
+	 * {@link CachedTicker} or a manually advanced ticker in tests.
+	 * Should be set before the cache is used.
+	 */
+	public void setTicker(Ticker ticker) {
+		this.ticker = ticker;
+		if (wheel != null) {
+			wheelTime = ticker.currentTimeMillis();
+		}
+	}
+
 	protected int cacheSize;      // max cache size, 0 = no limit
 
 	/**
@@ -62,6 +127,29 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 		return cacheSize;
 	}
 
+	protected long maxWeight;	// max total weight, 0 = cache is limited by size
+
+	/**
+	 * Returns max total weight of cached objects or <code>0</code>
+	 * if cache is limited by the number of objects.
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	protected Weigher<K,V> weigher;		// weigher of objects, null = objects have no weight
+
+	protected volatile long totalWeight;	// total weight of cached objects
+
+	private long incomingWeight;	// weight of the object being put, counted by isFull() during prune
+
+	/**
+	 * Returns total weight of cached objects, <code>0</code> if cache has no weigher.
+	 */
+	public long getTotalWeight() {
+		return totalWeight;
+	}
+
 	protected long timeout;     // default timeout, 0 = no timeout
 
 	/**
@@ -89,6 +177,13 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 
 	// ---------------------------------------------------------------- put
 
+	/**
+	 * Creates new cache object. Implementations may return their
+	 * own <code>CacheObject</code> subclass to keep eviction data in it.
+	 */
+	protected CacheObject<K,V> createCacheObject(K key, V object, long timeout) {
+		return new CacheObject<K,V>(key, object, timeout);
+	}
 
 	/**
 	 * {@inheritDoc}
@@ -100,21 +195,52 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 
 	/**
 	 * {@inheritDoc}
+	 * When cache is limited by weight, objects are removed before the new object is added,
+	 * until there is enough room for its weight. Object heavier than the max weight is not cached.
 	 */
 	public void put(K key, V object, long timeout) {
+		int weight = 0;
+		if (weigher != null) {
+			weight = weigher.weigh(key, object);
+			if (weight < 0) {
+				throw new IllegalArgumentException("Negative weight: " + weight);
+			}
+		}
 		writeLock.lock();
 
 		try {
-			CacheObject<K,V> co = new CacheObject<K,V>(key, object, timeout);
+			CacheObject<K,V> co = createCacheObject(key, object, timeout);
+			co.weight = weight;
 			if (timeout != 0) {
 				existCustomTimeout = true;
 			}
+			if (maxWeight != 0 && weight > maxWeight) {
+				// object never fits, cached object of the same key is stale
+				CacheObject<K,V> old = cacheMap.remove(key);
+				if (old != null) {
+					totalWeight -= old.weight;
+					unschedule(old);
+					stats.recordRemoval(1);
+				}
+				stats.recordSizeEviction(1);
+				stats.recordEvictedWeight(weight);
+				return;
+			}
+			incomingWeight = weight;
 			if (isFull()) {
-				pruneCache();
+				doPrune();
 			}
-			cacheMap.put(key, co);
+			incomingWeight = 0;
+			CacheObject<K,V> old = cacheMap.put(key, co);
+			totalWeight += weight;
+			if (old != null) {
+				totalWeight -= old.weight;
+				unschedule(old);
+			}
+			schedule(co);
 		}
 		finally {
+			incomingWeight = 0;
 			writeLock.unlock();
 		}
 	}
@@ -122,49 +248,75 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 
 	// ---------------------------------------------------------------- get
 
-	protected int hitCount;
-	protected int missCount;
-
 	/**
 	 * Returns hit count.
 	 */
 	public int getHitCount() {
-		return hitCount;
+		return (int) stats.getHitCount();
 	}
 
 	/**
 	 * Returns miss count.
 	 */
 	public int getMissCount() {
-		return missCount;
+		return (int) stats.getMissCount();
+	}
+
+	/**
+	 * Returns <code>true</code> if accessing the cached object modifies
+	 * internal cache structures, so {@link #get(Object)} has to
+	 * acquire the write lock. By default, <code>get</code> uses the read lock.
+	 */
+	protected boolean isGetExclusive() {
+		return false;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public V get(K key) {
-		readLock.lock();
+		Lock lock = isGetExclusive() ? writeLock : readLock;
+		lock.lock();
 
+		CacheObject<K,V> co;
 		try {
-			CacheObject<K,V> co = cacheMap.get(key);
+			co = cacheMap.get(key);
 			if (co == null) {
-				missCount++;
+				stats.recordMiss();
 				return null;
 			}
-			if (co.isExpired() == true) {
-				// remove(key);		// can't upgrade the lock
+			long now = ticker.currentTimeMillis();
+			if (co.isExpired(now) == false) {
+				stats.recordHit();
+				return co.getObject(now);
+			}
+			stats.recordMiss();
+			if (lock == writeLock) {
 				cacheMap.remove(key);
-
-				missCount++;
+				totalWeight -= co.weight;
+				unschedule(co);
+				stats.recordExpiration(1);
 				return null;
 			}
+		}
+		finally {
+			lock.unlock();
+		}
 
-			hitCount++;
-			return co.getObject();
+		// expired object found under the read lock, which can't be upgraded
+		writeLock.lock();
+		try {
+			if (cacheMap.get(key) == co) {
+				cacheMap.remove(key);
+				totalWeight -= co.weight;
+				unschedule(co);
+				stats.recordExpiration(1);
+			}
 		}
 		finally {
-			readLock.unlock();
+			writeLock.unlock();
 		}
+		return null;
 	}
 
 	/**
@@ -174,20 +326,206 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 		return new CacheValuesIterator<V>(this);
 	}
 
+	// ---------------------------------------------------------------- wheel
+
+	/**
+	 * Bucket time spans, as bit shifts of milliseconds: 64ms, ~4s, ~4.4min, ~2.3h and ~9.3h.
+	 */
+	private static final int[] SHIFTS = new int[] {6, 12, 18, 23, 25};
+
+	/**
+	 * Number of buckets on each wheel. Each wheel covers one bucket of the next wheel,
+	 * the last wheel has a single bucket for all the remaining objects.
+	 */
+	private static final int[] BUCKETS = new int[] {64, 64, 32, 4, 1};
+
+	private WheelNode[][] wheel;		// created for the first object with timeout
+	private long wheelTime;
+
+	/**
+	 * Returns <code>true</code> if objects with timeout are scheduled in the timing wheel.
+	 * Caches that can't keep strong references to their objects should return
+	 * <code>false</code> and find expired objects by themselves.
+	 */
+	protected boolean isExpirationScheduled() {
+		return true;
+	}
+
+	/**
+	 * Creates wheel buckets, each one with the sentinel of its circular list.
+	 */
+	private WheelNode[][] createWheel() {
+		WheelNode[][] buckets = new WheelNode[BUCKETS.length][];
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new WheelNode[BUCKETS[i]];
+			for (int j = 0; j < BUCKETS[i]; j++) {
+				WheelNode sentinel = new WheelNode();
+				sentinel.wheelPrev = sentinel.wheelNext = sentinel;
+				buckets[i][j] = sentinel;
+			}
+		}
+		wheelTime = ticker.currentTimeMillis();
+		return buckets;
+	}
+
+	/**
+	 * Adds object to the bucket of its expiration time. Objects
+	 * without timeout are not scheduled, since they never expire.
+	 */
+	void schedule(CacheObject<K,V> co) {
+		if (co.ttl == 0 || isExpirationScheduled() == false) {
+			return;
+		}
+		if (wheel == null) {
+			wheel = createWheel();
+		}
+		long time = Math.max(co.expirationTime(), wheelTime);
+		long duration = time - wheelTime;
+
+		WheelNode sentinel = null;
+		for (int i = 0; i < SHIFTS.length - 1; i++) {
+			if (duration < (1L << SHIFTS[i + 1])) {
+				int index = (int) ((time >>> SHIFTS[i]) & (BUCKETS[i] - 1));
+				sentinel = wheel[i][index];
+				break;
+			}
+		}
+		if (sentinel == null) {
+			sentinel = wheel[SHIFTS.length - 1][0];
+		}
+
+		co.wheelNext = sentinel;
+		co.wheelPrev = sentinel.wheelPrev;
+		sentinel.wheelPrev.wheelNext = co;
+		sentinel.wheelPrev = co;
+	}
+
+	/**
+	 * Removes object from its bucket, if scheduled. Must be invoked
+	 * for every object removed from the cache map.
+	 */
+	void unschedule(WheelNode co) {
+		if (co.wheelPrev == null) {
+			return;
+		}
+		co.wheelPrev.wheelNext = co.wheelNext;
+		co.wheelNext.wheelPrev = co.wheelPrev;
+		co.wheelPrev = co.wheelNext = null;
+	}
+
+	/**
+	 * Removes expired objects from the cache. The wheel is advanced to the current
+	 * time and all buckets that passed since the previous advance are processed:
+	 * expired objects are removed and the others are rescheduled.
+	 * Returns the number of removed objects.
+	 */
+	protected int pruneExpired() {
+		if (wheel == null) {
+			return 0;
+		}
+		long previousTime = wheelTime;
+		long currentTime = ticker.currentTimeMillis();
+		wheelTime = currentTime;
+
+		int count = 0;
+		for (int i = 0; i < SHIFTS.length; i++) {
+			long previousTicks = previousTime >>> SHIFTS[i];
+			long delta = (currentTime >>> SHIFTS[i]) - previousTicks;
+			if (delta <= 0) {
+				break;
+			}
+			count += expire(wheel[i], previousTicks, delta);
+		}
+		return count;
+	}
+
+	/**
+	 * Processes buckets of the single wheel.
+	 */
+	private int expire(WheelNode[] buckets, long previousTicks, long delta) {
+		int mask = buckets.length - 1;
+		int steps = (int) Math.min(1 + delta, buckets.length);
+		int start = (int) (previousTicks & mask);
+
+		int count = 0;
+		for (int i = start; i < start + steps; i++) {
+			WheelNode sentinel = buckets[i & mask];
+			WheelNode node = sentinel.wheelNext;
+			sentinel.wheelPrev = sentinel.wheelNext = sentinel;
+
+			while (node != sentinel) {
+				WheelNode next = node.wheelNext;
+				node.wheelPrev = node.wheelNext = null;
+				@SuppressWarnings("unchecked")
+				CacheObject<K,V> co = (CacheObject<K,V>) node;
+				if (co.isExpired(wheelTime) == true) {
+					removeExpired(co);
+					count++;
+				} else {
+					schedule(co);
+				}
+				node = next;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Removes expired object found in the timing wheel.
+	 */
+	void removeExpired(CacheObject<K,V> co) {
+		cacheMap.remove(co.getKey());
+		totalWeight -= co.weight;
+		stats.recordExpiration(1);
+	}
+
 	// ---------------------------------------------------------------- prune
 
 	/**
-	 * Prune implementation.
+	 * Prune implementation. Implementations should record removed
+	 * objects in {@link #stats} by the cause of removal.
 	 */
 	protected abstract int pruneCache();
 
+	/**
+	 * Removes objects in the order of the cache map iteration, as long as the
+	 * cache is full. Returns the number of removed objects.
+	 */
+	protected int evictWhileFull() {
+		int count = 0;
+		Iterator<CacheObject<K,V>> values = cacheMap.values().iterator();
+		while (isFull() && values.hasNext()) {
+			CacheObject<K,V> co = values.next();
+			values.remove();
+			totalWeight -= co.weight;
+			unschedule(co);
+			count++;
+			stats.recordSizeEviction(1);
+			stats.recordEvictedWeight(co.weight);
+		}
+		return count;
+	}
+
+	/**
+	 * Invokes {@link #pruneCache()} and records its duration.
+	 */
+	private int doPrune() {
+		if (stats.isEnabled() == false) {
+			return pruneCache();
+		}
+		long start = System.nanoTime();
+		int count = pruneCache();
+		stats.recordPrune(System.nanoTime() - start);
+		return count;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public final int prune() {
 		writeLock.lock();
 		try {
-			return pruneCache();
+			return doPrune();
 		}
 		finally {
 			writeLock.unlock();
@@ -197,9 +535,14 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 	// ---------------------------------------------------------------- common
 
 	/**
-	 * {@inheritDoc}
+	 * Returns <code>true</code> if cache is full. When cache is limited
+	 * by weight, returns <code>true</code> only when max weight is exceeded;
+	 * during prune invoked by <code>put</code>, the weight of the new object is counted in.
 	 */
 	public boolean isFull() {
+		if (maxWeight != 0) {
+			return totalWeight + incomingWeight > maxWeight;
+		}
 		if (cacheSize == 0) {
 			return false;
 		}
@@ -212,7 +555,12 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 	public void remove(K key) {
 		writeLock.lock();
 		try {
-			cacheMap.remove(key);
+			CacheObject<K,V> co = cacheMap.remove(key);
+			if (co != null) {
+				totalWeight -= co.weight;
+				unschedule(co);
+				stats.recordRemoval(1);
+			}
 		}
 		finally {
 			writeLock.unlock();
@@ -225,7 +573,12 @@ public abstract class AbstractCacheMap<K,V> implements Cache<K,V> {
 	public void clear() {
 		writeLock.lock();
 		try {
+			stats.recordRemoval(cacheMap.size());
 			cacheMap.clear();
+			totalWeight = 0;
+			if (wheel != null) {
+				wheel = createWheel();
+			}
 		}
 		finally {
 			writeLock.unlock();
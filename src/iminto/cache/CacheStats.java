@@ -0,0 +1,276 @@
+package iminto.cache;
+import iminto.collection.StripedCounter;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Cache statistics: hits, misses, removed objects by the cause and prune times.
+ * Counters are striped, so collecting statistics adds little contention to
+ * concurrent cache access. When disabled, nothing is recorded.
+ * <p>
+ * Statistics may be registered as MBean in the platform MBean server, so
+ * they can be read remotely, e.g. with <code>JmxClient</code>.
+ */
+public class CacheStats implements CacheStatsMBean {
+
+	/**
+	 * Domain of cache MBeans names.
+	 */
+	public static final String JMX_DOMAIN = "iminto.cache";
+
+	protected final Cache<?, ?> cache;
+	protected volatile boolean enabled = true;
+
+	protected final StripedCounter hitCount = new StripedCounter();
+	protected final StripedCounter missCount = new StripedCounter();
+	protected final StripedCounter sizeEvictionCount = new StripedCounter();
+	protected final StripedCounter evictedWeight = new StripedCounter();
+	protected final StripedCounter expirationCount = new StripedCounter();
+	protected final StripedCounter removalCount = new StripedCounter();
+	protected final StripedCounter pruneCount = new StripedCounter();
+	protected final StripedCounter pruneTime = new StripedCounter();
+
+	protected ObjectName objectName;
+
+	public CacheStats(Cache<?, ?> cache) {
+		this.cache = cache;
+	}
+
+	// ---------------------------------------------------------------- record
+
+	public void recordHit() {
+		if (enabled) {
+			hitCount.increment();
+		}
+	}
+
+	public void recordMiss() {
+		if (enabled) {
+			missCount.increment();
+		}
+	}
+
+	/**
+	 * Records objects removed to make a room for the new ones.
+	 */
+	public void recordSizeEviction(int count) {
+		if (enabled && count != 0) {
+			sizeEvictionCount.add(count);
+		}
+	}
+
+	/**
+	 * Records total weight of objects removed to make a room for the new ones.
+	 */
+	public void recordEvictedWeight(long weight) {
+		if (enabled && weight != 0) {
+			evictedWeight.add(weight);
+		}
+	}
+
+	/**
+	 * Records removed expired objects.
+	 */
+	public void recordExpiration(int count) {
+		if (enabled && count != 0) {
+			expirationCount.add(count);
+		}
+	}
+
+	/**
+	 * Records objects removed explicitly, by <code>remove</code> or <code>clear</code>.
+	 */
+	public void recordRemoval(int count) {
+		if (enabled && count != 0) {
+			removalCount.add(count);
+		}
+	}
+
+	/**
+	 * Records prune duration, in nanoseconds.
+	 */
+	public void recordPrune(long nanos) {
+		if (enabled) {
+			pruneCount.increment();
+			pruneTime.add(nanos);
+		}
+	}
+
+	// ---------------------------------------------------------------- read
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables statistics. Collected values are kept.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns current number of cached objects.
+	 */
+	public int getSize() {
+		return cache.size();
+	}
+
+	/**
+	 * Returns max cache size, <code>0</code> for no limit.
+	 */
+	public int getCacheSize() {
+		return cache.getCacheSize();
+	}
+
+	/**
+	 * Returns total weight of cached objects, <code>0</code> if cache objects are not weighted.
+	 */
+	public long getTotalWeight() {
+		if (cache instanceof AbstractCacheMap) {
+			return ((AbstractCacheMap<?, ?>) cache).getTotalWeight();
+		}
+		if (cache instanceof OffHeapCache) {
+			return ((OffHeapCache<?, ?>) cache).getTotalWeight();
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns max total weight, <code>0</code> if cache is not limited by weight.
+	 */
+	public long getMaxWeight() {
+		if (cache instanceof AbstractCacheMap) {
+			return ((AbstractCacheMap<?, ?>) cache).getMaxWeight();
+		}
+		if (cache instanceof OffHeapCache) {
+			return ((OffHeapCache<?, ?>) cache).getCapacity();
+		}
+		return 0;
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * Returns hits divided by all gets, or <code>0</code> if there were no gets.
+	 */
+	public double getHitRatio() {
+		long hits = hitCount.sum();
+		long total = hits + missCount.sum();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	public long getSizeEvictionCount() {
+		return sizeEvictionCount.sum();
+	}
+
+	/**
+	 * Returns total weight of objects removed to make a room for the new ones.
+	 */
+	public long getEvictedWeight() {
+		return evictedWeight.sum();
+	}
+
+	public long getExpirationCount() {
+		return expirationCount.sum();
+	}
+
+	public long getRemovalCount() {
+		return removalCount.sum();
+	}
+
+	public long getPruneCount() {
+		return pruneCount.sum();
+	}
+
+	/**
+	 * Returns total prune time, in nanoseconds.
+	 */
+	public long getPruneTime() {
+		return pruneTime.sum();
+	}
+
+	/**
+	 * Returns average prune time, in nanoseconds.
+	 */
+	public long getAveragePruneTime() {
+		long count = pruneCount.sum();
+		return count == 0 ? 0 : pruneTime.sum() / count;
+	}
+
+	/**
+	 * Resets all counters.
+	 */
+	public void reset() {
+		hitCount.reset();
+		missCount.reset();
+		sizeEvictionCount.reset();
+		evictedWeight.reset();
+		expirationCount.reset();
+		removalCount.reset();
+		pruneCount.reset();
+		pruneTime.reset();
+	}
+
+	// ---------------------------------------------------------------- jmx
+
+	/**
+	 * Registers statistics in the platform MBean server as
+	 * <code>iminto.cache:type=Cache,name=&lt;name&gt;</code> and returns the MBean name.
+	 */
+	public synchronized ObjectName registerMBean(String name) {
+		try {
+			ObjectName newName = new ObjectName(JMX_DOMAIN + ":type=Cache,name=" + name);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (objectName != null) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(this, newName);
+			objectName = newName;
+			return objectName;
+		} catch (JMException jmex) {
+			throw new IllegalArgumentException("Unable to register cache MBean: " + name, jmex);
+		}
+	}
+
+	/**
+	 * Unregisters statistics from the platform MBean server, if registered.
+	 */
+	public synchronized void unregisterMBean() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException jmex) {
+			throw new IllegalStateException(jmex);
+		} finally {
+			objectName = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats{size=" + getSize() +
+				", totalWeight=" + getTotalWeight() +
+				", hits=" + getHitCount() +
+				", misses=" + getMissCount() +
+				", sizeEvictions=" + getSizeEvictionCount() +
+				", evictedWeight=" + getEvictedWeight() +
+				", expirations=" + getExpirationCount() +
+				", removals=" + getRemovalCount() +
+				", prunes=" + getPruneCount() +
+				", pruneTime=" + getPruneTime() + "ns}";
+	}
+}
@@ -0,0 +1,41 @@
+package iminto.cache;
+
+/**
+ * Management interface of {@link CacheStats}.
+ */
+public interface CacheStatsMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	int getSize();
+
+	int getCacheSize();
+
+	long getTotalWeight();
+
+	long getMaxWeight();
+
+	long getHitCount();
+
+	long getMissCount();
+
+	double getHitRatio();
+
+	long getSizeEvictionCount();
+
+	long getEvictedWeight();
+
+	long getExpirationCount();
+
+	long getRemovalCount();
+
+	long getPruneCount();
+
+	long getPruneTime();
+
+	long getAveragePruneTime();
+
+	void reset();
+}
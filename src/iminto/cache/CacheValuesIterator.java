@@ -10,7 +10,12 @@ public class CacheValuesIterator<V> implements Iterator<V> {
 
 	private AbstractCacheMap<?,V>.CacheObject<?,V> nextValue;
 
+	private AbstractCacheMap<?,V>.CacheObject<?,V> lastRead;
+
+	private final AbstractCacheMap<?,V> cache;
+
 	CacheValuesIterator(AbstractCacheMap<?,V> abstractCacheMap) {
+		cache = abstractCacheMap;
 		iterator = abstractCacheMap.cacheMap.values().iterator();
 		nextValue();
 	}
@@ -21,6 +26,7 @@ public class CacheValuesIterator<V> implements Iterator<V> {
 	private void nextValue() {
 		while (iterator.hasNext()) {
 			nextValue = iterator.next();
+			lastRead = nextValue;
 			if (nextValue.isExpired() == false) {
 				return;
 			}
@@ -49,5 +55,7 @@ public class CacheValuesIterator<V> implements Iterator<V> {
 	 */
 	public void remove() {
 		iterator.remove();
+		cache.totalWeight -= lastRead.weight;
+		cache.unschedule(lastRead);
 	}
 }
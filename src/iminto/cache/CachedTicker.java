@@ -0,0 +1,72 @@
+package iminto.cache;
+
+/**
+ * Coarse time source. Current time is read by the background daemon thread
+ * in fixed intervals and cached in a volatile field, so reading the time
+ * costs only a memory read. Time precision is the update interval.
+ * One instance may be shared by many caches; it has to be stopped when
+ * it is no longer used.
+ */
+public class CachedTicker implements Ticker {
+
+	protected volatile long now;
+	protected volatile boolean running;
+	protected final long interval;
+	protected final Thread updater;
+
+	/**
+	 * Creates cached ticker updated every millisecond.
+	 */
+	public CachedTicker() {
+		this(1);
+	}
+
+	/**
+	 * Creates and starts cached ticker updated in given interval, in milliseconds.
+	 */
+	public CachedTicker(long interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Invalid interval: " + interval);
+		}
+		this.interval = interval;
+		this.now = System.currentTimeMillis();
+		this.running = true;
+		this.updater = new Thread("CachedTicker") {
+			@Override
+			public void run() {
+				while (running) {
+					now = System.currentTimeMillis();
+					try {
+						Thread.sleep(CachedTicker.this.interval);
+					} catch (InterruptedException ignore) {
+						return;
+					}
+				}
+			}
+		};
+		updater.setDaemon(true);
+		updater.start();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long currentTimeMillis() {
+		return now;
+	}
+
+	/**
+	 * Returns update interval.
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Stops background updates. Time is not updated after this call.
+	 */
+	public void stop() {
+		running = false;
+		updater.interrupt();
+	}
+}
@@ -0,0 +1,261 @@
+package iminto.cache;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Lock-striped cache. Keys are hashed to a fixed number of independent segments,
+ * each one being a regular {@link Cache} with its own eviction policy, lock and
+ * size limit (<code>cacheSize</code> split evenly between segments). Threads that
+ * work on different segments never contend with each other.
+ * <p>
+ * Access to each segment is serialized on the segment itself, so segments do not
+ * have to be safe for concurrent reads: this is required for access-ordered
+ * caches, like {@link LRUCache}, where <code>get</code> modifies the structure.
+ * <p>
+ * Eviction semantics are preserved per segment only: the evicted element is the
+ * least recently (or frequently) used element of its own segment, not of the
+ * whole cache.
+ */
+public class ConcurrentCache<K, V> implements Cache<K, V> {
+
+	/**
+	 * Factory of cache segments.
+	 */
+	public interface SegmentFactory<K, V> {
+
+		/**
+		 * Creates new cache segment of given size and default timeout.
+		 */
+		Cache<K, V> createSegment(int segmentSize, long timeout);
+	}
+
+	/**
+	 * Creates new striped LRU cache.
+	 */
+	public static <K, V> ConcurrentCache<K, V> lru(int cacheSize, long timeout, int concurrencyLevel) {
+		return new ConcurrentCache<K, V>(cacheSize, timeout, concurrencyLevel, new SegmentFactory<K, V>() {
+			public Cache<K, V> createSegment(int segmentSize, long timeout) {
+				return new LRUCache<K, V>(segmentSize, timeout);
+			}
+		});
+	}
+
+	/**
+	 * Creates new striped LFU cache.
+	 */
+	public static <K, V> ConcurrentCache<K, V> lfu(int cacheSize, long timeout, int concurrencyLevel) {
+		return new ConcurrentCache<K, V>(cacheSize, timeout, concurrencyLevel, new SegmentFactory<K, V>() {
+			public Cache<K, V> createSegment(int segmentSize, long timeout) {
+				return new LFUCache<K, V>(segmentSize, timeout);
+			}
+		});
+	}
+
+	/**
+	 * Creates new striped FIFO cache.
+	 */
+	public static <K, V> ConcurrentCache<K, V> fifo(int cacheSize, long timeout, int concurrencyLevel) {
+		return new ConcurrentCache<K, V>(cacheSize, timeout, concurrencyLevel, new SegmentFactory<K, V>() {
+			public Cache<K, V> createSegment(int segmentSize, long timeout) {
+				return new FIFOCache<K, V>(segmentSize, timeout);
+			}
+		});
+	}
+
+	protected final Cache<K, V>[] segments;
+	protected final int segmentMask;
+	protected final int cacheSize;
+	protected final long timeout;
+
+	/**
+	 * Creates new striped cache. Number of segments is the smallest power of two
+	 * not less than <code>concurrencyLevel</code>.
+	 */
+	public ConcurrentCache(int cacheSize, long timeout, int concurrencyLevel, SegmentFactory<K, V> segmentFactory) {
+		if (concurrencyLevel <= 0) {
+			throw new IllegalArgumentException("Invalid concurrency level: " + concurrencyLevel);
+		}
+		int segmentCount = 1;
+		while (segmentCount < concurrencyLevel) {
+			segmentCount <<= 1;
+		}
+		if (cacheSize != 0) {
+			while (segmentCount > 1 && segmentCount > cacheSize) {
+				segmentCount >>= 1;
+			}
+		}
+		this.cacheSize = cacheSize;
+		this.timeout = timeout;
+		this.segmentMask = segmentCount - 1;
+		this.segments = newSegments(segmentCount);
+
+		int segmentSize = cacheSize / segmentCount;
+		int remainder = cacheSize % segmentCount;
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = segmentFactory.createSegment(i < remainder ? segmentSize + 1 : segmentSize, timeout);
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <K, V> Cache<K, V>[] newSegments(int segmentCount) {
+		return new Cache[segmentCount];
+	}
+
+	/**
+	 * Returns segment for given key. Hash is spread so that keys with
+	 * poor hash codes are still distributed across all segments.
+	 */
+	protected Cache<K, V> segmentFor(Object key) {
+		int h = key == null ? 0 : key.hashCode();
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return segments[h & segmentMask];
+	}
+
+	/**
+	 * Returns number of segments.
+	 */
+	public int getSegmentCount() {
+		return segments.length;
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCacheTimeout() {
+		return timeout;
+	}
+
+	// ---------------------------------------------------------------- access
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void put(K key, V object) {
+		Cache<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			segment.put(key, object);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void put(K key, V object, long timeout) {
+		Cache<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			segment.put(key, object, timeout);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public V get(K key) {
+		Cache<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.get(key);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void remove(K key) {
+		Cache<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			segment.remove(key);
+		}
+	}
+
+	/**
+	 * Returns iterator over the snapshot of non-expired values.
+	 * Segments are copied one by one, so the snapshot is not atomic
+	 * across the whole cache.
+	 */
+	public Iterator<V> iterator() {
+		List<V> values = new ArrayList<V>();
+		for (Cache<K, V> segment : segments) {
+			synchronized (segment) {
+				Iterator<V> iterator = segment.iterator();
+				while (iterator.hasNext()) {
+					values.add(iterator.next());
+				}
+			}
+		}
+		return values.iterator();
+	}
+
+	// ---------------------------------------------------------------- common
+
+	/**
+	 * Prunes all segments and returns the total number of removed objects.
+	 */
+	public int prune() {
+		int count = 0;
+		for (Cache<K, V> segment : segments) {
+			synchronized (segment) {
+				count += segment.prune();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isFull() {
+		if (cacheSize == 0) {
+			return false;
+		}
+		return size() >= cacheSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void clear() {
+		for (Cache<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the sum of segment sizes.
+	 */
+	public int size() {
+		int size = 0;
+		for (Cache<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isEmpty() {
+		for (Cache<K, V> segment : segments) {
+			synchronized (segment) {
+				if (segment.isEmpty() == false) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
@@ -1,6 +1,5 @@
 package iminto.cache;
 import java.util.LinkedHashMap;
-import java.util.Iterator;
 
 /**
  * FIFO (first in first out) cache.
@@ -21,7 +20,16 @@ public class FIFOCache<K, V> extends AbstractCacheMap<K, V> {
 	}
 
 	/**
-	 * Creates a new LRU cache.
+	 * Creates a new FIFO cache limited by the total weight of objects.
+	 */
+	public FIFOCache(long maxWeight, Weigher<K, V> weigher, long timeout) {
+		this(0, timeout);
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Creates a new FIFO cache.
 	 */
 	public FIFOCache(int cacheSize, long timeout) {
 		this.cacheSize = cacheSize;
@@ -30,29 +38,12 @@ public class FIFOCache<K, V> extends AbstractCacheMap<K, V> {
 	}
 
 	/**
-	 * Prune expired objects and, if cache is still full, the first one.
+	 * Prune expired objects and, if cache is still full, the first ones.
 	 */
 	@Override
 	protected int pruneCache() {
-        int count = 0;
-		CacheObject<K,V> first = null;
-		Iterator<CacheObject<K,V>> values = cacheMap.values().iterator();
-		while (values.hasNext()) {
-			CacheObject<K,V> co = values.next();
-			if (co.isExpired() == true) {
-				values.remove();
-				count++;
-			}
-			if (first == null) {
-				first = co;
-			}
-		}
-		if (isFull()) {
-			if (first != null) {
-				cacheMap.remove(first.key);
-				count++;
-			}
-		}
+		int count = pruneExpired();
+		count += evictWhileFull();
 		return count;
 	}
 }
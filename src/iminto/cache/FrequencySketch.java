@@ -0,0 +1,117 @@
+package iminto.cache;
+
+/**
+ * Count-min sketch of access frequencies, used as admission filter by
+ * {@link TinyLFUCache}. Counters are 4 bits wide (max 15), packed sixteen
+ * in one <code>long</code>, and each key is counted in four of them.
+ * Memory is bounded by the cache size: about 8 bytes per cached element.
+ * <p>
+ * When the number of increments reaches the sample size (10 times the
+ * cache size), all counters are halved, so the old popularity fades away
+ * and the sketch adapts to the changing access patterns.
+ */
+class FrequencySketch {
+
+	private static final long[] SEEDS = new long[] {
+			0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+	private int size;
+
+	/**
+	 * Creates new sketch for the cache of given maximum size.
+	 */
+	FrequencySketch(int maximumSize) {
+		int capacity = 8;
+		while (capacity < maximumSize && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		table = new long[capacity];
+		tableMask = capacity - 1;
+		sampleSize = maximumSize <= 0 ? 10 * capacity : 10 * maximumSize;
+	}
+
+	/**
+	 * Returns estimated number of occurrences of the key, up to 15.
+	 */
+	int frequency(Object key) {
+		int hash = spread(key);
+		int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	/**
+	 * Increments popularity of the key, if it is not already at maximum.
+	 * Ages all counters when the sample size is reached.
+	 */
+	void increment(Object key) {
+		int hash = spread(key);
+		int start = (hash & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+		if (added && (++size == sampleSize)) {
+			reset();
+		}
+	}
+
+	/**
+	 * Increments the counter at given table index and counter offset.
+	 */
+	private boolean incrementAt(int i, int j) {
+		int offset = j << 2;
+		long mask = 0xfL << offset;
+		if ((table[i] & mask) != mask) {
+			table[i] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Halves all counters. Odd counters lose their remainder, what is
+	 * compensated in the sample size.
+	 */
+	void reset() {
+		int count = 0;
+		for (int i = 0; i < table.length; i++) {
+			count += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size = (size >>> 1) - (count >>> 2);
+	}
+
+	/**
+	 * Clears all counters.
+	 */
+	void clear() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = 0;
+		}
+		size = 0;
+	}
+
+	private int indexOf(int hash, int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return ((int) h) & tableMask;
+	}
+
+	private static int spread(Object key) {
+		int x = key == null ? 0 : key.hashCode();
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+}
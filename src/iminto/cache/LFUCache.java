@@ -1,85 +1,264 @@
 package iminto.cache;
 import java.util.HashMap;
-import java.util.Iterator;
 
 /**
  * LFU (least frequently used) cache. Frequency is calculated as access count. This cache
  * is resistant on 'new usages scenario': when some object is removed from the cache,
- * access count of all items in cache is decreased by access count of removed value.
+ * new objects start with the access count of the removed object instead of zero.
  * This allows new frequent elements to come into the cache.
  * <p>
  * Frequency of use data is kept on all items. The most frequently used items are kept in the cache.
- * Because of the bookkeeping requirements, cache access overhead increases logarithmically with cache size.
+ * Items are kept in a list of frequency buckets, ordered by access count; each bucket holds items
+ * with the same access count, in order of their last access. Therefore both access and eviction
+ * of the least frequently used item take constant time, regardless of the size of the cache.
  * The advantage is that long term usage patterns are captured well, incidentally making the algorithm scan resistant;
- * the disadvantage, besides the larger access overhead, is that the algorithm doesn't adapt quickly to changing
+ * the disadvantage is that the algorithm doesn't adapt quickly to changing
  * usage patterns, and in particular doesn't help with temporally clustered accesses.
  * <p>
- * Summary for LFU: not fast, captures frequency of use, scan resistant.
+ * Summary for LFU: fast, captures frequency of use, scan resistant.
  */
 public class LFUCache<K,V> extends AbstractCacheMap<K,V> {
 
+	/**
+	 * Bucket of cached objects with the same access count.
+	 */
+	class FrequencyNode {
+		FrequencyNode(long frequency) {
+			this.frequency = frequency;
+		}
+
+		final long frequency;
+		FrequencyNode prev;
+		FrequencyNode next;
+		LFUCacheObject first;	// least recently accessed object
+		LFUCacheObject last;	// most recently accessed object
+	}
+
+	/**
+	 * Cached object linked into its frequency bucket.
+	 */
+	class LFUCacheObject extends CacheObject<K,V> {
+		LFUCacheObject(K key, V object, long ttl) {
+			super(key, object, ttl);
+		}
+
+		FrequencyNode node;
+		LFUCacheObject prev;
+		LFUCacheObject next;
+
+		@Override
+		V getObject(long now) {
+			V object = super.getObject(now);
+			incrementFrequency(this);
+			return object;
+		}
+	}
+
+	/**
+	 * Bucket with the lowest access count, <code>null</code> when cache is empty.
+	 */
+	protected FrequencyNode head;
+
+	/**
+	 * Access count of the last evicted object. New objects start from this value,
+	 * which ages all existing objects at once, without updating them.
+	 */
+	protected long minAccessCount;
+
 	public LFUCache(int maxSize) {
 		this(maxSize, 0);
 	}
 
+	/**
+	 * Creates a new LFU cache limited by the total weight of objects.
+	 */
+	public LFUCache(long maxWeight, Weigher<K,V> weigher, long timeout) {
+		this(0, timeout);
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
 	public LFUCache(int maxSize, long timeout) {
 		this.cacheSize = maxSize;
 		this.timeout = timeout;
-		cacheMap = new HashMap<K, CacheObject<K,V>>(maxSize + 1);
+		cacheMap = new HashMap<K, CacheObject<K,V>>(maxSize + 1) {
+			@Override
+			public CacheObject<K,V> put(K key, CacheObject<K,V> value) {
+				CacheObject<K,V> old = super.put(key, value);
+				if (old != null) {
+					unlink((LFUCacheObject) old);
+				}
+				link((LFUCacheObject) value);
+				return old;
+			}
+
+			@Override
+			public CacheObject<K,V> remove(Object key) {
+				CacheObject<K,V> old = super.remove(key);
+				if (old != null) {
+					unlink((LFUCacheObject) old);
+				}
+				return old;
+			}
+
+			@Override
+			public void clear() {
+				super.clear();
+				head = null;
+			}
+		};
+	}
+
+	@Override
+	protected CacheObject<K,V> createCacheObject(K key, V object, long timeout) {
+		LFUCacheObject co = new LFUCacheObject(key, object, timeout);
+		co.accessCount = minAccessCount;
+		return co;
 	}
 
 	/**
-	 * Prunes expired and, if cache is still full, the LFU element(s) from the cache.
-	 * On LFU removal, access count is normalized to value which had removed object.
-	 * Returns the number of removed objects.
+	 * Access count is updated on each hit, so <code>get</code> requires the write lock.
 	 */
 	@Override
-	protected int pruneCache() {
-        int count = 0;
-		CacheObject<K,V> comin = null;
-
-		// remove expired items and find cached object with minimal access count
-		Iterator<CacheObject<K,V>> values = cacheMap.values().iterator();
-		while (values.hasNext()) {
-			CacheObject<K,V> co = values.next();
-			if (co.isExpired() == true) {
-				values.remove();
-				onRemove(co.key, co.cachedObject);
-				count++;
-				continue;
+	protected boolean isGetExclusive() {
+		return true;
+	}
+
+	// ---------------------------------------------------------------- frequency list
+
+	/**
+	 * Links new object into the bucket of its access count. Since new objects start
+	 * with the lowest access count in the cache, the bucket is always the head one.
+	 */
+	void link(LFUCacheObject co) {
+		FrequencyNode node = head;
+		if (node == null || node.frequency != co.accessCount) {
+			node = new FrequencyNode(co.accessCount);
+			node.next = head;
+			if (head != null) {
+				head.prev = node;
 			}
-			
-			if (comin == null) {
-				comin = co;
-			} else {
-				if (co.accessCount < comin.accessCount) {
-					comin = co;
-				}
+			head = node;
+		}
+		append(node, co);
+	}
+
+	/**
+	 * Moves accessed object to the bucket of the next access count.
+	 */
+	void incrementFrequency(LFUCacheObject co) {
+		FrequencyNode node = co.node;
+		FrequencyNode next = node.next;
+		if (next == null || next.frequency != co.accessCount) {
+			next = new FrequencyNode(co.accessCount);
+			next.prev = node;
+			next.next = node.next;
+			if (node.next != null) {
+				node.next.prev = next;
 			}
+			node.next = next;
 		}
+		unlink(co);
+		append(next, co);
+	}
 
-		if (isFull() == false) {
-			return count;
+	/**
+	 * Appends object to the end of the bucket.
+	 */
+	private void append(FrequencyNode node, LFUCacheObject co) {
+		co.node = node;
+		co.next = null;
+		co.prev = node.last;
+		if (node.last != null) {
+			node.last.next = co;
+		} else {
+			node.first = co;
 		}
+		node.last = co;
+	}
 
-		// decrease access count to all cached objects
-		if (comin != null) {
-			long minAccessCount = comin.accessCount;
-
-			values = cacheMap.values().iterator();
-			while (values.hasNext()) {
-				CacheObject<K, V> co = values.next();
-				co.accessCount -= minAccessCount;
-				if (co.accessCount <= 0) {
-					values.remove();
-					onRemove(co.key, co.cachedObject);
-					count++;					
-				}
+	/**
+	 * Unlinks object from its bucket and removes the bucket if it gets empty.
+	 */
+	void unlink(LFUCacheObject co) {
+		FrequencyNode node = co.node;
+		if (node == null) {
+			return;
+		}
+		if (co.prev != null) {
+			co.prev.next = co.next;
+		} else {
+			node.first = co.next;
+		}
+		if (co.next != null) {
+			co.next.prev = co.prev;
+		} else {
+			node.last = co.prev;
+		}
+		co.prev = co.next = null;
+		co.node = null;
+
+		if (node.first == null) {
+			if (node.prev != null) {
+				node.prev.next = node.next;
+			} else {
+				head = node.next;
+			}
+			if (node.next != null) {
+				node.next.prev = node.prev;
 			}
 		}
+	}
+
+	// ---------------------------------------------------------------- prune
+
+	/**
+	 * Prunes expired and, while cache is still full, the LFU elements from the cache.
+	 * Expired objects are found in the timing wheel, so prune never visits the whole cache.
+	 * Among the elements with the same access count, the least recently used one is removed.
+	 * On LFU removal, access count of removed object becomes the starting access count
+	 * for new objects; expired eviction candidate is simply removed as expired.
+	 * Returns the number of removed objects.
+	 */
+	@Override
+	protected int pruneCache() {
+		int count = pruneExpired();
+
+		long now = ticker.currentTimeMillis();
+		while (isFull() && head != null) {
+			LFUCacheObject comin = head.first;
+			if (cacheMap.get(comin.key) != comin) {
+				// object already removed from the map by the values iterator
+				unlink(comin);
+				continue;
+			}
+			if (comin.isExpired(now) == true) {
+				removeExpired(comin);
+				unschedule(comin);
+				count++;
+				continue;
+			}
+			minAccessCount = comin.accessCount;
+			cacheMap.remove(comin.key);
+			totalWeight -= comin.weight;
+			unschedule(comin);
+			onRemove(comin.key, comin.cachedObject);
+			count++;
+			stats.recordSizeEviction(1);
+			stats.recordEvictedWeight(comin.weight);
+		}
 		return count;
 	}
 
+	/**
+	 * Removes expired object and invokes {@link #onRemove(Object, Object)}.
+	 */
+	@Override
+	void removeExpired(CacheObject<K,V> co) {
+		super.removeExpired(co);
+		onRemove(co.key, co.cachedObject);
+	}
+
 	/**
 	 * Callback method invoked on cached object removal.
 	 * By default does nothing.
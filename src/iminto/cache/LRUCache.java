@@ -2,7 +2,6 @@ package iminto.cache;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Iterator;
 
 
 /**
@@ -29,6 +28,15 @@ public class LRUCache<K, V> extends AbstractCacheMap<K, V> {
 		this(cacheSize, 0);
 	}
 
+	/**
+	 * Creates a new LRU cache limited by the total weight of objects.
+	 */
+	public LRUCache(long maxWeight, Weigher<K, V> weigher, long timeout) {
+		this(0, timeout);
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
 	/**
 	 * Creates a new LRU cache.
 	 */
@@ -37,8 +45,16 @@ public class LRUCache<K, V> extends AbstractCacheMap<K, V> {
 		this.timeout = timeout;
 		cacheMap = new LinkedHashMap<K, CacheObject<K,V>>(cacheSize + 1, 1.0f, true) {
 			@Override
-			protected boolean removeEldestEntry(Map.Entry eldest) {
-				return LRUCache.this.removeEldestEntry(size());
+			protected boolean removeEldestEntry(Map.Entry<K, CacheObject<K,V>> eldest) {
+				boolean remove = LRUCache.this.removeEldestEntry(size());
+				if (remove) {
+					CacheObject<K,V> co = eldest.getValue();
+					totalWeight -= co.weight;
+					unschedule(co);
+					stats.recordSizeEviction(1);
+					stats.recordEvictedWeight(co.weight);
+				}
+				return remove;
 			}
 		};
 	}
@@ -54,21 +70,15 @@ public class LRUCache<K, V> extends AbstractCacheMap<K, V> {
 	}
 
 	/**
-	 * Prune only expired objects, <code>LinkedHashMap</code> will take care of LRU if needed.
+	 * Prune expired objects, <code>LinkedHashMap</code> will take care of LRU if needed.
+	 * When cache is limited by weight, least recently used objects are removed
+	 * until the total weight doesn't exceed the max weight.
 	 */
 	@Override
 	protected int pruneCache() {
-		if (isPruneExpiredActive() == false) {
-			return 0;
-		}
-        int count = 0;
-		Iterator<CacheObject<K,V>> values = cacheMap.values().iterator();
-		while (values.hasNext()) {
-			CacheObject<K,V> co = values.next();
-			if (co.isExpired() == true) {
-				values.remove();
-				count++;
-			}
+		int count = pruneExpired();
+		if (maxWeight != 0) {
+			count += evictWhileFull();
 		}
 		return count;
 	}
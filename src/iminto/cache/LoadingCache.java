@@ -0,0 +1,377 @@
+package iminto.cache;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Cache that loads missing values by itself. Values are stored in the wrapped
+ * {@link Cache}, which defines the eviction policy.
+ * <p>
+ * Only one load per key is in flight at the same time: the first thread
+ * that misses the key invokes the loader, while other threads asking for the
+ * same key wait for its result. Bulk loads follow the same rule for each key.
+ * <p>
+ * When refresh interval is set, values older than the interval are reloaded
+ * asynchronously on access, using the given executor; until the new value
+ * is loaded, the old one is returned.
+ */
+public class LoadingCache<K, V> implements Cache<K, V> {
+
+	/**
+	 * Loads single value.
+	 */
+	public interface Loader<K, V> {
+
+		/**
+		 * Loads value for the key. Returned <code>null</code> is not cached.
+		 */
+		V load(K key) throws Exception;
+	}
+
+	/**
+	 * Loads many values at once.
+	 */
+	public interface BulkLoader<K, V> {
+
+		/**
+		 * Loads values for the keys. Keys missing in the result are not cached.
+		 */
+		Map<K, V> loadAll(Collection<K> keys) throws Exception;
+	}
+
+	/**
+	 * Cached value with its load time.
+	 */
+	public static class LoadedValue<V> {
+		final V value;
+		final long loadTime;
+
+		LoadedValue(V value, long loadTime) {
+			this.value = value;
+			this.loadTime = loadTime;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public long getLoadTime() {
+			return loadTime;
+		}
+	}
+
+	/**
+	 * Load in progress, other threads wait for its result.
+	 */
+	static class InFlight<V> {
+		final CountDownLatch done = new CountDownLatch(1);
+		V value;
+		Throwable error;
+
+		void complete(V value) {
+			this.value = value;
+			done.countDown();
+		}
+
+		void fail(Throwable error) {
+			this.error = error;
+			done.countDown();
+		}
+
+		V await() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					done.await();
+					break;
+				} catch (InterruptedException ignore) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (error != null) {
+				throw wrap(error);
+			}
+			return value;
+		}
+	}
+
+	protected final Cache<K, LoadedValue<V>> cache;
+	protected final ConcurrentHashMap<K, InFlight<V>> loads = new ConcurrentHashMap<K, InFlight<V>>();
+	protected final long refreshInterval;
+	protected final Executor refreshExecutor;
+	protected Ticker ticker = Ticker.SYSTEM;
+
+	/**
+	 * Creates loading cache without refresh.
+	 */
+	public LoadingCache(Cache<K, LoadedValue<V>> cache) {
+		this(cache, 0, null);
+	}
+
+	/**
+	 * Creates loading cache that refreshes values older than <code>refreshInterval</code>
+	 * milliseconds, using the given executor.
+	 */
+	public LoadingCache(Cache<K, LoadedValue<V>> cache, long refreshInterval, Executor refreshExecutor) {
+		if (refreshInterval != 0 && refreshExecutor == null) {
+			throw new IllegalArgumentException("Refresh executor not set");
+		}
+		this.cache = cache;
+		this.refreshInterval = refreshInterval;
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	/**
+	 * Sets time source used for load times.
+	 */
+	public void setTicker(Ticker ticker) {
+		this.ticker = ticker;
+	}
+
+	// ---------------------------------------------------------------- load
+
+	/**
+	 * Returns cached value or loads it with the loader. If the value is
+	 * being loaded by another thread, waits for it. Loader exceptions are
+	 * rethrown, checked exceptions wrapped in <code>IllegalStateException</code>.
+	 */
+	public V get(K key, Loader<K, V> loader) {
+		LoadedValue<V> loaded = cache.get(key);
+		if (loaded != null) {
+			if (refreshInterval != 0 && ticker.currentTimeMillis() - loaded.loadTime >= refreshInterval) {
+				refresh(key, loader);
+			}
+			return loaded.value;
+		}
+
+		InFlight<V> inFlight = new InFlight<V>();
+		InFlight<V> existing = loads.putIfAbsent(key, inFlight);
+		if (existing != null) {
+			return existing.await();
+		}
+
+		try {
+			// the value might be loaded while this thread was acquiring the load
+			loaded = cache.get(key);
+			V value = loaded != null ? loaded.value : loader.load(key);
+			if (loaded == null && value != null) {
+				cache.put(key, new LoadedValue<V>(value, ticker.currentTimeMillis()));
+			}
+			inFlight.complete(value);
+			return value;
+		} catch (Throwable throwable) {
+			inFlight.fail(throwable);
+			throw wrap(throwable);
+		} finally {
+			loads.remove(key, inFlight);
+		}
+	}
+
+	/**
+	 * Returns values for all the keys. Missing values are loaded with a single
+	 * invocation of the bulk loader, except those that are already being loaded
+	 * by other threads. Keys without value are not included in the result.
+	 */
+	public Map<K, V> getAll(Collection<K> keys, BulkLoader<K, V> bulkLoader) {
+		Map<K, V> result = new LinkedHashMap<K, V>();
+		Map<K, InFlight<V>> owned = new LinkedHashMap<K, InFlight<V>>();
+		Map<K, InFlight<V>> foreign = new LinkedHashMap<K, InFlight<V>>();
+
+		for (K key : keys) {
+			LoadedValue<V> loaded = cache.get(key);
+			if (loaded != null) {
+				result.put(key, loaded.value);
+				continue;
+			}
+			if (owned.containsKey(key) || foreign.containsKey(key)) {
+				continue;
+			}
+			InFlight<V> inFlight = new InFlight<V>();
+			InFlight<V> existing = loads.putIfAbsent(key, inFlight);
+			if (existing != null) {
+				foreign.put(key, existing);
+			} else {
+				owned.put(key, inFlight);
+			}
+		}
+
+		if (owned.isEmpty() == false) {
+			try {
+				Map<K, V> values = bulkLoader.loadAll(new ArrayList<K>(owned.keySet()));
+				long now = ticker.currentTimeMillis();
+				for (Map.Entry<K, InFlight<V>> entry : owned.entrySet()) {
+					K key = entry.getKey();
+					V value = values == null ? null : values.get(key);
+					if (value != null) {
+						cache.put(key, new LoadedValue<V>(value, now));
+						result.put(key, value);
+					}
+					entry.getValue().complete(value);
+				}
+			} catch (Throwable throwable) {
+				for (InFlight<V> inFlight : owned.values()) {
+					inFlight.fail(throwable);
+				}
+				throw wrap(throwable);
+			} finally {
+				for (Map.Entry<K, InFlight<V>> entry : owned.entrySet()) {
+					loads.remove(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+
+		for (Map.Entry<K, InFlight<V>> entry : foreign.entrySet()) {
+			V value = entry.getValue().await();
+			if (value != null) {
+				result.put(entry.getKey(), value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reloads the value asynchronously, unless it is already being loaded.
+	 * Old value stays in the cache if the reload fails.
+	 */
+	protected void refresh(final K key, final Loader<K, V> loader) {
+		final InFlight<V> inFlight = new InFlight<V>();
+		if (loads.putIfAbsent(key, inFlight) != null) {
+			return;
+		}
+		try {
+			refreshExecutor.execute(new Runnable() {
+				public void run() {
+					try {
+						V value = loader.load(key);
+						if (value != null) {
+							cache.put(key, new LoadedValue<V>(value, ticker.currentTimeMillis()));
+						}
+						inFlight.complete(value);
+					} catch (Throwable throwable) {
+						inFlight.fail(throwable);
+					} finally {
+						loads.remove(key, inFlight);
+					}
+				}
+			});
+		} catch (RuntimeException rex) {
+			// executor rejected the refresh, the old value is still valid
+			inFlight.complete(null);
+			loads.remove(key, inFlight);
+		}
+	}
+
+	/**
+	 * Wraps checked exceptions into <code>IllegalStateException</code>.
+	 */
+	static RuntimeException wrap(Throwable throwable) {
+		if (throwable instanceof RuntimeException) {
+			return (RuntimeException) throwable;
+		}
+		if (throwable instanceof Error) {
+			throw (Error) throwable;
+		}
+		return new IllegalStateException("Unable to load cache value", throwable);
+	}
+
+	// ---------------------------------------------------------------- cache
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getCacheSize() {
+		return cache.getCacheSize();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCacheTimeout() {
+		return cache.getCacheTimeout();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void put(K key, V object) {
+		cache.put(key, new LoadedValue<V>(object, ticker.currentTimeMillis()));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void put(K key, V object, long timeout) {
+		cache.put(key, new LoadedValue<V>(object, ticker.currentTimeMillis()), timeout);
+	}
+
+	/**
+	 * Returns cached value, without loading it.
+	 */
+	public V get(K key) {
+		LoadedValue<V> loaded = cache.get(key);
+		return loaded == null ? null : loaded.value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Iterator<V> iterator() {
+		List<V> values = new ArrayList<V>();
+		Iterator<LoadedValue<V>> iterator = cache.iterator();
+		while (iterator.hasNext()) {
+			values.add(iterator.next().value);
+		}
+		return values.iterator();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int prune() {
+		return cache.prune();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isFull() {
+		return cache.isFull();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void remove(K key) {
+		cache.remove(key);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isEmpty() {
+		return cache.isEmpty();
+	}
+}
@@ -0,0 +1,765 @@
+package iminto.cache;
+import iminto.collection.IntArrayList;
+import iminto.io.ByteBufferUtil;
+import iminto.util.encypt.MurmurHash3;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Off-heap cache. Keys and values are serialized and stored outside of the java heap,
+ * in direct byte buffers or in the memory-mapped file, so cached data does not add
+ * to the garbage collection work. On the heap there is only a small index of
+ * <code>int</code> arrays.
+ * <p>
+ * Memory is split into pages (1MB by default) and each page is assigned to a slab class:
+ * it is cut into chunks of the same size. Entry is stored in the smallest chunk that fits it.
+ * When a slab class has no free chunk and there is no free page, a chunk of the same class
+ * is evicted by the CLOCK algorithm: chunks accessed since the last pass of the clock
+ * hand get the second chance. If the class has no page at all, a whole page is taken
+ * from some other class.
+ * <p>
+ * When backed by the memory-mapped file, the cache content survives the restart: the
+ * index is rebuilt from the file when the cache is opened again with the same page size.
+ * <p>
+ * Memory is released by {@link #close()}, cache must not be used after that.
+ * Cache is synchronized. For concurrent access consider {@link ConcurrentCache} with
+ * off-heap segments.
+ */
+public class OffHeapCache<K, V> implements Cache<K, V> {
+
+	public static final int DEFAULT_PAGE_SIZE = 1 << 20;
+
+	static final int MIN_CHUNK_SIZE = 64;
+	static final int PAGE_MAGIC = 0x0FFEA9E5;
+	static final int PAGE_HEADER_SIZE = 8;		// magic, chunk size
+
+	// chunk header: key length (-1 for free chunk), value length, last access, ttl, key hash, reference bit
+	static final int KEY_LENGTH = 0;
+	static final int VALUE_LENGTH = 4;
+	static final int LAST_ACCESS = 8;
+	static final int TTL = 16;
+	static final int HASH = 24;
+	static final int REFERENCED = 28;
+	static final int CHUNK_HEADER_SIZE = 32;
+
+	protected final Serializer<K> keySerializer;
+	protected final Serializer<V> valueSerializer;
+	protected final int pageSize;
+	protected final ByteBuffer[] pages;
+	protected final int chunkBits;
+
+	protected final int[] chunkSizes;			// chunk size of each slab class
+	protected final int[] pageClasses;			// slab class of each page, -1 for free page
+	protected final IntArrayList[] classPages;	// pages of each slab class
+	protected final IntArrayList[] freeChunks;	// free chunks of each slab class
+	protected final int[] clockPages;			// clock hand of each slab class: page position
+	protected final int[] clockChunks;			// clock hand of each slab class: chunk in the page
+	protected final IntArrayList freePages = new IntArrayList();
+	protected int reclaimHand;
+
+	// open addressing index: chunk reference + 1 and key hash
+	protected int[] indexRefs;
+	protected int[] indexHashes;
+	protected int size;
+	protected long usedBytes;					// bytes of used chunks
+
+	protected long timeout;
+	protected Ticker ticker = Ticker.SYSTEM;
+	protected final CacheStats stats = new CacheStats(this);
+
+	protected RandomAccessFile file;
+	protected MappedByteBuffer[] regions;		// mapped regions the pages are sliced from
+	protected boolean closed;
+
+	/**
+	 * Creates off-heap cache in direct memory of given capacity, in bytes.
+	 */
+	public OffHeapCache(long capacity, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+		this(capacity, DEFAULT_PAGE_SIZE, 0, keySerializer, valueSerializer);
+	}
+
+	/**
+	 * Creates off-heap cache in direct memory.
+	 */
+	public OffHeapCache(long capacity, int pageSize, long timeout, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+		this(pageCount(capacity, pageSize), pageSize, timeout, keySerializer, valueSerializer);
+		for (int i = 0; i < pages.length; i++) {
+			pages[i] = ByteBuffer.allocateDirect(pageSize);
+		}
+		initPages(false);
+	}
+
+	/**
+	 * Opens off-heap cache backed by the memory-mapped file. Existing content of the
+	 * file, written with the same page size, is loaded into the cache.
+	 */
+	public OffHeapCache(File file, long capacity, int pageSize, long timeout, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+		this(pageCount(capacity, pageSize), pageSize, timeout, keySerializer, valueSerializer);
+		this.file = new RandomAccessFile(file, "rw");
+		try {
+			boolean exists = this.file.length() != 0;
+			long length = (long) pages.length * pageSize;
+			this.file.setLength(length);
+			FileChannel channel = this.file.getChannel();
+
+			int pagesPerRegion = Math.max(1, (1 << 30) / pageSize);
+			regions = new MappedByteBuffer[(pages.length + pagesPerRegion - 1) / pagesPerRegion];
+			for (int i = 0; i < pages.length; i += pagesPerRegion) {
+				int regionPages = Math.min(pagesPerRegion, pages.length - i);
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * pageSize, (long) regionPages * pageSize);
+				regions[i / pagesPerRegion] = region;
+				for (int j = 0; j < regionPages; j++) {
+					region.limit((j + 1) * pageSize).position(j * pageSize);
+					pages[i + j] = region.slice();
+				}
+			}
+			initPages(exists);
+		} catch (IOException ioex) {
+			this.file.close();
+			throw ioex;
+		}
+	}
+
+	private OffHeapCache(int pageCount, int pageSize, long timeout, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+		if (pageSize < MIN_CHUNK_SIZE * 4 || Integer.bitCount(pageSize) != 1) {
+			throw new IllegalArgumentException("Invalid page size: " + pageSize);
+		}
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.pageSize = pageSize;
+		this.timeout = timeout;
+		this.pages = new ByteBuffer[pageCount];
+		this.pageClasses = new int[pageCount];
+		this.chunkBits = Integer.numberOfTrailingZeros(pageSize / MIN_CHUNK_SIZE);
+		if (((long) pageCount << chunkBits) > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Capacity too large for page size: " + pageSize);
+		}
+
+		// chunk sizes grow by 25%, the largest chunk takes the whole page
+		IntArrayList sizes = new IntArrayList();
+		int maxChunkSize = pageSize - PAGE_HEADER_SIZE;
+		int chunkSize = MIN_CHUNK_SIZE;
+		while (chunkSize < maxChunkSize / 2) {
+			sizes.add(chunkSize);
+			chunkSize = ((chunkSize + (chunkSize >> 2)) + 7) & ~7;
+		}
+		sizes.add(maxChunkSize);
+		this.chunkSizes = sizes.toArray();
+
+		int classCount = chunkSizes.length;
+		this.classPages = new IntArrayList[classCount];
+		this.freeChunks = new IntArrayList[classCount];
+		this.clockPages = new int[classCount];
+		this.clockChunks = new int[classCount];
+		for (int i = 0; i < classCount; i++) {
+			classPages[i] = new IntArrayList();
+			freeChunks[i] = new IntArrayList();
+		}
+		this.indexRefs = new int[1024];
+		this.indexHashes = new int[1024];
+	}
+
+	private static int pageCount(long capacity, int pageSize) {
+		long count = capacity / pageSize;
+		if (count <= 0 || count > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		return (int) count;
+	}
+
+	/**
+	 * Initializes pages. When loading, pages written before are
+	 * assigned to their slab classes and their entries are indexed.
+	 */
+	private void initPages(boolean load) {
+		for (int page = pages.length - 1; page >= 0; page--) {
+			pageClasses[page] = -1;
+			ByteBuffer buffer = pages[page];
+			if (load && buffer.getInt(0) == PAGE_MAGIC) {
+				int slabClass = indexOfChunkSize(buffer.getInt(4));
+				if (slabClass != -1) {
+					loadPage(page, slabClass);
+					continue;
+				}
+			}
+			buffer.putInt(0, 0);
+			freePages.add(page);
+		}
+	}
+
+	private int indexOfChunkSize(int chunkSize) {
+		for (int i = 0; i < chunkSizes.length; i++) {
+			if (chunkSizes[i] == chunkSize) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void loadPage(int page, int slabClass) {
+		pageClasses[page] = slabClass;
+		classPages[slabClass].add(page);
+		ByteBuffer buffer = pages[page];
+		int chunkCount = chunkCount(slabClass);
+		for (int chunk = chunkCount - 1; chunk >= 0; chunk--) {
+			int offset = chunkOffset(slabClass, chunk);
+			int ref = (page << chunkBits) | chunk;
+			if (buffer.getInt(offset + KEY_LENGTH) >= 0) {
+				indexInsert(ref, buffer.getInt(offset + HASH));
+				usedBytes += chunkSizes[slabClass];
+			} else {
+				freeChunks[slabClass].add(ref);
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Returns <code>0</code>, since off-heap cache is limited by memory and not by the number of entries.
+	 */
+	public int getCacheSize() {
+		return 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCacheTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Returns cache statistics.
+	 */
+	public CacheStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Sets time source used for access times and expiration.
+	 */
+	public void setTicker(Ticker ticker) {
+		this.ticker = ticker;
+	}
+
+	/**
+	 * Returns total capacity in bytes.
+	 */
+	public long getCapacity() {
+		return (long) pages.length * pageSize;
+	}
+
+	/**
+	 * Returns bytes of the slab chunks in use, including their headers and unused tails.
+	 */
+	public synchronized long getTotalWeight() {
+		return usedBytes;
+	}
+
+	// ---------------------------------------------------------------- put/get
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void put(K key, V object) {
+		put(key, object, timeout);
+	}
+
+	/**
+	 * Puts the entry to the cache. Throws <code>IllegalArgumentException</code>
+	 * if serialized entry doesn't fit in a page.
+	 */
+	public synchronized void put(K key, V object, long timeout) {
+		byte[] keyBytes = keySerializer.toBytes(key);
+		byte[] valueBytes = valueSerializer.toBytes(object);
+		int hash = hash(keyBytes);
+
+		int slot = indexFind(keyBytes, hash);
+		if (slot != -1) {
+			freeChunk(indexRefs[slot] - 1);
+			indexRemove(slot);
+		}
+
+		int slabClass = slabClassFor(CHUNK_HEADER_SIZE + keyBytes.length + valueBytes.length);
+		if (slabClass == -1) {
+			throw new IllegalArgumentException("Entry too large: " + (keyBytes.length + valueBytes.length) + " bytes");
+		}
+		int ref = allocate(slabClass);
+
+		ByteBuffer buffer = pages[ref >>> chunkBits];
+		int offset = chunkOffset(slabClass, ref & ((1 << chunkBits) - 1));
+		buffer.putInt(offset + VALUE_LENGTH, valueBytes.length);
+		buffer.putLong(offset + LAST_ACCESS, ticker.currentTimeMillis());
+		buffer.putLong(offset + TTL, timeout);
+		buffer.putInt(offset + HASH, hash);
+		buffer.put(offset + REFERENCED, (byte) 0);
+		buffer.position(offset + CHUNK_HEADER_SIZE);
+		buffer.put(keyBytes);
+		buffer.put(valueBytes);
+		buffer.putInt(offset + KEY_LENGTH, keyBytes.length);		// marks the chunk as used
+		usedBytes += chunkSizes[slabClass];
+
+		indexInsert(ref, hash);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized V get(K key) {
+		byte[] keyBytes = keySerializer.toBytes(key);
+		int slot = indexFind(keyBytes, hash(keyBytes));
+		if (slot == -1) {
+			stats.recordMiss();
+			return null;
+		}
+		int ref = indexRefs[slot] - 1;
+		ByteBuffer buffer = pages[ref >>> chunkBits];
+		int offset = offsetOf(ref);
+		long now = ticker.currentTimeMillis();
+		if (isExpired(buffer, offset, now)) {
+			freeChunk(ref);
+			indexRemove(slot);
+			stats.recordMiss();
+			stats.recordExpiration(1);
+			return null;
+		}
+		buffer.putLong(offset + LAST_ACCESS, now);
+		buffer.put(offset + REFERENCED, (byte) 1);
+		stats.recordHit();
+		return valueSerializer.fromBytes(readValue(buffer, offset));
+	}
+
+	/**
+	 * Returns iterator over the snapshot of non-expired values.
+	 */
+	public synchronized Iterator<V> iterator() {
+		List<V> values = new ArrayList<V>(size);
+		long now = ticker.currentTimeMillis();
+		for (int i = 0; i < indexRefs.length; i++) {
+			if (indexRefs[i] != 0) {
+				int ref = indexRefs[i] - 1;
+				ByteBuffer buffer = pages[ref >>> chunkBits];
+				int offset = offsetOf(ref);
+				if (isExpired(buffer, offset, now) == false) {
+					values.add(valueSerializer.fromBytes(readValue(buffer, offset)));
+				}
+			}
+		}
+		return values.iterator();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void remove(K key) {
+		byte[] keyBytes = keySerializer.toBytes(key);
+		int slot = indexFind(keyBytes, hash(keyBytes));
+		if (slot != -1) {
+			freeChunk(indexRefs[slot] - 1);
+			indexRemove(slot);
+			stats.recordRemoval(1);
+		}
+	}
+
+	// ---------------------------------------------------------------- common
+
+	/**
+	 * Removes all expired entries. Returns the number of removed entries.
+	 */
+	public synchronized int prune() {
+		long start = System.nanoTime();
+		long now = ticker.currentTimeMillis();
+		int count = 0;
+		int i = 0;
+		while (i < indexRefs.length) {
+			if (indexRefs[i] != 0) {
+				int ref = indexRefs[i] - 1;
+				if (isExpired(pages[ref >>> chunkBits], offsetOf(ref), now)) {
+					freeChunk(ref);
+					indexRemove(i);
+					count++;
+					continue;		// other entry might be shifted to this slot
+				}
+			}
+			i++;
+		}
+		stats.recordExpiration(count);
+		stats.recordPrune(System.nanoTime() - start);
+		return count;
+	}
+
+	/**
+	 * Returns <code>true</code> when there are no free pages and no free chunks,
+	 * so the next put will evict some entry.
+	 */
+	public synchronized boolean isFull() {
+		if (freePages.isEmpty() == false) {
+			return false;
+		}
+		for (IntArrayList free : freeChunks) {
+			if (free.isEmpty() == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void clear() {
+		stats.recordRemoval(size);
+		for (int i = 0; i < chunkSizes.length; i++) {
+			classPages[i].clear();
+			freeChunks[i].clear();
+			clockPages[i] = clockChunks[i] = 0;
+		}
+		freePages.clear();
+		initPages(false);
+		indexRefs = new int[1024];
+		indexHashes = new int[1024];
+		size = 0;
+		usedBytes = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Writes changes of the memory-mapped file to the disk.
+	 */
+	public synchronized void flush() {
+		if (file == null) {
+			return;
+		}
+		for (ByteBuffer page : pages) {
+			((MappedByteBuffer) page).force();
+		}
+	}
+
+	/**
+	 * Releases the memory of the slabs. Memory-mapped file is flushed and closed.
+	 * Cache must not be used after this call.
+	 */
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		flush();
+		closed = true;
+		if (regions != null) {
+			for (MappedByteBuffer region : regions) {
+				ByteBufferUtil.release(region);
+			}
+			regions = null;
+		} else {
+			for (ByteBuffer page : pages) {
+				ByteBufferUtil.release(page);
+			}
+		}
+		Arrays.fill(pages, null);
+		size = 0;
+		usedBytes = 0;
+		if (file != null) {
+			file.close();
+			file = null;
+		}
+	}
+
+	// ---------------------------------------------------------------- slabs
+
+	private int slabClassFor(int length) {
+		for (int i = 0; i < chunkSizes.length; i++) {
+			if (chunkSizes[i] >= length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int chunkCount(int slabClass) {
+		return (pageSize - PAGE_HEADER_SIZE) / chunkSizes[slabClass];
+	}
+
+	private int chunkOffset(int slabClass, int chunk) {
+		return PAGE_HEADER_SIZE + chunk * chunkSizes[slabClass];
+	}
+
+	private int offsetOf(int ref) {
+		return chunkOffset(pageClasses[ref >>> chunkBits], ref & ((1 << chunkBits) - 1));
+	}
+
+	/**
+	 * Returns free chunk of the slab class: from the free list, from the new page
+	 * or by eviction, in that order.
+	 */
+	private int allocate(int slabClass) {
+		IntArrayList free = freeChunks[slabClass];
+		if (free.isEmpty() == false) {
+			return free.remove(free.size() - 1);
+		}
+		if (freePages.isEmpty() == false) {
+			assignPage(freePages.remove(freePages.size() - 1), slabClass);
+			return free.remove(free.size() - 1);
+		}
+		if (classPages[slabClass].isEmpty() == false) {
+			return evict(slabClass);
+		}
+		assignPage(reclaimPage(), slabClass);
+		return free.remove(free.size() - 1);
+	}
+
+	/**
+	 * Assigns free page to the slab class and adds all its chunks to the free list.
+	 */
+	private void assignPage(int page, int slabClass) {
+		ByteBuffer buffer = pages[page];
+		buffer.putInt(0, PAGE_MAGIC);
+		buffer.putInt(4, chunkSizes[slabClass]);
+		pageClasses[page] = slabClass;
+		classPages[slabClass].add(page);
+
+		IntArrayList free = freeChunks[slabClass];
+		for (int chunk = chunkCount(slabClass) - 1; chunk >= 0; chunk--) {
+			buffer.putInt(chunkOffset(slabClass, chunk) + KEY_LENGTH, -1);
+			free.add((page << chunkBits) | chunk);
+		}
+	}
+
+	/**
+	 * Evicts one chunk of the slab class using the CLOCK algorithm. Expired
+	 * and not referenced chunks are evicted, referenced chunks lose their mark.
+	 */
+	private int evict(int slabClass) {
+		IntArrayList classPageList = classPages[slabClass];
+		int chunkCount = chunkCount(slabClass);
+		long now = ticker.currentTimeMillis();
+
+		while (true) {
+			if (clockPages[slabClass] >= classPageList.size()) {
+				clockPages[slabClass] = 0;
+			}
+			int page = classPageList.get(clockPages[slabClass]);
+			int chunk = clockChunks[slabClass];
+			if (++clockChunks[slabClass] == chunkCount) {
+				clockChunks[slabClass] = 0;
+				clockPages[slabClass]++;
+			}
+
+			ByteBuffer buffer = pages[page];
+			int offset = chunkOffset(slabClass, chunk);
+			int ref = (page << chunkBits) | chunk;
+			if (buffer.getInt(offset + KEY_LENGTH) < 0) {
+				continue;
+			}
+			if (isExpired(buffer, offset, now)) {
+				removeChunk(ref);
+				stats.recordExpiration(1);
+				return ref;
+			}
+			if (buffer.get(offset + REFERENCED) != 0) {
+				buffer.put(offset + REFERENCED, (byte) 0);
+				continue;
+			}
+			removeChunk(ref);
+			stats.recordSizeEviction(1);
+			stats.recordEvictedWeight(chunkSizes[slabClass]);
+			return ref;
+		}
+	}
+
+	/**
+	 * Takes a page from its slab class, evicting all its entries. Pages are taken in round robin.
+	 */
+	private int reclaimPage() {
+		int page = reclaimHand;
+		reclaimHand = (reclaimHand + 1) % pages.length;
+
+		int slabClass = pageClasses[page];
+		int chunkCount = chunkCount(slabClass);
+		ByteBuffer buffer = pages[page];
+		int evicted = 0;
+		for (int chunk = 0; chunk < chunkCount; chunk++) {
+			if (buffer.getInt(chunkOffset(slabClass, chunk) + KEY_LENGTH) >= 0) {
+				removeChunk((page << chunkBits) | chunk);
+				evicted++;
+			}
+		}
+		stats.recordSizeEviction(evicted);
+		stats.recordEvictedWeight((long) evicted * chunkSizes[slabClass]);
+
+		IntArrayList classPageList = classPages[slabClass];
+		classPageList.remove(classPageList.indexOf(page));
+		clockPages[slabClass] = clockChunks[slabClass] = 0;
+
+		IntArrayList free = freeChunks[slabClass];
+		IntArrayList remaining = new IntArrayList(free.size());
+		for (int i = 0; i < free.size(); i++) {
+			int ref = free.get(i);
+			if ((ref >>> chunkBits) != page) {
+				remaining.add(ref);
+			}
+		}
+		freeChunks[slabClass] = remaining;
+
+		pageClasses[page] = -1;
+		buffer.putInt(0, 0);
+		return page;
+	}
+
+	/**
+	 * Removes used chunk from the index and marks it as free, without adding it to the free list.
+	 */
+	private void removeChunk(int ref) {
+		ByteBuffer buffer = pages[ref >>> chunkBits];
+		int offset = offsetOf(ref);
+		int hash = buffer.getInt(offset + HASH);
+		int mask = indexRefs.length - 1;
+		int slot = hash & mask;
+		while (indexRefs[slot] != ref + 1) {
+			slot = (slot + 1) & mask;
+		}
+		indexRemove(slot);
+		buffer.putInt(offset + KEY_LENGTH, -1);
+		usedBytes -= chunkSizes[pageClasses[ref >>> chunkBits]];
+	}
+
+	/**
+	 * Marks chunk as free and returns it to the free list of its slab class.
+	 */
+	private void freeChunk(int ref) {
+		int page = ref >>> chunkBits;
+		pages[page].putInt(offsetOf(ref) + KEY_LENGTH, -1);
+		freeChunks[pageClasses[page]].add(ref);
+		usedBytes -= chunkSizes[pageClasses[page]];
+	}
+
+	private boolean isExpired(ByteBuffer buffer, int offset, long now) {
+		long ttl = buffer.getLong(offset + TTL);
+		if (ttl == 0) {
+			return false;
+		}
+		return buffer.getLong(offset + LAST_ACCESS) + ttl < now;
+	}
+
+	private byte[] readValue(ByteBuffer buffer, int offset) {
+		int keyLength = buffer.getInt(offset + KEY_LENGTH);
+		byte[] value = new byte[buffer.getInt(offset + VALUE_LENGTH)];
+		buffer.position(offset + CHUNK_HEADER_SIZE + keyLength);
+		buffer.get(value);
+		return value;
+	}
+
+	// ---------------------------------------------------------------- index
+
+	private static int hash(byte[] keyBytes) {
+		return MurmurHash3.murmurhash3_x86_32(keyBytes, 0, keyBytes.length, 0x9747b28c);
+	}
+
+	/**
+	 * Returns index slot of the key, or <code>-1</code> if key is not cached.
+	 */
+	private int indexFind(byte[] keyBytes, int hash) {
+		int mask = indexRefs.length - 1;
+		int slot = hash & mask;
+		while (indexRefs[slot] != 0) {
+			if (indexHashes[slot] == hash && keyEquals(indexRefs[slot] - 1, keyBytes)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private boolean keyEquals(int ref, byte[] keyBytes) {
+		ByteBuffer buffer = pages[ref >>> chunkBits];
+		int offset = offsetOf(ref);
+		if (buffer.getInt(offset + KEY_LENGTH) != keyBytes.length) {
+			return false;
+		}
+		offset += CHUNK_HEADER_SIZE;
+		for (int i = 0; i < keyBytes.length; i++) {
+			if (buffer.get(offset + i) != keyBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void indexInsert(int ref, int hash) {
+		if ((size + 1) * 2 > indexRefs.length) {
+			resizeIndex();
+		}
+		int mask = indexRefs.length - 1;
+		int slot = hash & mask;
+		while (indexRefs[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		indexRefs[slot] = ref + 1;
+		indexHashes[slot] = hash;
+		size++;
+	}
+
+	/**
+	 * Removes index slot, shifting back the following entries of the same probe sequence.
+	 */
+	private void indexRemove(int slot) {
+		int mask = indexRefs.length - 1;
+		int hole = slot;
+		int i = slot;
+		while (true) {
+			i = (i + 1) & mask;
+			if (indexRefs[i] == 0) {
+				break;
+			}
+			int home = indexHashes[i] & mask;
+			boolean movable = hole <= i ? (home <= hole || home > i) : (home <= hole && home > i);
+			if (movable) {
+				indexRefs[hole] = indexRefs[i];
+				indexHashes[hole] = indexHashes[i];
+				hole = i;
+			}
+		}
+		indexRefs[hole] = 0;
+		indexHashes[hole] = 0;
+		size--;
+	}
+
+	private void resizeIndex() {
+		int[] oldRefs = indexRefs;
+		int[] oldHashes = indexHashes;
+		indexRefs = new int[oldRefs.length << 1];
+		indexHashes = new int[oldRefs.length << 1];
+		int mask = indexRefs.length - 1;
+		for (int i = 0; i < oldRefs.length; i++) {
+			if (oldRefs[i] != 0) {
+				int slot = oldHashes[i] & mask;
+				while (indexRefs[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				indexRefs[slot] = oldRefs[i];
+				indexHashes[slot] = oldHashes[i];
+			}
+		}
+	}
+}
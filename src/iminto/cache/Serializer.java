@@ -0,0 +1,86 @@
+package iminto.cache;
+import iminto.io.FastByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+/**
+ * Converts objects to bytes and back, for caches that store serialized data.
+ */
+public interface Serializer<T> {
+
+	/**
+	 * Serializer of byte arrays, returns arrays as they are.
+	 */
+	Serializer<byte[]> BYTES = new Serializer<byte[]>() {
+		public byte[] toBytes(byte[] object) {
+			return object;
+		}
+
+		public byte[] fromBytes(byte[] bytes) {
+			return bytes;
+		}
+	};
+
+	/**
+	 * UTF-8 serializer of strings.
+	 */
+	Serializer<String> STRING = new Serializer<String>() {
+		private final Charset utf8 = Charset.forName("UTF-8");
+
+		public byte[] toBytes(String object) {
+			return object.getBytes(utf8);
+		}
+
+		public String fromBytes(byte[] bytes) {
+			return new String(bytes, utf8);
+		}
+	};
+
+	/**
+	 * Serializes object to bytes.
+	 */
+	byte[] toBytes(T object);
+
+	/**
+	 * Deserializes object from bytes.
+	 */
+	T fromBytes(byte[] bytes);
+
+	/**
+	 * Serializer that uses standard java serialization.
+	 */
+	class JavaSerializer<T extends Serializable> implements Serializer<T> {
+
+		public byte[] toBytes(T object) {
+			FastByteArrayOutputStream bytes = new FastByteArrayOutputStream();
+			try {
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				out.writeObject(object);
+				out.close();
+			} catch (IOException ioex) {
+				throw new IllegalArgumentException("Unable to serialize: " + object, ioex);
+			}
+			return bytes.toByteArray();
+		}
+
+		@SuppressWarnings("unchecked")
+		public T fromBytes(byte[] bytes) {
+			try {
+				ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+				try {
+					return (T) in.readObject();
+				} finally {
+					in.close();
+				}
+			} catch (IOException ioex) {
+				throw new IllegalArgumentException("Unable to deserialize", ioex);
+			} catch (ClassNotFoundException cnfex) {
+				throw new IllegalArgumentException("Unable to deserialize", cnfex);
+			}
+		}
+	}
+}
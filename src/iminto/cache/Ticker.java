@@ -0,0 +1,21 @@
+package iminto.cache;
+
+/**
+ * Time source for cache access times and expiration.
+ */
+public interface Ticker {
+
+	/**
+	 * System time source, invokes <code>System.currentTimeMillis()</code> on every read.
+	 */
+	Ticker SYSTEM = new Ticker() {
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/**
+	 * Returns current time in milliseconds.
+	 */
+	long currentTimeMillis();
+}
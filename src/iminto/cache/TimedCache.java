@@ -1,6 +1,5 @@
 package iminto.cache;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -8,6 +7,11 @@ import java.util.TimerTask;
  * Timed cache. Not limited by size, objects are removed only when they are expired.
  * Prune is not invoked explicitly by standard {@link Cache} methods, however,
  * it is possible to schedule prunes on fined-rate delays.
+ * <p>
+ * Prune only visits the timing wheel buckets that passed since the previous prune,
+ * see {@link AbstractCacheMap}, so its cost depends on the number of expired objects,
+ * not on the cache size. Each object may have its own timeout,
+ * see {@link #put(Object, Object, long)}.
  */
 public class TimedCache<K, V> extends AbstractCacheMap<K, V> {
 
@@ -17,21 +21,14 @@ public class TimedCache<K, V> extends AbstractCacheMap<K, V> {
 		cacheMap = new HashMap<K, CacheObject<K,V>>();
 	}
 
+	// ---------------------------------------------------------------- prune
+
 	/**
 	 * Prunes expired elements from the cache. Returns the number of removed objects.
 	 */
 	@Override
 	protected int pruneCache() {
-        int count = 0;
-		Iterator<CacheObject<K,V>> values = cacheMap.values().iterator();
-		while (values.hasNext()) {
-			CacheObject co = values.next();
-			if (co.isExpired() == true) {
-				values.remove();
-				count++;
-			}
-		}
-		return count;
+		return pruneExpired();
 	}
 
 
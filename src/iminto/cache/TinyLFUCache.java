@@ -0,0 +1,304 @@
+package iminto.cache;
+import java.util.HashMap;
+
+/**
+ * W-TinyLFU cache: small LRU admission window in front of the segmented LRU main region,
+ * guarded by the frequency filter.
+ *
+ * <p>
+ * New items always enter the window (1% of the cache). Items evicted from the window are
+ * candidates for the main region, which is split into the probation (20%) and the
+ * protected (80%) segment: an item hit while in probation is promoted to protected,
+ * an item pushed out of protected is demoted back to probation. When the cache is full,
+ * the window candidate and the least recently used probation item compete and only the one
+ * with higher estimated access frequency stays in the cache. Frequencies are kept in the
+ * {@link FrequencySketch count-min sketch} of bounded size, which is periodically halved,
+ * so old popularity fades away.
+ * <p>
+ * The window lets recent bursts in, while the frequency filter keeps one-hit wonders and
+ * scans from flushing the frequently used items out of the main region. All operations
+ * take constant time.
+ * <p>
+ * Summary for W-TinyLFU: fast, adaptive, captures frequency of use, scan resistant.
+ */
+public class TinyLFUCache<K, V> extends AbstractCacheMap<K, V> {
+
+	static final int WINDOW = 0;
+	static final int PROBATION = 1;
+	static final int PROTECTED = 2;
+
+	/**
+	 * Cached object linked into one of access queues.
+	 */
+	class TinyLFUCacheObject extends CacheObject<K,V> {
+		TinyLFUCacheObject(K key, V object, long ttl) {
+			super(key, object, ttl);
+		}
+
+		int queueType;
+		TinyLFUCacheObject prev;
+		TinyLFUCacheObject next;
+
+		@Override
+		V getObject(long now) {
+			V object = super.getObject(now);
+			onAccess(this);
+			return object;
+		}
+	}
+
+	/**
+	 * Access ordered queue of cached objects, from the least to the most recently used.
+	 */
+	class AccessQueue {
+		final int queueType;
+		TinyLFUCacheObject first;
+		TinyLFUCacheObject last;
+		int size;
+
+		AccessQueue(int queueType) {
+			this.queueType = queueType;
+		}
+
+		void add(TinyLFUCacheObject co) {
+			co.queueType = queueType;
+			co.prev = last;
+			co.next = null;
+			if (last != null) {
+				last.next = co;
+			} else {
+				first = co;
+			}
+			last = co;
+			size++;
+		}
+
+		void remove(TinyLFUCacheObject co) {
+			if (co.prev != null) {
+				co.prev.next = co.next;
+			} else {
+				first = co.next;
+			}
+			if (co.next != null) {
+				co.next.prev = co.prev;
+			} else {
+				last = co.prev;
+			}
+			co.prev = co.next = null;
+			size--;
+		}
+
+		void moveToEnd(TinyLFUCacheObject co) {
+			if (co != last) {
+				remove(co);
+				add(co);
+			}
+		}
+
+		void clear() {
+			first = last = null;
+			size = 0;
+		}
+	}
+
+	protected final FrequencySketch sketch;
+	protected final AccessQueue window = new AccessQueue(WINDOW);
+	protected final AccessQueue probation = new AccessQueue(PROBATION);
+	protected final AccessQueue protectedQueue = new AccessQueue(PROTECTED);
+	protected final int maxWindowSize;
+	protected final int maxProtectedSize;
+
+	protected int admittedCount;
+	protected int rejectedCount;
+
+	public TinyLFUCache(int cacheSize) {
+		this(cacheSize, 0);
+	}
+
+	/**
+	 * Creates a new W-TinyLFU cache. Cache size must be set.
+	 */
+	public TinyLFUCache(int cacheSize, long timeout) {
+		if (cacheSize <= 0) {
+			throw new IllegalArgumentException("Invalid cache size: " + cacheSize);
+		}
+		this.cacheSize = cacheSize;
+		this.timeout = timeout;
+		this.maxWindowSize = Math.max(1, cacheSize / 100);
+		this.maxProtectedSize = (cacheSize - maxWindowSize) * 80 / 100;
+		this.sketch = new FrequencySketch(cacheSize);
+		cacheMap = new HashMap<K, CacheObject<K,V>>(cacheSize + 1) {
+			@Override
+			public CacheObject<K,V> put(K key, CacheObject<K,V> value) {
+				CacheObject<K,V> old = super.put(key, value);
+				if (old != null) {
+					unlink((TinyLFUCacheObject) old);
+				}
+				onInsert((TinyLFUCacheObject) value);
+				return old;
+			}
+
+			@Override
+			public CacheObject<K,V> remove(Object key) {
+				CacheObject<K,V> old = super.remove(key);
+				if (old != null) {
+					unlink((TinyLFUCacheObject) old);
+				}
+				return old;
+			}
+
+			@Override
+			public void clear() {
+				super.clear();
+				window.clear();
+				probation.clear();
+				protectedQueue.clear();
+				sketch.clear();
+			}
+		};
+	}
+
+	@Override
+	protected CacheObject<K,V> createCacheObject(K key, V object, long timeout) {
+		return new TinyLFUCacheObject(key, object, timeout);
+	}
+
+	/**
+	 * Hits update frequency sketch and access queues, so <code>get</code> requires the write lock.
+	 */
+	@Override
+	protected boolean isGetExclusive() {
+		return true;
+	}
+
+	/**
+	 * Returns the number of window candidates admitted to the main region.
+	 */
+	public int getAdmittedCount() {
+		return admittedCount;
+	}
+
+	/**
+	 * Returns the number of window candidates rejected by the frequency filter.
+	 */
+	public int getRejectedCount() {
+		return rejectedCount;
+	}
+
+	// ---------------------------------------------------------------- queues
+
+	/**
+	 * Adds new object to the window and records its access.
+	 * Window is never overfilled, as {@link #pruneCache()} already
+	 * moved its least recently used object to the main region.
+	 */
+	void onInsert(TinyLFUCacheObject co) {
+		sketch.increment(co.key);
+		window.add(co);
+		if (window.size > maxWindowSize) {
+			TinyLFUCacheObject first = window.first;
+			window.remove(first);
+			probation.add(first);
+		}
+	}
+
+	/**
+	 * Records the hit and reorders access queues.
+	 */
+	void onAccess(TinyLFUCacheObject co) {
+		sketch.increment(co.key);
+		switch (co.queueType) {
+			case WINDOW:
+				window.moveToEnd(co);
+				break;
+			case PROBATION:
+				probation.remove(co);
+				protectedQueue.add(co);
+				if (protectedQueue.size > maxProtectedSize) {
+					TinyLFUCacheObject demoted = protectedQueue.first;
+					protectedQueue.remove(demoted);
+					probation.add(demoted);
+				}
+				break;
+			default:
+				protectedQueue.moveToEnd(co);
+		}
+	}
+
+	/**
+	 * Unlinks object from its queue.
+	 */
+	void unlink(TinyLFUCacheObject co) {
+		queueOf(co).remove(co);
+	}
+
+	private AccessQueue queueOf(TinyLFUCacheObject co) {
+		switch (co.queueType) {
+			case WINDOW:
+				return window;
+			case PROBATION:
+				return probation;
+			default:
+				return protectedQueue;
+		}
+	}
+
+	// ---------------------------------------------------------------- prune
+
+	/**
+	 * Prunes expired objects and, if cache is still full, makes a room for the new object.
+	 * If the window is full, its least recently used object is moved to the probation and
+	 * competes with the probation victim: the one with lower frequency is removed.
+	 * Returns the number of removed objects.
+	 */
+	@Override
+	protected int pruneCache() {
+		int count = pruneExpired();
+
+		while (isFull()) {
+			TinyLFUCacheObject victim = selectVictim();
+			if (cacheMap.get(victim.key) == victim) {
+				cacheMap.remove(victim.key);
+				unschedule(victim);
+				count++;
+				stats.recordSizeEviction(1);
+			} else {
+				// object already removed from the map by the values iterator
+				unlink(victim);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Selects the object to remove.
+	 */
+	private TinyLFUCacheObject selectVictim() {
+		if (window.size >= maxWindowSize && window.first != null) {
+			TinyLFUCacheObject candidate = window.first;
+			window.remove(candidate);
+			TinyLFUCacheObject victim = probation.first;
+			if (victim == null) {
+				victim = protectedQueue.first;
+			}
+			probation.add(candidate);
+			if (victim == null) {
+				return candidate;
+			}
+			if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+				admittedCount++;
+				return victim;
+			}
+			rejectedCount++;
+			return candidate;
+		}
+		if (probation.first != null) {
+			return probation.first;
+		}
+		if (protectedQueue.first != null) {
+			return protectedQueue.first;
+		}
+		return window.first;
+	}
+
+}
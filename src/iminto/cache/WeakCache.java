@@ -0,0 +1,89 @@
+package iminto.cache;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.WeakHashMap;
+
+/**
+ * Cache with weak keys: object is removed from the cache when its key is no
+ * longer referenced outside of the cache. Suitable for caching data of classes
+ * and class loaders, which should not be prevented from unloading.
+ * <p>
+ * Note that values must not reference their keys, otherwise keys will never be collected.
+ * <p>
+ * Cache may also be limited by size and timeout. When it is full, expired objects
+ * are removed first and then an arbitrary object.
+ */
+public class WeakCache<K, V> extends AbstractCacheMap<K, V> {
+
+	/**
+	 * Cached object that references its key weakly. Weak map references its values
+	 * strongly, so the key held by the value itself would never be collected.
+	 */
+	class WeakCacheObject extends CacheObject<K,V> {
+		WeakCacheObject(K key, V object, long ttl) {
+			super(null, object, ttl);
+			this.keyReference = new WeakReference<K>(key);
+		}
+
+		final WeakReference<K> keyReference;
+
+		@Override
+		K getKey() {
+			return keyReference.get();
+		}
+	}
+
+	public WeakCache() {
+		this(0, 0);
+	}
+
+	/**
+	 * Creates a new weak cache.
+	 */
+	public WeakCache(int cacheSize, long timeout) {
+		this.cacheSize = cacheSize;
+		this.timeout = timeout;
+		// weak map expunges collected keys on every access, including reads
+		cacheMap = Collections.synchronizedMap(new WeakHashMap<K, CacheObject<K,V>>());
+	}
+
+	@Override
+	protected CacheObject<K,V> createCacheObject(K key, V object, long timeout) {
+		return new WeakCacheObject(key, object, timeout);
+	}
+
+	/**
+	 * Objects are not scheduled for expiration, since the timing wheel
+	 * would keep their keys strongly reachable.
+	 */
+	@Override
+	protected boolean isExpirationScheduled() {
+		return false;
+	}
+
+	/**
+	 * Prunes expired objects and, if cache is still full, arbitrary ones.
+	 */
+	@Override
+	protected int pruneCache() {
+		int count = 0;
+		synchronized (cacheMap) {
+			if (isPruneExpiredActive()) {
+				long now = ticker.currentTimeMillis();
+				Iterator<CacheObject<K,V>> values = cacheMap.values().iterator();
+				while (values.hasNext()) {
+					CacheObject<K,V> co = values.next();
+					if (co.isExpired(now) == true) {
+						values.remove();
+						totalWeight -= co.weight;
+						count++;
+						stats.recordExpiration(1);
+					}
+				}
+			}
+			count += evictWhileFull();
+		}
+		return count;
+	}
+}
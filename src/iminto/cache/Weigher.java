@@ -0,0 +1,15 @@
+package iminto.cache;
+
+/**
+ * Calculates weight of cached objects, e.g. their size in bytes. Caches
+ * created with a weigher are limited by the total weight of their objects
+ * instead of their count.
+ */
+public interface Weigher<K, V> {
+
+	/**
+	 * Returns weight of the cached object, must not be negative.
+	 * Weight is calculated once, when object is put in the cache.
+	 */
+	int weigh(K key, V object);
+}
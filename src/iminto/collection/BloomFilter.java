@@ -1,83 +1,351 @@
 package iminto.collection;
-import java.util.BitSet;
+import iminto.util.encypt.MurmurHash3;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 /**
  * 布隆过滤器
  * Desc:布隆过滤器可以用于检索一个元素是否在一个集合中
  * Author:waitfox@qq.com
  * Date:2012-11-19 下午8:05:51
+ * <p>
+ * Filter is sized for the expected number of insertions and the desired false
+ * positive probability. Bit positions are derived by double hashing from a 64-bit hash:
+ * bytes and characters are hashed by two 32-bit MurmurHash3 passes with different seeds,
+ * long values by the MurmurHash3 64-bit finalizer. The hash is calculated once for all
+ * the hash functions.
+ * <p>
+ * Filter is thread-safe: bits are set with CAS, without locking. Insertions are
+ * counted by the striped counter and set bits are counted only when requested,
+ * so concurrent additions don't compete for a shared counter. Filters of the
+ * same size may be merged and written to a stream. For unknown number of insertions
+ * see {@link ScalableBloomFilter}.
  */
 public class BloomFilter {
-	//DEFAULT_SIZE为2的25次方
-    private static final int DEFAULT_SIZE = 2 << 24;
-    /* 不同哈希函数的种子，一般应取质数,seeds数据共有7个值，则代表采用7种不同的HASH算法 */
-    private static final int[] seeds = new int[] { 5, 7, 11, 13, 31, 37, 61 };
-    //BitSet实际是由“二进制位”构成的一个Vector。假如希望高效率地保存大量“开－关”信息，就应使用BitSet.
-    //BitSet的最小长度是一个长整数（Long）的长度：64位
-    private BitSet bits = new BitSet(DEFAULT_SIZE);
-    /* 哈希函数对象 */
-    private SimpleHash[] func = new SimpleHash[seeds.length];
-
-    //构造函数
-    public BloomFilter() {
-       for (int i = 0; i < seeds.length; i++) {
-           //给出所有的hash值，共计seeds.length个hash值。共7位。
-           //通过调用SimpleHash.hash(),可以得到根据7种hash函数计算得出的hash值。
-           //传入DEFAULT_SIZE(最终字符串的长度），seeds[i](一个指定的质数)即可得到需要的那个hash值的位置。
-           func[i] = new SimpleHash(DEFAULT_SIZE, seeds[i]);
-       }
-    }
-
-    // 将字符串标记到bits中，即设置字符串的7个hash值函数为1
-    public void add(String value) {
-       for (SimpleHash f : func) {
-           bits.set(f.hash(value), true);
-       }
-    }
-
-    //判断字符串是否已经被bits标记
-    public boolean contains(String value) {
-       //确保传入的不是空值
-       if (value == null) {
-           return false;
-       }
-       boolean ret = true;
-       //计算7种hash算法下各自对应的hash值，并判断
-       for (SimpleHash f : func) {
-           //&&是boolen运算符，只要有一个为0，则为0。即需要所有的位都为1，才代表包含在里面。
-           //f.hash(value)返回hash对应的位数值
-           //bits.get函数返回bitset中对应position的值。即返回hash值是否为0或1。
-           ret = ret && bits.get(f.hash(value));
-       }
-       return ret;
-    }
-
-    /* 哈希函数类 */
-
-    public static class SimpleHash {
-       //cap为DEFAULT_SIZE的值，即用于结果的最大的字符串长度。
-       //seed为计算hash值的一个给定key，具体对应上面定义的seeds数组
-       private int cap;
-       private int seed;
-
-       public SimpleHash(int cap, int seed) {
-           this.cap = cap;
-           this.seed = seed;
-       }
-
-       //计算hash值的具体算法,hash函数，采用简单的加权和hash
-       public int hash(String value) {
-           //int的范围最大是2的31次方减1，或超过值则用负数来表示
-           int result = 0;
-           int len = value.length();
-           for (int i = 0; i < len; i++) {
-              //数字和字符串相加，字符串转换成为ASCII码
-              result = seed * result + value.charAt(i);
-              //System.out.println(result+"--"+seed+"*"+result+"+"+value.charAt(i));
-           }
-       //  System.out.println("result="+result+";"+((cap - 1) & result));
-       //  System.out.println(414356308*61+'h');  执行此运算结果为负数，为什么？
-           //&是java中的位逻辑运算，用于过滤负数（负数与进算转换成反码进行）。
-           return (cap - 1) & result;
-       }
-    }
+
+	private static final int MAGIC = 0xB100F17E;
+	private static final int SEED = 0x9747b28c;
+
+	private static final long DEFAULT_EXPECTED_INSERTIONS = 1 << 20;
+	private static final double DEFAULT_FPP = 0.01;
+
+	protected final AtomicLongArray bits;
+	protected final long bitSize;
+	protected final int hashCount;
+	protected final StripedCounter insertionCount = new StripedCounter();
+
+	/**
+	 * Creates filter for one million insertions with 1% false positive probability.
+	 */
+	public BloomFilter() {
+		this(DEFAULT_EXPECTED_INSERTIONS, DEFAULT_FPP);
+	}
+
+	/**
+	 * Creates filter for the expected number of insertions and false positive probability.
+	 */
+	public BloomFilter(long expectedInsertions, double fpp) {
+		this(optimalBitSize(expectedInsertions, fpp), optimalHashCount(expectedInsertions, optimalBitSize(expectedInsertions, fpp)));
+	}
+
+	/**
+	 * Creates filter with given number of bits, rounded up to the multiple of 64, and hash functions.
+	 */
+	protected BloomFilter(long bitSize, int hashCount) {
+		long words = (bitSize + 63) >>> 6;
+		if (words <= 0 || words > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid bit size: " + bitSize);
+		}
+		if (hashCount <= 0 || hashCount > 255) {
+			throw new IllegalArgumentException("Invalid hash count: " + hashCount);
+		}
+		this.bits = new AtomicLongArray((int) words);
+		this.bitSize = words << 6;
+		this.hashCount = hashCount;
+	}
+
+	/**
+	 * Returns number of bits for the expected number of insertions and false positive probability.
+	 */
+	public static long optimalBitSize(long expectedInsertions, double fpp) {
+		if (expectedInsertions <= 0) {
+			throw new IllegalArgumentException("Invalid expected insertions: " + expectedInsertions);
+		}
+		if (fpp <= 0 || fpp >= 1) {
+			throw new IllegalArgumentException("Invalid false positive probability: " + fpp);
+		}
+		return (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+	}
+
+	/**
+	 * Returns number of hash functions that minimizes false positive probability.
+	 */
+	public static int optimalHashCount(long expectedInsertions, long bitSize) {
+		return Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+	}
+
+	// ---------------------------------------------------------------- add
+
+	/**
+	 * Adds bytes to the filter. Returns <code>true</code> if filter has changed,
+	 * i.e. the bytes were definitely not added before.
+	 */
+	public boolean add(byte[] value) {
+		return addHash(hash(value));
+	}
+
+	/**
+	 * Adds UTF-8 bytes of the characters to the filter.
+	 * @see #add(byte[])
+	 */
+	public boolean add(CharSequence value) {
+		return addHash(hash(value));
+	}
+
+	/**
+	 * Adds long value to the filter.
+	 * @see #add(byte[])
+	 */
+	public boolean add(long value) {
+		return addHash(hash(value));
+	}
+
+	/**
+	 * Sets bits of the hash.
+	 */
+	boolean addHash(long hash) {
+		long hash2 = fmix64(hash ^ SEED);
+		boolean changed = false;
+		for (int i = 0; i < hashCount; i++) {
+			long index = ((hash + i * hash2) & Long.MAX_VALUE) % bitSize;
+			changed |= setBit(index);
+		}
+		if (changed) {
+			insertionCount.increment();
+		}
+		return changed;
+	}
+
+	private boolean setBit(long index) {
+		int wordIndex = (int) (index >>> 6);
+		long mask = 1L << index;
+		while (true) {
+			long word = bits.get(wordIndex);
+			if ((word & mask) != 0) {
+				return false;
+			}
+			if (bits.compareAndSet(wordIndex, word, word | mask)) {
+				return true;
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- contains
+
+	/**
+	 * Returns <code>true</code> if bytes might have been added to the filter,
+	 * <code>false</code> if they have definitely not been added.
+	 */
+	public boolean contains(byte[] value) {
+		if (value == null) {
+			return false;
+		}
+		return containsHash(hash(value));
+	}
+
+	/**
+	 * Returns <code>true</code> if characters might have been added to the filter.
+	 * @see #contains(byte[])
+	 */
+	public boolean contains(CharSequence value) {
+		if (value == null) {
+			return false;
+		}
+		return containsHash(hash(value));
+	}
+
+	/**
+	 * Returns <code>true</code> if long value might have been added to the filter.
+	 * @see #contains(byte[])
+	 */
+	public boolean contains(long value) {
+		return containsHash(hash(value));
+	}
+
+	boolean containsHash(long hash) {
+		long hash2 = fmix64(hash ^ SEED);
+		for (int i = 0; i < hashCount; i++) {
+			long index = ((hash + i * hash2) & Long.MAX_VALUE) % bitSize;
+			if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ---------------------------------------------------------------- hash
+
+	static long hash(byte[] value) {
+		int h1 = MurmurHash3.murmurhash3_x86_32(value, 0, value.length, 0);
+		int h2 = MurmurHash3.murmurhash3_x86_32(value, 0, value.length, SEED);
+		return ((long) h1 << 32) | (h2 & 0xFFFFFFFFL);
+	}
+
+	static long hash(CharSequence value) {
+		int h1 = MurmurHash3.murmurhash3_x86_32(value, 0, value.length(), 0);
+		int h2 = MurmurHash3.murmurhash3_x86_32(value, 0, value.length(), SEED);
+		return ((long) h1 << 32) | (h2 & 0xFFFFFFFFL);
+	}
+
+	static long hash(long value) {
+		return fmix64(value);
+	}
+
+	/**
+	 * MurmurHash3 64-bit finalizer.
+	 */
+	static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Returns number of bits.
+	 */
+	public long getBitSize() {
+		return bitSize;
+	}
+
+	/**
+	 * Returns number of hash functions.
+	 */
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * Returns number of set bits. Bits are counted on each invocation.
+	 */
+	public long getBitCount() {
+		long count = 0;
+		for (int i = 0; i < bits.length(); i++) {
+			count += Long.bitCount(bits.get(i));
+		}
+		return count;
+	}
+
+	/**
+	 * Returns number of additions that changed the filter. It is
+	 * the lower estimate of the number of distinct added values.
+	 */
+	public long getInsertionCount() {
+		return insertionCount.sum();
+	}
+
+	/**
+	 * Returns memory used by the bits, in bytes.
+	 */
+	public long getMemorySize() {
+		return (long) bits.length() << 3;
+	}
+
+	/**
+	 * Returns number of bits used per inserted value.
+	 */
+	public double getBitsPerElement() {
+		long count = insertionCount.sum();
+		return count == 0 ? 0 : (double) bitSize / count;
+	}
+
+	/**
+	 * Returns the current false positive probability, based on the number of set bits.
+	 */
+	public double getExpectedFpp() {
+		return Math.pow((double) getBitCount() / bitSize, hashCount);
+	}
+
+	// ---------------------------------------------------------------- merge
+
+	/**
+	 * Returns <code>true</code> if other filter has the same size and hash functions,
+	 * so it can be merged into this filter.
+	 */
+	public boolean isCompatible(BloomFilter other) {
+		return bitSize == other.bitSize && hashCount == other.hashCount;
+	}
+
+	/**
+	 * Merges other filter into this one, so this filter contains the union of both.
+	 * Insertion count becomes the larger of both counts, since filters may share values,
+	 * so it remains the lower estimate. Throws <code>IllegalArgumentException</code>
+	 * if filters are not compatible.
+	 */
+	public void merge(BloomFilter other) {
+		if (isCompatible(other) == false) {
+			throw new IllegalArgumentException("Incompatible bloom filter");
+		}
+		for (int i = 0; i < bits.length(); i++) {
+			long otherWord = other.bits.get(i);
+			while (true) {
+				long word = bits.get(i);
+				long merged = word | otherWord;
+				if (merged == word) {
+					break;
+				}
+				if (bits.compareAndSet(i, word, merged)) {
+					break;
+				}
+			}
+		}
+		long otherCount = other.insertionCount.sum();
+		long count = insertionCount.sum();
+		if (otherCount > count) {
+			insertionCount.add(otherCount - count);
+		}
+	}
+
+	// ---------------------------------------------------------------- serialization
+
+	/**
+	 * Writes filter to the stream. Stream is not closed.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.writeInt(MAGIC);
+		dos.writeByte(hashCount);
+		dos.writeInt(bits.length());
+		dos.writeLong(insertionCount.sum());
+		for (int i = 0; i < bits.length(); i++) {
+			dos.writeLong(bits.get(i));
+		}
+		dos.flush();
+	}
+
+	/**
+	 * Reads filter written by {@link #writeTo(OutputStream)}. Stream is not closed.
+	 */
+	public static BloomFilter readFrom(InputStream in) throws IOException {
+		DataInputStream dis = new DataInputStream(in);
+		if (dis.readInt() != MAGIC) {
+			throw new IOException("Not a bloom filter");
+		}
+		int hashCount = dis.readUnsignedByte();
+		int words = dis.readInt();
+		BloomFilter filter = new BloomFilter((long) words << 6, hashCount);
+		filter.insertionCount.add(dis.readLong());
+		for (int i = 0; i < words; i++) {
+			filter.bits.set(i, dis.readLong());
+		}
+		return filter;
+	}
 }
@@ -0,0 +1,401 @@
+package iminto.collection;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe {@link Bag}, for counting from many threads without a global lock.
+ * Elements are kept in a <code>ConcurrentHashMap</code>, which is internally striped,
+ * and each element has its own atomic counter updated with CAS. Counter that drops to
+ * zero is dead: it is removed from the map and never revived, the next addition of
+ * the element creates a new counter.
+ * <p>
+ * Threads adding the same element still contend on its counter, so with skewed
+ * (e.g. Zipfian) counts the additions of the hottest elements are serialized on
+ * a single cache line. Counter can't be striped like {@link StripedCounter}, since
+ * removal must see and drop the whole count atomically. When a few hot elements
+ * take most of the additions and nothing is removed, a <code>ConcurrentHashMap</code>
+ * of <code>StripedCounter</code> instances counts them without contention.
+ * <p>
+ * Bag-wide operations are not atomic. {@link #size()} sums the counters, so under
+ * concurrent updates it is an approximation. Iterators are weakly consistent:
+ * they never throw <code>ConcurrentModificationException</code> and reflect
+ * counts of the elements at the moment they are reached.
+ * <p>
+ * Bag does not permit <code>null</code> elements.
+ */
+public class ConcurrentHashBag<E> extends AbstractCollection<E> implements Bag<E> {
+
+	protected final ConcurrentMap<E, AtomicInteger> map;
+
+	public ConcurrentHashBag() {
+		this(16, 16);
+	}
+
+	/**
+	 * Constructs an empty bag for expected number of distinct elements and
+	 * number of concurrently updating threads.
+	 */
+	public ConcurrentHashBag(int expectedDistinct, int concurrencyLevel) {
+		map = new ConcurrentHashMap<E, AtomicInteger>(expectedDistinct, 0.75f, concurrencyLevel);
+	}
+
+	public ConcurrentHashBag(Collection<? extends E> coll) {
+		this();
+		addAll(coll);
+	}
+
+	// ---------------------------------------------------------------- size
+
+	/**
+	 * Returns the number of elements in the bag, as the sum of the current counts.
+	 * When bag is concurrently modified, the result is an approximation.
+	 */
+	@Override
+	public int size() {
+		long total = 0;
+		for (AtomicInteger counter : map.values()) {
+			total += counter.get();
+		}
+		return total > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) total;
+	}
+
+	/**
+	 * Returns <code>true</code> if the bag is empty.
+	 */
+	@Override
+	public boolean isEmpty() {
+		for (AtomicInteger counter : map.values()) {
+			if (counter.get() > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of occurrence of the given element in bag.
+	 */
+	public int getCount(Object object) {
+		if (object == null) {
+			return 0;
+		}
+		AtomicInteger counter = map.get(object);
+		return counter == null ? 0 : counter.get();
+	}
+
+	// ---------------------------------------------------------------- contains
+
+	/**
+	 * Determines if the bag contains the given element.
+	 */
+	@Override
+	public boolean contains(Object object) {
+		return getCount(object) > 0;
+	}
+
+	/**
+	 * Determines if the bag contains all the collection elements, respecting
+	 * cardinality when the collection is a bag.
+	 */
+	@Override
+	public boolean containsAll(Collection<?> coll) {
+		if (coll instanceof Bag) {
+			Bag<?> other = (Bag<?>) coll;
+			for (Object current : other.uniqueSet()) {
+				if (getCount(current) < other.getCount(current)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		for (Object current : coll) {
+			if (getCount(current) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ---------------------------------------------------------------- add
+
+	/**
+	 * Adds a new element to the bag, incrementing its count.
+	 *
+	 * @return <code>true</code> if the object was not already in the bag
+	 */
+	@Override
+	public boolean add(E object) {
+		return add(object, 1);
+	}
+
+	/**
+	 * Adds copies of the element to the bag, incrementing its count.
+	 *
+	 * @return <code>true</code> if the object was not already in the bag
+	 */
+	public boolean add(E object, int nCopies) {
+		if (object == null) {
+			throw new IllegalArgumentException("Null bag element");
+		}
+		if (nCopies <= 0) {
+			throw new IllegalArgumentException("Invalid number of bag element copies: " + nCopies);
+		}
+		while (true) {
+			AtomicInteger counter = map.get(object);
+			if (counter == null) {
+				counter = map.putIfAbsent(object, new AtomicInteger(nCopies));
+				if (counter == null) {
+					return true;
+				}
+			}
+			while (true) {
+				int count = counter.get();
+				if (count == 0) {
+					// dead counter, replace it with a new one
+					AtomicInteger newCounter = new AtomicInteger(nCopies);
+					if (map.putIfAbsent(object, newCounter) == null || map.replace(object, counter, newCounter)) {
+						return true;
+					}
+					break;		// other thread has replaced it, start over
+				}
+				if (count > Integer.MAX_VALUE - nCopies) {
+					throw new IllegalArgumentException("Bag element count overflow: " + object);
+				}
+				if (counter.compareAndSet(count, count + nCopies)) {
+					return false;
+				}
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- remove
+
+	/**
+	 * Removes all elements from the bag.
+	 */
+	@Override
+	public void clear() {
+		map.clear();
+	}
+
+	/**
+	 * Removes all copies of the specified object from the bag.
+	 *
+	 * @return <code>true</code> if the bag changed
+	 */
+	@Override
+	public boolean remove(Object object) {
+		return remove(object, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Removes a specified number of copies of an object from the bag.
+	 *
+	 * @return <code>true</code> if the bag changed
+	 */
+	public boolean remove(Object object, int nCopies) {
+		if (nCopies <= 0) {
+			throw new IllegalArgumentException("Invalid number of bag element copies: " + nCopies);
+		}
+		if (object == null) {
+			return false;
+		}
+		AtomicInteger counter = map.get(object);
+		if (counter == null) {
+			return false;
+		}
+		while (true) {
+			int count = counter.get();
+			if (count == 0) {
+				return false;
+			}
+			int newCount = nCopies >= count ? 0 : count - nCopies;
+			if (counter.compareAndSet(count, newCount)) {
+				if (newCount == 0) {
+					map.remove(object, counter);
+				}
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Removes objects from the bag according to their count in the specified collection.
+	 *
+	 * @return <code>true</code> if the bag changed
+	 */
+	@Override
+	public boolean removeAll(Collection<?> coll) {
+		boolean result = false;
+		if (coll != null) {
+			for (Object c : coll) {
+				boolean changed = remove(c, 1);
+				result = result || changed;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes any members of the bag that are not in the given collection,
+	 * respecting cardinality when the collection is a bag.
+	 *
+	 * @return <code>true</code> if the bag changed
+	 */
+	@Override
+	public boolean retainAll(Collection<?> coll) {
+		Bag<?> other = coll instanceof Bag ? (Bag<?>) coll : null;
+		boolean result = false;
+		for (E current : map.keySet()) {
+			int retain = other != null ? other.getCount(current) : (coll.contains(current) ? 1 : 0);
+			int excess = getCount(current) - retain;
+			if (excess > 0) {
+				boolean changed = remove(current, excess);
+				result = result || changed;
+			}
+		}
+		return result;
+	}
+
+	// ---------------------------------------------------------------- iterator
+
+	/**
+	 * Returns weakly consistent iterator over the bag elements.
+	 * Elements present in the Bag more than once will be returned repeatedly.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new BagIterator();
+	}
+
+	/**
+	 * Iterator over the map entries. Count of an element is read when it is reached.
+	 */
+	class BagIterator implements Iterator<E> {
+		private final Iterator<Map.Entry<E, AtomicInteger>> entryIterator = map.entrySet().iterator();
+		private E current;
+		private int itemCount;
+		private boolean canRemove;
+
+		public boolean hasNext() {
+			while (itemCount == 0 && entryIterator.hasNext()) {
+				Map.Entry<E, AtomicInteger> entry = entryIterator.next();
+				current = entry.getKey();
+				itemCount = entry.getValue().get();
+			}
+			return itemCount > 0;
+		}
+
+		public E next() {
+			if (hasNext() == false) {
+				throw new NoSuchElementException();
+			}
+			itemCount--;
+			canRemove = true;
+			return current;
+		}
+
+		public void remove() {
+			if (canRemove == false) {
+				throw new IllegalStateException();
+			}
+			ConcurrentHashBag.this.remove(current, 1);
+			canRemove = false;
+		}
+	}
+
+	// ---------------------------------------------------------------- convert
+
+	/**
+	 * Returns a set view of unique elements of the bag.
+	 * Removing from the set removes all copies of the element.
+	 */
+	public Set<E> uniqueSet() {
+		return map.keySet();
+	}
+
+	/**
+	 * Returns a snapshot of the bag, as not thread-safe {@link HashBag}.
+	 */
+	public HashBag<E> toHashBag() {
+		HashBag<E> bag = new HashBag<E>();
+		for (Map.Entry<E, AtomicInteger> entry : map.entrySet()) {
+			int count = entry.getValue().get();
+			if (count > 0) {
+				bag.add(entry.getKey(), count);
+			}
+		}
+		return bag;
+	}
+
+	// ---------------------------------------------------------------- object
+
+	/**
+	 * Compares bag to another. This Bag equals another Bag if it contains
+	 * the same number of occurrences of the same elements.
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (object == this) {
+			return true;
+		}
+		if (object instanceof Bag == false) {
+			return false;
+		}
+		Bag<?> other = (Bag<?>) object;
+		if (other.size() != size()) {
+			return false;
+		}
+		for (Map.Entry<E, AtomicInteger> entry : map.entrySet()) {
+			if (other.getCount(entry.getKey()) != entry.getValue().get()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns hash code compatible with {@link HashBag#hashCode()}.
+	 */
+	@Override
+	public int hashCode() {
+		int total = 0;
+		for (Map.Entry<E, AtomicInteger> entry : map.entrySet()) {
+			int count = entry.getValue().get();
+			if (count > 0) {
+				total += entry.getKey().hashCode() ^ count;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Implement a toString() method suitable for debugging.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append('[');
+		for (Map.Entry<E, AtomicInteger> entry : map.entrySet()) {
+			int count = entry.getValue().get();
+			if (count == 0) {
+				continue;
+			}
+			if (buf.length() > 1) {
+				buf.append(',');
+			}
+			buf.append(count);
+			buf.append(':');
+			buf.append(entry.getKey());
+		}
+		buf.append(']');
+		return buf.toString();
+	}
+}
@@ -0,0 +1,320 @@
+package iminto.collection;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Count-min sketch: approximate frequencies of values in a stream, in fixed memory.
+ * Sketch has <code>depth</code> rows of <code>width</code> counters; each value is
+ * counted in one counter per row and its frequency is estimated as the minimum of them.
+ * Estimation is never below the real count, and with probability <code>confidence</code>
+ * it exceeds the real count by at most <code>epsilon * size()</code>.
+ * <p>
+ * Counters are updated conservatively: only counters below the new estimation are
+ * raised, which considerably reduces the overestimation. Sketches of the same dimensions
+ * may be merged, e.g. partial sketches from worker threads, and written to a stream.
+ * <p>
+ * Sketch is synchronized.
+ */
+public class CountMinSketch {
+
+	private static final int MAGIC = 0xC0CA5E7C;
+	private static final int SEED = 0x9747b28c;
+
+	protected final int depth;
+	protected final int width;
+	protected final long[] table;
+	protected long size;
+
+	/**
+	 * Creates sketch with the error bound relative to the total count and the
+	 * probability the bound holds, e.g. <code>0.001</code> and <code>0.99</code>.
+	 */
+	public CountMinSketch(double epsilon, double confidence) {
+		this(depthOf(confidence), widthOf(epsilon));
+	}
+
+	/**
+	 * Creates sketch with given number of rows and counters per row.
+	 */
+	public CountMinSketch(int depth, int width) {
+		if (depth <= 0 || depth > 255) {
+			throw new IllegalArgumentException("Invalid depth: " + depth);
+		}
+		if (width <= 0 || (long) depth * width > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid width: " + width);
+		}
+		this.depth = depth;
+		this.width = width;
+		this.table = new long[depth * width];
+	}
+
+	private static int depthOf(double confidence) {
+		if (confidence <= 0 || confidence >= 1) {
+			throw new IllegalArgumentException("Invalid confidence: " + confidence);
+		}
+		return (int) Math.ceil(-Math.log(1 - confidence));
+	}
+
+	private static int widthOf(double epsilon) {
+		if (epsilon <= 0 || epsilon >= 1) {
+			throw new IllegalArgumentException("Invalid epsilon: " + epsilon);
+		}
+		return (int) Math.ceil(Math.E / epsilon);
+	}
+
+	// ---------------------------------------------------------------- add
+
+	/**
+	 * Counts bytes once.
+	 */
+	public void add(byte[] value) {
+		addHash(BloomFilter.hash(value), 1);
+	}
+
+	/**
+	 * Counts bytes <code>count</code> times.
+	 */
+	public void add(byte[] value, long count) {
+		addHash(BloomFilter.hash(value), count);
+	}
+
+	/**
+	 * Counts UTF-8 bytes of the characters once.
+	 */
+	public void add(CharSequence value) {
+		addHash(BloomFilter.hash(value), 1);
+	}
+
+	/**
+	 * Counts UTF-8 bytes of the characters <code>count</code> times.
+	 */
+	public void add(CharSequence value, long count) {
+		addHash(BloomFilter.hash(value), count);
+	}
+
+	/**
+	 * Counts long value once.
+	 */
+	public void add(long value) {
+		addHash(BloomFilter.hash(value), 1);
+	}
+
+	/**
+	 * Counts long value <code>count</code> times.
+	 */
+	public void add(long value, long count) {
+		addHash(BloomFilter.hash(value), count);
+	}
+
+	/**
+	 * Conservative update: raises the counters of the hash only up to the new estimation.
+	 */
+	private synchronized void addHash(long hash, long count) {
+		if (count <= 0) {
+			throw new IllegalArgumentException("Invalid count: " + count);
+		}
+		long estimation = estimateHash(hash) + count;
+		long hash2 = BloomFilter.fmix64(hash ^ SEED);
+		for (int i = 0; i < depth; i++) {
+			int index = index(hash, hash2, i);
+			if (table[index] < estimation) {
+				table[index] = estimation;
+			}
+		}
+		size += count;
+	}
+
+	// ---------------------------------------------------------------- estimate
+
+	/**
+	 * Returns estimated count of the bytes.
+	 */
+	public long estimateCount(byte[] value) {
+		if (value == null) {
+			return 0;
+		}
+		return estimate(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Returns estimated count of the characters.
+	 */
+	public long estimateCount(CharSequence value) {
+		if (value == null) {
+			return 0;
+		}
+		return estimate(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Returns estimated count of the long value.
+	 */
+	public long estimateCount(long value) {
+		return estimate(BloomFilter.hash(value));
+	}
+
+	private synchronized long estimate(long hash) {
+		return estimateHash(hash);
+	}
+
+	private long estimateHash(long hash) {
+		long hash2 = BloomFilter.fmix64(hash ^ SEED);
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < depth; i++) {
+			long count = table[index(hash, hash2, i)];
+			if (count < min) {
+				min = count;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Returns index of the counter in the row.
+	 */
+	private int index(long hash, long hash2, int row) {
+		return row * width + (int) (((hash + row * hash2) & Long.MAX_VALUE) % width);
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Returns number of rows.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns number of counters per row.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the total count of all values.
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Returns the error bound relative to the total count.
+	 */
+	public double getRelativeError() {
+		return Math.E / width;
+	}
+
+	/**
+	 * Returns the probability that the error bound holds.
+	 */
+	public double getConfidence() {
+		return 1 - Math.exp(-depth);
+	}
+
+	/**
+	 * Returns memory used by the counters, in bytes.
+	 */
+	public long getMemorySize() {
+		return (long) table.length << 3;
+	}
+
+	// ---------------------------------------------------------------- merge
+
+	/**
+	 * Returns <code>true</code> if other sketch has the same dimensions.
+	 */
+	public boolean isCompatible(CountMinSketch other) {
+		return depth == other.depth && width == other.width;
+	}
+
+	/**
+	 * Merges other sketch into this one, so this sketch counts values of both.
+	 * Throws <code>IllegalArgumentException</code> if sketches are not compatible.
+	 */
+	public void merge(CountMinSketch other) {
+		if (isCompatible(other) == false) {
+			throw new IllegalArgumentException("Incompatible count-min sketch");
+		}
+		long[] otherTable;
+		long otherSize;
+		synchronized (other) {
+			otherTable = other.table.clone();
+			otherSize = other.size;
+		}
+		synchronized (this) {
+			for (int i = 0; i < table.length; i++) {
+				table[i] += otherTable[i];
+			}
+			size += otherSize;
+		}
+	}
+
+	// ---------------------------------------------------------------- serialization
+
+	/**
+	 * Writes sketch to the stream. Counters are written as variable-length
+	 * numbers, so small counts take one byte. Stream is not closed.
+	 */
+	public synchronized void writeTo(OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.writeInt(MAGIC);
+		dos.writeByte(depth);
+		dos.writeInt(width);
+		writeVarLong(dos, size);
+		for (long count : table) {
+			writeVarLong(dos, count);
+		}
+		dos.flush();
+	}
+
+	/**
+	 * Reads sketch written by {@link #writeTo(OutputStream)}. Stream is not closed.
+	 */
+	public static CountMinSketch readFrom(InputStream in) throws IOException {
+		DataInputStream dis = new DataInputStream(in);
+		if (dis.readInt() != MAGIC) {
+			throw new IOException("Not a count-min sketch");
+		}
+		int depth = dis.readUnsignedByte();
+		int width = dis.readInt();
+		CountMinSketch sketch = new CountMinSketch(depth, width);
+		sketch.size = readVarLong(dis);
+		for (int i = 0; i < sketch.table.length; i++) {
+			sketch.table[i] = readVarLong(dis);
+		}
+		return sketch;
+	}
+
+	/**
+	 * Writes non-negative long in 7-bit groups, least significant first.
+	 */
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Reads long written by {@link #writeVarLong(DataOutput, long)}.
+	 */
+	static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length number");
+	}
+}
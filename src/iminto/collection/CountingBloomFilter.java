@@ -0,0 +1,209 @@
+package iminto.collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter that supports removal. Instead of bits, filter keeps 4-bit counters,
+ * sixteen of them packed in one <code>long</code>, so it takes four times more memory
+ * than {@link BloomFilter} for the same false positive probability.
+ * <p>
+ * Counter that reaches 15 stays saturated: it is not decremented anymore, since the
+ * exact count is lost. Only values that were added may be removed, otherwise other
+ * values may be reported as not contained.
+ * <p>
+ * Filter is thread-safe: counters are updated with CAS, without locking.
+ */
+public class CountingBloomFilter {
+
+	private static final int SEED = 0x9747b28c;
+	private static final long MAX_COUNT = 15;
+
+	protected final AtomicLongArray counters;
+	protected final long counterCount;
+	protected final int hashCount;
+	protected final AtomicLong size = new AtomicLong();
+
+	/**
+	 * Creates filter for the expected number of values and false positive probability.
+	 */
+	public CountingBloomFilter(long expectedInsertions, double fpp) {
+		long count = BloomFilter.optimalBitSize(expectedInsertions, fpp);
+		long words = (count + 15) >>> 4;
+		if (words > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many expected insertions: " + expectedInsertions);
+		}
+		this.counters = new AtomicLongArray((int) words);
+		this.counterCount = words << 4;
+		this.hashCount = BloomFilter.optimalHashCount(expectedInsertions, counterCount);
+	}
+
+	// ---------------------------------------------------------------- add
+
+	/**
+	 * Adds bytes to the filter.
+	 */
+	public void add(byte[] value) {
+		addHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Adds UTF-8 bytes of the characters to the filter.
+	 */
+	public void add(CharSequence value) {
+		addHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Adds long value to the filter.
+	 */
+	public void add(long value) {
+		addHash(BloomFilter.hash(value));
+	}
+
+	private void addHash(long hash) {
+		long hash2 = BloomFilter.fmix64(hash ^ SEED);
+		for (int i = 0; i < hashCount; i++) {
+			updateCounter(((hash + i * hash2) & Long.MAX_VALUE) % counterCount, 1);
+		}
+		size.incrementAndGet();
+	}
+
+	// ---------------------------------------------------------------- remove
+
+	/**
+	 * Removes bytes from the filter. Returns <code>false</code> if filter
+	 * does not contain the bytes, in which case nothing is changed.
+	 */
+	public boolean remove(byte[] value) {
+		return removeHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Removes UTF-8 bytes of the characters from the filter.
+	 * @see #remove(byte[])
+	 */
+	public boolean remove(CharSequence value) {
+		return removeHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Removes long value from the filter.
+	 * @see #remove(byte[])
+	 */
+	public boolean remove(long value) {
+		return removeHash(BloomFilter.hash(value));
+	}
+
+	private boolean removeHash(long hash) {
+		if (containsHash(hash) == false) {
+			return false;
+		}
+		long hash2 = BloomFilter.fmix64(hash ^ SEED);
+		for (int i = 0; i < hashCount; i++) {
+			updateCounter(((hash + i * hash2) & Long.MAX_VALUE) % counterCount, -1);
+		}
+		size.decrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Adds delta to the counter. Saturated counters and counters at zero are not decremented.
+	 */
+	private void updateCounter(long index, int delta) {
+		int wordIndex = (int) (index >>> 4);
+		int shift = (int) (index & 15) << 2;
+		while (true) {
+			long word = counters.get(wordIndex);
+			long count = (word >>> shift) & 0xF;
+			if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+				return;
+			}
+			long newWord = (word & ~(0xFL << shift)) | ((count + delta) << shift);
+			if (counters.compareAndSet(wordIndex, word, newWord)) {
+				return;
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- contains
+
+	/**
+	 * Returns <code>true</code> if bytes might be in the filter,
+	 * <code>false</code> if they are definitely not.
+	 */
+	public boolean contains(byte[] value) {
+		if (value == null) {
+			return false;
+		}
+		return containsHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Returns <code>true</code> if characters might be in the filter.
+	 * @see #contains(byte[])
+	 */
+	public boolean contains(CharSequence value) {
+		if (value == null) {
+			return false;
+		}
+		return containsHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Returns <code>true</code> if long value might be in the filter.
+	 * @see #contains(byte[])
+	 */
+	public boolean contains(long value) {
+		return containsHash(BloomFilter.hash(value));
+	}
+
+	private boolean containsHash(long hash) {
+		long hash2 = BloomFilter.fmix64(hash ^ SEED);
+		for (int i = 0; i < hashCount; i++) {
+			long index = ((hash + i * hash2) & Long.MAX_VALUE) % counterCount;
+			long word = counters.get((int) (index >>> 4));
+			if (((word >>> ((int) (index & 15) << 2)) & 0xF) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Returns number of counters.
+	 */
+	public long getCounterCount() {
+		return counterCount;
+	}
+
+	/**
+	 * Returns number of hash functions.
+	 */
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * Returns number of values in the filter: added minus removed.
+	 */
+	public long size() {
+		return size.get();
+	}
+
+	/**
+	 * Returns memory used by the counters, in bytes.
+	 */
+	public long getMemorySize() {
+		return (long) counters.length() << 3;
+	}
+
+	/**
+	 * Returns number of bits used per value in the filter.
+	 */
+	public double getBitsPerElement() {
+		long count = size.get();
+		return count <= 0 ? 0 : (double) (counterCount << 2) / count;
+	}
+}
@@ -0,0 +1,305 @@
+package iminto.collection;
+import java.util.Random;
+
+/**
+ * Cuckoo filter: approximate set membership with removal. For each value only a
+ * 16-bit fingerprint is stored, in one of two candidate buckets; four fingerprints
+ * make one bucket, packed in a <code>long</code>. When both buckets are full,
+ * stored fingerprints are relocated to their alternate buckets.
+ * <p>
+ * False positive probability is about 8 / 2^16, i.e. 0.012%, and doesn't depend on
+ * the size. Compared to {@link CountingBloomFilter} it takes much less memory per value
+ * and is faster on lookup, but the insertion may fail when the filter is almost full.
+ * Only values that were added may be removed.
+ * <p>
+ * Filter is synchronized.
+ */
+public class CuckooFilter {
+
+	private static final int SLOTS = 4;
+	private static final int FINGERPRINT_BITS = 16;
+	private static final long FINGERPRINT_MASK = (1L << FINGERPRINT_BITS) - 1;
+	private static final int MAX_KICKS = 500;
+	private static final double LOAD_FACTOR = 0.95;
+
+	protected final long[] buckets;
+	protected final int bucketMask;
+	protected final Random random = new Random();
+	protected long size;
+
+	// fingerprint that could not be placed after the last relocation
+	protected int victimIndex;
+	protected long victimFingerprint;
+
+	/**
+	 * Creates filter for the expected number of values.
+	 */
+	public CuckooFilter(long expectedInsertions) {
+		if (expectedInsertions <= 0) {
+			throw new IllegalArgumentException("Invalid expected insertions: " + expectedInsertions);
+		}
+		long bucketCount = 1;
+		while (bucketCount * SLOTS * LOAD_FACTOR < expectedInsertions) {
+			bucketCount <<= 1;
+		}
+		if (bucketCount > (1 << 30)) {
+			throw new IllegalArgumentException("Too many expected insertions: " + expectedInsertions);
+		}
+		this.buckets = new long[(int) bucketCount];
+		this.bucketMask = (int) bucketCount - 1;
+	}
+
+	// ---------------------------------------------------------------- add
+
+	/**
+	 * Adds bytes to the filter. Returns <code>false</code> if the filter is full.
+	 */
+	public boolean add(byte[] value) {
+		return addHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Adds UTF-8 bytes of the characters to the filter.
+	 * @see #add(byte[])
+	 */
+	public boolean add(CharSequence value) {
+		return addHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Adds long value to the filter.
+	 * @see #add(byte[])
+	 */
+	public boolean add(long value) {
+		return addHash(BloomFilter.hash(value));
+	}
+
+	private synchronized boolean addHash(long hash) {
+		if (victimFingerprint != 0) {
+			return false;
+		}
+		long fingerprint = fingerprint(hash);
+		int index1 = (int) hash & bucketMask;
+		if (insert(index1, fingerprint) || insert(alternateIndex(index1, fingerprint), fingerprint)) {
+			size++;
+			return true;
+		}
+
+		int index = random.nextBoolean() ? index1 : alternateIndex(index1, fingerprint);
+		for (int kick = 0; kick < MAX_KICKS; kick++) {
+			int slot = random.nextInt(SLOTS);
+			long kicked = getSlot(buckets[index], slot);
+			buckets[index] = setSlot(buckets[index], slot, fingerprint);
+			fingerprint = kicked;
+			index = alternateIndex(index, fingerprint);
+			if (insert(index, fingerprint)) {
+				size++;
+				return true;
+			}
+		}
+		// value is still in the filter, as the victim
+		victimIndex = index;
+		victimFingerprint = fingerprint;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Inserts fingerprint into the free slot of the bucket.
+	 */
+	private boolean insert(int index, long fingerprint) {
+		long bucket = buckets[index];
+		for (int slot = 0; slot < SLOTS; slot++) {
+			if (getSlot(bucket, slot) == 0) {
+				buckets[index] = setSlot(bucket, slot, fingerprint);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// ---------------------------------------------------------------- remove
+
+	/**
+	 * Removes bytes from the filter. Returns <code>false</code> if filter
+	 * does not contain the bytes.
+	 */
+	public boolean remove(byte[] value) {
+		return removeHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Removes UTF-8 bytes of the characters from the filter.
+	 * @see #remove(byte[])
+	 */
+	public boolean remove(CharSequence value) {
+		return removeHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Removes long value from the filter.
+	 * @see #remove(byte[])
+	 */
+	public boolean remove(long value) {
+		return removeHash(BloomFilter.hash(value));
+	}
+
+	private synchronized boolean removeHash(long hash) {
+		long fingerprint = fingerprint(hash);
+		int index1 = (int) hash & bucketMask;
+		int index2 = alternateIndex(index1, fingerprint);
+		if (delete(index1, fingerprint) || delete(index2, fingerprint)) {
+			size--;
+			if (victimFingerprint != 0) {
+				// there is a room for the victim now
+				long victim = victimFingerprint;
+				victimFingerprint = 0;
+				size--;
+				addVictim(victimIndex, victim);
+			}
+			return true;
+		}
+		if (victimFingerprint == fingerprint && (victimIndex == index1 || victimIndex == index2)) {
+			victimFingerprint = 0;
+			size--;
+			return true;
+		}
+		return false;
+	}
+
+	private void addVictim(int index, long fingerprint) {
+		if (insert(index, fingerprint) || insert(alternateIndex(index, fingerprint), fingerprint)) {
+			size++;
+			return;
+		}
+		victimIndex = index;
+		victimFingerprint = fingerprint;
+		size++;
+	}
+
+	private boolean delete(int index, long fingerprint) {
+		long bucket = buckets[index];
+		for (int slot = 0; slot < SLOTS; slot++) {
+			if (getSlot(bucket, slot) == fingerprint) {
+				buckets[index] = setSlot(bucket, slot, 0);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// ---------------------------------------------------------------- contains
+
+	/**
+	 * Returns <code>true</code> if bytes might be in the filter,
+	 * <code>false</code> if they are definitely not.
+	 */
+	public boolean contains(byte[] value) {
+		if (value == null) {
+			return false;
+		}
+		return containsHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Returns <code>true</code> if characters might be in the filter.
+	 * @see #contains(byte[])
+	 */
+	public boolean contains(CharSequence value) {
+		if (value == null) {
+			return false;
+		}
+		return containsHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Returns <code>true</code> if long value might be in the filter.
+	 * @see #contains(byte[])
+	 */
+	public boolean contains(long value) {
+		return containsHash(BloomFilter.hash(value));
+	}
+
+	private synchronized boolean containsHash(long hash) {
+		long fingerprint = fingerprint(hash);
+		int index1 = (int) hash & bucketMask;
+		int index2 = alternateIndex(index1, fingerprint);
+		if (victimFingerprint == fingerprint && (victimIndex == index1 || victimIndex == index2)) {
+			return true;
+		}
+		return hasFingerprint(buckets[index1], fingerprint) || hasFingerprint(buckets[index2], fingerprint);
+	}
+
+	private static boolean hasFingerprint(long bucket, long fingerprint) {
+		for (int slot = 0; slot < SLOTS; slot++) {
+			if (getSlot(bucket, slot) == fingerprint) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// ---------------------------------------------------------------- buckets
+
+	/**
+	 * Returns non-zero fingerprint from the high bits of the hash,
+	 * which are not used for the bucket index.
+	 */
+	private static long fingerprint(long hash) {
+		long fingerprint = (hash >>> 32) & FINGERPRINT_MASK;
+		return fingerprint == 0 ? 1 : fingerprint;
+	}
+
+	/**
+	 * Returns the other bucket of the fingerprint. Works in both directions.
+	 */
+	private int alternateIndex(int index, long fingerprint) {
+		return (index ^ (int) BloomFilter.fmix64(fingerprint)) & bucketMask;
+	}
+
+	private static long getSlot(long bucket, int slot) {
+		return (bucket >>> (slot * FINGERPRINT_BITS)) & FINGERPRINT_MASK;
+	}
+
+	private static long setSlot(long bucket, int slot, long fingerprint) {
+		int shift = slot * FINGERPRINT_BITS;
+		return (bucket & ~(FINGERPRINT_MASK << shift)) | (fingerprint << shift);
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Returns number of values in the filter.
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Returns <code>true</code> if filter is full and the next addition will fail.
+	 */
+	public synchronized boolean isFull() {
+		return victimFingerprint != 0;
+	}
+
+	/**
+	 * Returns number of values the filter can hold.
+	 */
+	public long getCapacity() {
+		return (long) buckets.length * SLOTS;
+	}
+
+	/**
+	 * Returns memory used by the buckets, in bytes.
+	 */
+	public long getMemorySize() {
+		return (long) buckets.length << 3;
+	}
+
+	/**
+	 * Returns number of bits used per value in the filter.
+	 */
+	public synchronized double getBitsPerElement() {
+		return size == 0 ? 0 : (double) ((long) buckets.length << 6) / size;
+	}
+}
@@ -1,4 +1,5 @@
 package iminto.collection;
+import java.util.Arrays;
 
 /**
  * ArrayList of double primitives. For just buffering values, consider
@@ -173,6 +174,25 @@ public class DoubleArrayList {
 		size += dataLen;
 	}
 
+	/**
+	 * Appends <code>length</code> elements of the array, starting at the offset.
+	 */
+	public void addAll(double[] data, int offset, int length) {
+		if (offset < 0 || length < 0 || offset > data.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		ensureCapacity(size + length);
+		System.arraycopy(data, offset, array, size, length);
+		size += length;
+	}
+
+	/**
+	 * Appends all of the elements of the other list.
+	 */
+	public void addAll(DoubleArrayList list) {
+		addAll(list.array, 0, list.size);
+	}
+
 	/**
 	 * Removes all of the elements from this list.
 	 * The list will be empty after this call returns.
@@ -229,6 +249,124 @@ public class DoubleArrayList {
 
 
 
+	// ---------------------------------------------------------------- bulk
+
+	/**
+	 * Procedure applied to the list elements.
+	 */
+	public interface Procedure {
+		void apply(double value);
+	}
+
+	/**
+	 * Condition on the list elements.
+	 */
+	public interface Predicate {
+		boolean test(double value);
+	}
+
+	/**
+	 * Applies the procedure to all elements, in order.
+	 */
+	public void forEach(Procedure procedure) {
+		for (int i = 0; i < size; i++) {
+			procedure.apply(array[i]);
+		}
+	}
+
+	/**
+	 * Applies the procedure to the elements between fromIndex, inclusive, and toIndex, exclusive.
+	 * Disjoint ranges may be processed by different threads, when list is not modified.
+	 */
+	public void forEach(int fromIndex, int toIndex, Procedure procedure) {
+		checkRange(fromIndex, toIndex);
+		for (int i = fromIndex; i < toIndex; i++) {
+			procedure.apply(array[i]);
+		}
+	}
+
+	/**
+	 * Removes all elements that satisfy the predicate, preserving the order of others.
+	 * Returns <code>true</code> if any element was removed.
+	 */
+	public boolean removeIf(Predicate predicate) {
+		int newSize = 0;
+		for (int i = 0; i < size; i++) {
+			double value = array[i];
+			if (predicate.test(value) == false) {
+				array[newSize++] = value;
+			}
+		}
+		boolean removed = newSize != size;
+		size = newSize;
+		return removed;
+	}
+
+	/**
+	 * Sorts the elements in ascending order.
+	 */
+	public void sort() {
+		Arrays.sort(array, 0, size);
+	}
+
+	/**
+	 * Searches sorted list for the element, using binary search.
+	 * Returns index of the element or <code>(-(insertion point) - 1)</code>
+	 * if list doesn't contain it.
+	 */
+	public int binarySearch(double key) {
+		return Arrays.binarySearch(array, 0, size, key);
+	}
+
+	/**
+	 * Returns the sum of all elements.
+	 */
+	public double sum() {
+		return sum(0, size);
+	}
+
+	/**
+	 * Returns the sum of the elements between fromIndex, inclusive, and toIndex, exclusive.
+	 */
+	public double sum(int fromIndex, int toIndex) {
+		checkRange(fromIndex, toIndex);
+		double sum = 0;
+		for (int i = fromIndex; i < toIndex; i++) {
+			sum += array[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the smallest element.
+	 * @throws IllegalStateException if list is empty
+	 */
+	public double min() {
+		checkNotEmpty();
+		double min = array[0];
+		for (int i = 1; i < size; i++) {
+			if (array[i] < min) {
+				min = array[i];
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Returns the largest element.
+	 * @throws IllegalStateException if list is empty
+	 */
+	public double max() {
+		checkNotEmpty();
+		double max = array[0];
+		for (int i = 1; i < size; i++) {
+			if (array[i] > max) {
+				max = array[i];
+			}
+		}
+		return max;
+	}
+
 	// ---------------------------------------------------------------- capacity
 
 	/**
@@ -271,4 +409,17 @@ public class DoubleArrayList {
 		}
 	}
 
+	private void checkRange(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || fromIndex > toIndex || toIndex > size) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	private void checkNotEmpty() {
+		if (size == 0) {
+			throw new IllegalStateException("Empty list");
+		}
+	}
+
+
 }
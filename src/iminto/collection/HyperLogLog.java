@@ -0,0 +1,308 @@
+package iminto.collection;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog cardinality estimator: approximate number of distinct values in a stream,
+ * in fixed memory. Precision <code>p</code> gives <code>2^p</code> one-byte registers and
+ * the standard error of about <code>1.04 / sqrt(2^p)</code>, e.g. 0.8% for the default
+ * precision of 14, which takes 16KB.
+ * <p>
+ * As in HLL++, estimator starts with the sparse representation: only touched registers
+ * are kept, with the higher precision of 25 bits, and the cardinality is calculated by
+ * linear counting. Small sets so take little memory and are estimated almost exactly.
+ * When sparse representation grows over the size of the dense registers, it is
+ * converted. Values are hashed to 64 bits, so there is no large range correction.
+ * <p>
+ * Estimators of the same precision may be merged, e.g. partial estimators from
+ * worker threads, and written to a stream. Estimator is synchronized.
+ */
+public class HyperLogLog {
+
+	private static final int MAGIC = 0x4C4C0F1E;
+	private static final int SPARSE_PRECISION = 25;
+	private static final int DEFAULT_PRECISION = 14;
+
+	protected final int precision;
+	protected byte[] registers;				// null while sparse
+	protected IntIntHashMap sparse;			// sparse index to register value, null when dense
+	protected final int sparseLimit;
+
+	/**
+	 * Creates estimator with the default precision of 14.
+	 */
+	public HyperLogLog() {
+		this(DEFAULT_PRECISION);
+	}
+
+	/**
+	 * Creates estimator with given precision, between 4 and 18.
+	 */
+	public HyperLogLog(int precision) {
+		if (precision < 4 || precision > 18) {
+			throw new IllegalArgumentException("Invalid precision: " + precision);
+		}
+		this.precision = precision;
+		// sparse entry takes about 10 bytes in the hash map, dense register takes one byte
+		this.sparseLimit = (1 << precision) / 10;
+		this.sparse = new IntIntHashMap();
+	}
+
+	// ---------------------------------------------------------------- add
+
+	/**
+	 * Adds bytes to the estimator. Returns <code>true</code> if the estimator has changed.
+	 */
+	public boolean add(byte[] value) {
+		return addHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Adds UTF-8 bytes of the characters to the estimator.
+	 * @see #add(byte[])
+	 */
+	public boolean add(CharSequence value) {
+		return addHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Adds long value to the estimator.
+	 * @see #add(byte[])
+	 */
+	public boolean add(long value) {
+		return addHash(BloomFilter.hash(value));
+	}
+
+	private synchronized boolean addHash(long hash) {
+		if (sparse != null) {
+			int index = (int) (hash >>> (64 - SPARSE_PRECISION));
+			int rank = rank(hash << SPARSE_PRECISION, 64 - SPARSE_PRECISION);
+			if (rank <= sparse.get(index)) {
+				return false;
+			}
+			sparse.put(index, rank);
+			if (sparse.size() > sparseLimit) {
+				toDense();
+			}
+			return true;
+		}
+		int index = (int) (hash >>> (64 - precision));
+		int rank = rank(hash << precision, 64 - precision);
+		if (rank <= registers[index]) {
+			return false;
+		}
+		registers[index] = (byte) rank;
+		return true;
+	}
+
+	/**
+	 * Returns position of the first set bit in the given number of high bits,
+	 * or <code>bits + 1</code> if they are all zero.
+	 */
+	private static int rank(long bits, int bitCount) {
+		return Math.min(Long.numberOfLeadingZeros(bits), bitCount) + 1;
+	}
+
+	/**
+	 * Converts sparse representation to the dense registers.
+	 */
+	private void toDense() {
+		registers = new byte[1 << precision];
+		for (int slot = sparse.nextSlot(-1); slot != -1; slot = sparse.nextSlot(slot)) {
+			mergeSparse(sparse.keyAt(slot), sparse.valueAt(slot));
+		}
+		sparse = null;
+	}
+
+	/**
+	 * Merges sparse register into the dense registers.
+	 */
+	private void mergeSparse(int sparseIndex, int sparseRank) {
+		int extraBits = SPARSE_PRECISION - precision;
+		int index = sparseIndex >>> extraBits;
+		int low = sparseIndex & ((1 << extraBits) - 1);
+		// leading bits of the dense rank are the low bits of the sparse index
+		int rank = low != 0 ? Integer.numberOfLeadingZeros(low) - (32 - extraBits) + 1 : extraBits + sparseRank;
+		if (rank > registers[index]) {
+			registers[index] = (byte) rank;
+		}
+	}
+
+	// ---------------------------------------------------------------- estimate
+
+	/**
+	 * Returns estimated number of distinct values.
+	 */
+	public synchronized long cardinality() {
+		if (sparse != null) {
+			int m = 1 << SPARSE_PRECISION;
+			return Math.round(m * Math.log((double) m / (m - sparse.size())));
+		}
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (byte register : registers) {
+			sum += 1.0 / (1L << register);
+			if (register == 0) {
+				zeros++;
+			}
+		}
+		double estimate = alpha(m) * m * m / sum;
+		if (estimate <= 2.5 * m && zeros != 0) {
+			estimate = m * Math.log((double) m / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	private static double alpha(int m) {
+		switch (m) {
+			case 16: return 0.673;
+			case 32: return 0.697;
+			case 64: return 0.709;
+			default: return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Returns precision, i.e. number of index bits.
+	 */
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * Returns <code>true</code> while the estimator uses sparse representation.
+	 */
+	public synchronized boolean isSparse() {
+		return sparse != null;
+	}
+
+	/**
+	 * Returns the standard error of the estimation.
+	 */
+	public double getStandardError() {
+		return 1.04 / Math.sqrt(1 << precision);
+	}
+
+	/**
+	 * Returns approximate memory used by the registers, in bytes.
+	 */
+	public synchronized long getMemorySize() {
+		if (sparse != null) {
+			return (long) IntIntHashMap.tableSize(sparse.size()) << 3;
+		}
+		return registers.length;
+	}
+
+	// ---------------------------------------------------------------- merge
+
+	/**
+	 * Merges other estimator into this one, so this one estimates the union of both.
+	 * Throws <code>IllegalArgumentException</code> if precisions are different.
+	 */
+	public void merge(HyperLogLog other) {
+		if (other.precision != precision) {
+			throw new IllegalArgumentException("Incompatible precision: " + other.precision);
+		}
+		int[] otherSparse = null;
+		byte[] otherRegisters = null;
+		synchronized (other) {
+			if (other.sparse != null) {
+				otherSparse = new int[other.sparse.size() << 1];
+				int i = 0;
+				for (int slot = other.sparse.nextSlot(-1); slot != -1; slot = other.sparse.nextSlot(slot)) {
+					otherSparse[i++] = other.sparse.keyAt(slot);
+					otherSparse[i++] = other.sparse.valueAt(slot);
+				}
+			} else {
+				otherRegisters = other.registers.clone();
+			}
+		}
+		synchronized (this) {
+			if (otherRegisters != null && sparse != null) {
+				toDense();
+			}
+			if (otherRegisters != null) {
+				for (int i = 0; i < registers.length; i++) {
+					if (otherRegisters[i] > registers[i]) {
+						registers[i] = otherRegisters[i];
+					}
+				}
+				return;
+			}
+			for (int i = 0; i < otherSparse.length; i += 2) {
+				if (sparse != null) {
+					if (otherSparse[i + 1] > sparse.get(otherSparse[i])) {
+						sparse.put(otherSparse[i], otherSparse[i + 1]);
+						if (sparse.size() > sparseLimit) {
+							toDense();
+						}
+					}
+				} else {
+					mergeSparse(otherSparse[i], otherSparse[i + 1]);
+				}
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- serialization
+
+	/**
+	 * Writes estimator to the stream. Sparse registers are written sorted,
+	 * as variable-length index deltas. Stream is not closed.
+	 */
+	public synchronized void writeTo(OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.writeInt(MAGIC);
+		dos.writeByte(precision);
+		if (sparse != null) {
+			dos.writeBoolean(true);
+			int[] indexes = sparse.keys();
+			Arrays.sort(indexes);
+			CountMinSketch.writeVarLong(dos, indexes.length);
+			int previous = 0;
+			for (int index : indexes) {
+				CountMinSketch.writeVarLong(dos, index - previous);
+				dos.writeByte(sparse.get(index));
+				previous = index;
+			}
+		} else {
+			dos.writeBoolean(false);
+			dos.write(registers);
+		}
+		dos.flush();
+	}
+
+	/**
+	 * Reads estimator written by {@link #writeTo(OutputStream)}. Stream is not closed.
+	 */
+	public static HyperLogLog readFrom(InputStream in) throws IOException {
+		DataInputStream dis = new DataInputStream(in);
+		if (dis.readInt() != MAGIC) {
+			throw new IOException("Not a HyperLogLog");
+		}
+		HyperLogLog hll = new HyperLogLog(dis.readUnsignedByte());
+		if (dis.readBoolean()) {
+			int count = (int) CountMinSketch.readVarLong(dis);
+			int index = 0;
+			for (int i = 0; i < count; i++) {
+				index += (int) CountMinSketch.readVarLong(dis);
+				hll.sparse.put(index, dis.readUnsignedByte());
+			}
+			if (hll.sparse.size() > hll.sparseLimit) {
+				hll.toDense();
+			}
+		} else {
+			hll.registers = new byte[1 << hll.precision];
+			dis.readFully(hll.registers);
+			hll.sparse = null;
+		}
+		return hll;
+	}
+}
@@ -0,0 +1,245 @@
+package iminto.collection;
+import java.util.Arrays;
+
+/**
+ * Hash set of int primitives. Elements are kept in a flat array, with linear
+ * probing; there are no entry objects and no boxing. Element <code>0</code>
+ * marks empty slots, so it is stored separately.
+ * <p>
+ * Elements are iterated by slots, without allocation:
+ * <pre>
+ * for (int slot = set.nextSlot(-1); slot != -1; slot = set.nextSlot(slot)) {
+ *     int element = set.elementAt(slot);
+ * }
+ * </pre>
+ * Set must not be modified during the iteration.
+ */
+public class IntHashSet {
+
+	public static int initialCapacity = 16;
+
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private int[] elements;
+	private int mask;
+	private int size;			// number of elements in the table, without zero
+	private int resizeAt;
+
+	private boolean hasZero;
+
+	/**
+	 * Constructs an empty set with the default capacity.
+	 */
+	public IntHashSet() {
+		this(initialCapacity);
+	}
+
+	/**
+	 * Constructs an empty set that holds expected number of elements without resizing.
+	 */
+	public IntHashSet(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + expectedSize);
+		}
+		allocate(IntIntHashMap.tableSize(expectedSize));
+	}
+
+	/**
+	 * Constructs a set containing the elements of the specified array.
+	 */
+	public IntHashSet(int[] data) {
+		this(data.length);
+		addAll(data);
+	}
+
+	// ---------------------------------------------------------------- access
+
+	/**
+	 * Returns <code>true</code> if the set contains the element.
+	 */
+	public boolean contains(int element) {
+		if (element == 0) {
+			return hasZero;
+		}
+		int slot = IntIntHashMap.mix(element) & mask;
+		int existing;
+		while ((existing = elements[slot]) != 0) {
+			if (existing == element) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the element. Returns <code>true</code> if the set did not contain it.
+	 */
+	public boolean add(int element) {
+		if (element == 0) {
+			boolean added = hasZero == false;
+			hasZero = true;
+			return added;
+		}
+		int slot = IntIntHashMap.mix(element) & mask;
+		int existing;
+		while ((existing = elements[slot]) != 0) {
+			if (existing == element) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		elements[slot] = element;
+		if (++size > resizeAt) {
+			rehash(elements.length << 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds all elements of the array. Returns the number of added elements.
+	 */
+	public int addAll(int[] data) {
+		int count = 0;
+		for (int element : data) {
+			if (add(element)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Removes the element. Returns <code>true</code> if the set contained it.
+	 */
+	public boolean remove(int element) {
+		if (element == 0) {
+			boolean removed = hasZero;
+			hasZero = false;
+			return removed;
+		}
+		int slot = IntIntHashMap.mix(element) & mask;
+		int existing;
+		while ((existing = elements[slot]) != 0) {
+			if (existing == element) {
+				shiftConflictingElements(slot);
+				size--;
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Shifts back the elements that follow the removed slot in the same probe sequence,
+	 * so no tombstones are needed.
+	 */
+	private void shiftConflictingElements(int slot) {
+		int hole = slot;
+		int i = slot;
+		while (true) {
+			i = (i + 1) & mask;
+			int element = elements[i];
+			if (element == 0) {
+				break;
+			}
+			int home = IntIntHashMap.mix(element) & mask;
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				elements[hole] = element;
+				hole = i;
+			}
+		}
+		elements[hole] = 0;
+	}
+
+	/**
+	 * Returns the number of elements.
+	 */
+	public int size() {
+		return hasZero ? size + 1 : size;
+	}
+
+	/**
+	 * Returns <code>true</code> if set has no elements.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Removes all elements. Capacity is not changed.
+	 */
+	public void clear() {
+		Arrays.fill(elements, 0);
+		size = 0;
+		hasZero = false;
+	}
+
+	// ---------------------------------------------------------------- iteration
+
+	/**
+	 * Returns the next used slot after the given one, or <code>-1</code> if there are no more.
+	 * Iteration starts with <code>-1</code>.
+	 */
+	public int nextSlot(int slot) {
+		int length = elements.length;
+		for (int i = slot + 1; i < length; i++) {
+			if (elements[i] != 0) {
+				return i;
+			}
+		}
+		if (slot < length && hasZero) {
+			return length;		// virtual slot of zero
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the element at the slot.
+	 */
+	public int elementAt(int slot) {
+		return slot == elements.length ? 0 : elements[slot];
+	}
+
+	// ---------------------------------------------------------------- conversion
+
+	/**
+	 * Returns array of all elements, in the iteration order.
+	 */
+	public int[] toArray() {
+		int[] result = new int[size()];
+		int index = 0;
+		for (int slot = nextSlot(-1); slot != -1; slot = nextSlot(slot)) {
+			result[index++] = elementAt(slot);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+	// ---------------------------------------------------------------- capacity
+
+	private void allocate(int tableSize) {
+		elements = new int[tableSize];
+		mask = tableSize - 1;
+		resizeAt = Math.min(tableSize - 1, (int) (tableSize * LOAD_FACTOR));
+	}
+
+	private void rehash(int tableSize) {
+		int[] oldElements = elements;
+		allocate(tableSize);
+		for (int element : oldElements) {
+			if (element != 0) {
+				int slot = IntIntHashMap.mix(element) & mask;
+				while (elements[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				elements[slot] = element;
+			}
+		}
+	}
+}
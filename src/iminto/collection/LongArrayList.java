@@ -0,0 +1,425 @@
+package iminto.collection;
+import java.util.Arrays;
+
+/**
+ * ArrayList of long primitives. For just buffering values, consider
+ * using <code>FastLongBuffer</code>.
+ */
+public class LongArrayList {
+
+	private long[] array;
+	private int size;
+
+	public static int initialCapacity = 10;
+
+	/**
+	 * Constructs an empty list with an initial capacity.
+	 */
+	public LongArrayList() {
+		this(initialCapacity);
+	}
+
+	/**
+	 * Constructs an empty list with the specified initial capacity.
+	 */
+	public LongArrayList(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + initialCapacity);
+		}
+		array = new long[initialCapacity];
+		size = 0;
+	}
+
+	/**
+	 * Constructs a list containing the elements of the specified array.
+	 * The list instance has an initial capacity of 110% the size of the specified array.
+	 */
+	public LongArrayList(long[] data) {
+		array = new long[(int) (data.length * 1.1) + 1];
+		size = data.length;
+		System.arraycopy(data, 0, array, 0, size);
+	}
+
+	// ---------------------------------------------------------------- conversion
+
+	/**
+	 * Returns an array containing all of the elements in this list in the correct order.
+	 */
+	public long[] toArray() {
+		long[] result = new long[size];
+		System.arraycopy(array, 0, result, 0, size);
+		return result;
+	}
+
+	// ---------------------------------------------------------------- methods
+
+	/**
+	 * Returns the element at the specified position in this list.
+	 */
+	public long get(int index) {
+		checkRange(index);
+		return array[index];
+	}
+
+	/**
+	 * Returns the number of elements in this list.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes the element at the specified position in this list.
+	 * Shifts any subsequent elements to the left (subtracts
+	 * one from their indices).
+	 *
+	 * @param index the index of the element to remove
+	 * @return the value of the element that was removed
+	 * @throws UnsupportedOperationException when this operation is not
+	 *                                       supported
+	 * @throws IndexOutOfBoundsException	 if the specified index is out of range
+	 */
+	public long remove(int index) {
+		checkRange(index);
+		long oldval = array[index];
+		int numtomove = size - index - 1;
+		if (numtomove > 0) {
+			System.arraycopy(array, index + 1, array, index, numtomove);
+		}
+		size--;
+		return oldval;
+	}
+	/**
+	 * Removes from this list all of the elements whose index is between fromIndex,
+	 * inclusive and toIndex, exclusive. Shifts any succeeding elements to the left (reduces their index).
+	 */
+	public void removeRange(int fromIndex, int toIndex) {
+		checkRange(fromIndex);
+		checkRange(toIndex);
+		if (fromIndex >= toIndex) {
+			return;
+		}
+		int numtomove = size - toIndex;
+		if (numtomove > 0) {
+			System.arraycopy(array, toIndex, array, fromIndex, numtomove);
+		}
+		size -= (toIndex - fromIndex);
+	}
+
+	/**
+	 * Replaces the element at the specified position in this list with the specified element.
+	 *
+	 * @param index   the index of the element to change
+	 * @param element the value to be stored at the specified position
+	 * @return the value previously stored at the specified position
+	 */
+	public long set(int index, long element) {
+		checkRange(index);
+		long oldval = array[index];
+		array[index] = element;
+		return oldval;
+	}
+
+	/**
+	 * Appends the specified element to the end of this list.
+	 */
+	public void add(long element) {
+		ensureCapacity(size + 1);
+		array[size++] = element;
+	}
+
+	/**
+	 * Inserts the specified element at the specified position in this list.
+	 * Shifts the element currently at that position (if any) and any subsequent
+	 * elements to the right (adds one to their indices).
+	 *
+	 * @param index   the index at which to insert the element
+	 * @param element the value to insert
+	 */
+	public void add(int index, long element) {
+		checkRangeIncludingEndpoint(index);
+		ensureCapacity(size + 1);
+		int numtomove = size - index;
+		System.arraycopy(array, index, array, index + 1, numtomove);
+		array[index] = element;
+		size++;
+	}
+
+	/**
+	 * Appends all of the elements in the specified array to the end of this list.
+	 */
+	public void addAll(long[] data) {
+		int dataLen = data.length;
+		if (dataLen == 0) {
+			return;
+		}
+		int newcap = size + (int) (dataLen * 1.1) + 1;
+		ensureCapacity(newcap);
+		System.arraycopy(data, 0, array, size, dataLen);
+		size += dataLen;
+	}
+
+	/**
+	 * Appends all of the elements in the specified array at the specified position in this list.
+	 */
+	public void addAll(int index, long[] data) {
+		int dataLen = data.length;
+		if (dataLen == 0) {
+			return;
+		}
+		int newcap = size + (int) (dataLen * 1.1) + 1;
+		ensureCapacity(newcap);
+		System.arraycopy(array, index, array, index + dataLen, size - index);
+		System.arraycopy(data, 0, array, index, dataLen);
+		size += dataLen;
+	}
+
+	/**
+	 * Appends <code>length</code> elements of the array, starting at the offset.
+	 */
+	public void addAll(long[] data, int offset, int length) {
+		if (offset < 0 || length < 0 || offset > data.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		ensureCapacity(size + length);
+		System.arraycopy(data, offset, array, size, length);
+		size += length;
+	}
+
+	/**
+	 * Appends all of the elements of the other list.
+	 */
+	public void addAll(LongArrayList list) {
+		addAll(list.array, 0, list.size);
+	}
+
+	/**
+	 * Removes all of the elements from this list.
+	 * The list will be empty after this call returns.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	// ---------------------------------------------------------------- search
+
+	/**
+	 * Returns true if this list contains the specified element.
+	 */
+	public boolean contains(long data) {
+		for (int i = 0; i < size; i++) {
+			if (array[i] == data) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * Searches for the first occurrence of the given argument.
+	 */
+	public int indexOf(long data) {
+		for (int i = 0; i < size; i++) {
+			if (array[i] == data) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the last occurrence of the specified object in this list.
+	 */
+	public int lastIndexOf(long data) {
+		for (int i = size - 1; i >= 0; i--) {
+			if (array[i] == data) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Tests if this list has no elements.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+
+
+	// ---------------------------------------------------------------- bulk
+
+	/**
+	 * Procedure applied to the list elements.
+	 */
+	public interface Procedure {
+		void apply(long value);
+	}
+
+	/**
+	 * Condition on the list elements.
+	 */
+	public interface Predicate {
+		boolean test(long value);
+	}
+
+	/**
+	 * Applies the procedure to all elements, in order.
+	 */
+	public void forEach(Procedure procedure) {
+		for (int i = 0; i < size; i++) {
+			procedure.apply(array[i]);
+		}
+	}
+
+	/**
+	 * Applies the procedure to the elements between fromIndex, inclusive, and toIndex, exclusive.
+	 * Disjoint ranges may be processed by different threads, when list is not modified.
+	 */
+	public void forEach(int fromIndex, int toIndex, Procedure procedure) {
+		checkRange(fromIndex, toIndex);
+		for (int i = fromIndex; i < toIndex; i++) {
+			procedure.apply(array[i]);
+		}
+	}
+
+	/**
+	 * Removes all elements that satisfy the predicate, preserving the order of others.
+	 * Returns <code>true</code> if any element was removed.
+	 */
+	public boolean removeIf(Predicate predicate) {
+		int newSize = 0;
+		for (int i = 0; i < size; i++) {
+			long value = array[i];
+			if (predicate.test(value) == false) {
+				array[newSize++] = value;
+			}
+		}
+		boolean removed = newSize != size;
+		size = newSize;
+		return removed;
+	}
+
+	/**
+	 * Sorts the elements in ascending order.
+	 */
+	public void sort() {
+		Arrays.sort(array, 0, size);
+	}
+
+	/**
+	 * Searches sorted list for the element, using binary search.
+	 * Returns index of the element or <code>(-(insertion point) - 1)</code>
+	 * if list doesn't contain it.
+	 */
+	public int binarySearch(long key) {
+		return Arrays.binarySearch(array, 0, size, key);
+	}
+
+	/**
+	 * Returns the sum of all elements.
+	 */
+	public long sum() {
+		return sum(0, size);
+	}
+
+	/**
+	 * Returns the sum of the elements between fromIndex, inclusive, and toIndex, exclusive.
+	 */
+	public long sum(int fromIndex, int toIndex) {
+		checkRange(fromIndex, toIndex);
+		long sum = 0;
+		for (int i = fromIndex; i < toIndex; i++) {
+			sum += array[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the smallest element.
+	 * @throws IllegalStateException if list is empty
+	 */
+	public long min() {
+		checkNotEmpty();
+		long min = array[0];
+		for (int i = 1; i < size; i++) {
+			if (array[i] < min) {
+				min = array[i];
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Returns the largest element.
+	 * @throws IllegalStateException if list is empty
+	 */
+	public long max() {
+		checkNotEmpty();
+		long max = array[0];
+		for (int i = 1; i < size; i++) {
+			if (array[i] > max) {
+				max = array[i];
+			}
+		}
+		return max;
+	}
+
+	// ---------------------------------------------------------------- capacity
+
+	/**
+	 * Increases the capacity of this ArrayList instance, if necessary,
+	 * to ensure that it can hold at least the number of elements specified by
+	 * the minimum capacity argument.
+	 */
+	public void ensureCapacity(int mincap) {
+		if (mincap > array.length) {
+			int newcap = ((array.length * 3) >> 1) + 1;
+			long[] olddata = array;
+			array = new long[newcap < mincap ? mincap : newcap];
+			System.arraycopy(olddata, 0, array, 0, size);
+		}
+	}
+
+	/**
+	 * Trims the capacity of this instance to be the list's current size.
+	 * An application can use this operation to minimize the storage of some instance.
+	 */
+	public void trimToSize() {
+		if (size < array.length) {
+			long[] olddata = array;
+			array = new long[size];
+			System.arraycopy(olddata, 0, array, 0, size);
+		}
+	}
+
+	// ---------------------------------------------------------------- checks
+
+	private void checkRange(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	private void checkRangeIncludingEndpoint(int index) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	private void checkRange(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || fromIndex > toIndex || toIndex > size) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	private void checkNotEmpty() {
+		if (size == 0) {
+			throw new IllegalStateException("Empty list");
+		}
+	}
+
+
+}
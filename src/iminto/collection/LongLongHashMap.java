@@ -0,0 +1,354 @@
+package iminto.collection;
+import java.util.Arrays;
+
+/**
+ * Hash map of long keys and long values. Keys and values are kept in two flat
+ * arrays, with linear probing; there are no entry objects and no boxing.
+ * Key <code>0</code> marks empty slots, so it is stored separately.
+ * <p>
+ * Entries are iterated by slots, without allocation:
+ * <pre>
+ * for (int slot = map.nextSlot(-1); slot != -1; slot = map.nextSlot(slot)) {
+ *     long key = map.keyAt(slot);
+ *     long value = map.valueAt(slot);
+ * }
+ * </pre>
+ * Map must not be modified during the iteration, except by {@link #setValueAt(int, long)}.
+ */
+public class LongLongHashMap {
+
+	public static int initialCapacity = 16;
+
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private long[] keys;
+	private long[] values;
+	private int mask;
+	private int size;			// number of keys in the table, without zero key
+	private int resizeAt;
+
+	private boolean hasZeroKey;
+	private long zeroValue;
+
+	/**
+	 * Constructs an empty map with the default capacity.
+	 */
+	public LongLongHashMap() {
+		this(initialCapacity);
+	}
+
+	/**
+	 * Constructs an empty map that holds expected number of entries without resizing.
+	 */
+	public LongLongHashMap(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + expectedSize);
+		}
+		allocate(tableSize(expectedSize));
+	}
+
+	// ---------------------------------------------------------------- access
+
+	/**
+	 * Returns the value of the key, or <code>0</code> if there is no such key.
+	 */
+	public long get(long key) {
+		return get(key, 0);
+	}
+
+	/**
+	 * Returns the value of the key, or <code>defaultValue</code> if there is no such key.
+	 */
+	public long get(long key, long defaultValue) {
+		if (key == 0) {
+			return hasZeroKey ? zeroValue : defaultValue;
+		}
+		int slot = mix(key) & mask;
+		long existing;
+		while ((existing = keys[slot]) != 0) {
+			if (existing == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns <code>true</code> if the map contains the key.
+	 */
+	public boolean containsKey(long key) {
+		if (key == 0) {
+			return hasZeroKey;
+		}
+		int slot = mix(key) & mask;
+		long existing;
+		while ((existing = keys[slot]) != 0) {
+			if (existing == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Puts the value of the key. Returns the previous value, or <code>0</code> if there was none.
+	 */
+	public long put(long key, long value) {
+		if (key == 0) {
+			long previous = zeroValue;
+			hasZeroKey = true;
+			zeroValue = value;
+			return previous;
+		}
+		int slot = mix(key) & mask;
+		long existing;
+		while ((existing = keys[slot]) != 0) {
+			if (existing == key) {
+				long previous = values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > resizeAt) {
+			rehash(keys.length << 1);
+		}
+		return 0;
+	}
+
+	/**
+	 * Adds delta to the value of the key, missing key has the value <code>0</code>.
+	 * Returns the new value. Useful for counting.
+	 */
+	public long addTo(long key, long delta) {
+		if (key == 0) {
+			if (hasZeroKey == false) {
+				hasZeroKey = true;
+				zeroValue = 0;
+			}
+			return zeroValue += delta;
+		}
+		int slot = mix(key) & mask;
+		long existing;
+		while ((existing = keys[slot]) != 0) {
+			if (existing == key) {
+				return values[slot] += delta;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = delta;
+		if (++size > resizeAt) {
+			rehash(keys.length << 1);
+		}
+		return delta;
+	}
+
+	/**
+	 * Removes the key. Returns its value, or <code>0</code> if there was no such key.
+	 */
+	public long remove(long key) {
+		if (key == 0) {
+			long previous = hasZeroKey ? zeroValue : 0;
+			hasZeroKey = false;
+			zeroValue = 0;
+			return previous;
+		}
+		int slot = mix(key) & mask;
+		long existing;
+		while ((existing = keys[slot]) != 0) {
+			if (existing == key) {
+				long previous = values[slot];
+				shiftConflictingKeys(slot);
+				size--;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return 0;
+	}
+
+	/**
+	 * Shifts back the keys that follow the removed slot in the same probe sequence,
+	 * so no tombstones are needed.
+	 */
+	private void shiftConflictingKeys(int slot) {
+		int hole = slot;
+		int i = slot;
+		while (true) {
+			i = (i + 1) & mask;
+			long key = keys[i];
+			if (key == 0) {
+				break;
+			}
+			int home = mix(key) & mask;
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = key;
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		keys[hole] = 0;
+		values[hole] = 0;
+	}
+
+	/**
+	 * Returns the number of entries.
+	 */
+	public int size() {
+		return hasZeroKey ? size + 1 : size;
+	}
+
+	/**
+	 * Returns <code>true</code> if map has no entries.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Removes all entries. Capacity is not changed.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, 0);
+		size = 0;
+		hasZeroKey = false;
+		zeroValue = 0;
+	}
+
+	// ---------------------------------------------------------------- iteration
+
+	/**
+	 * Returns the next used slot after the given one, or <code>-1</code> if there are no more.
+	 * Iteration starts with <code>-1</code>.
+	 */
+	public int nextSlot(int slot) {
+		int length = keys.length;
+		for (int i = slot + 1; i < length; i++) {
+			if (keys[i] != 0) {
+				return i;
+			}
+		}
+		if (slot < length && hasZeroKey) {
+			return length;		// virtual slot of the zero key
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the key at the slot.
+	 */
+	public long keyAt(int slot) {
+		return slot == keys.length ? 0 : keys[slot];
+	}
+
+	/**
+	 * Returns the value at the slot.
+	 */
+	public long valueAt(int slot) {
+		return slot == keys.length ? zeroValue : values[slot];
+	}
+
+	/**
+	 * Replaces the value at the slot.
+	 */
+	public void setValueAt(int slot, long value) {
+		if (slot == keys.length) {
+			zeroValue = value;
+		} else {
+			values[slot] = value;
+		}
+	}
+
+	// ---------------------------------------------------------------- conversion
+
+	/**
+	 * Returns array of all keys, in the iteration order.
+	 */
+	public long[] keys() {
+		long[] result = new long[size()];
+		int index = 0;
+		for (int slot = nextSlot(-1); slot != -1; slot = nextSlot(slot)) {
+			result[index++] = keyAt(slot);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns array of all values, in the iteration order.
+	 */
+	public long[] values() {
+		long[] result = new long[size()];
+		int index = 0;
+		for (int slot = nextSlot(-1); slot != -1; slot = nextSlot(slot)) {
+			result[index++] = valueAt(slot);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int slot = nextSlot(-1); slot != -1; slot = nextSlot(slot)) {
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(keyAt(slot)).append('=').append(valueAt(slot));
+		}
+		return sb.append('}').toString();
+	}
+
+	// ---------------------------------------------------------------- capacity
+
+	/**
+	 * Returns power of two table size for the number of entries.
+	 */
+	static int tableSize(int expectedSize) {
+		long required = (long) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR) + 1;
+		if (required > (1 << 30)) {
+			throw new IllegalArgumentException("Capacity too large: " + expectedSize);
+		}
+		int tableSize = 4;
+		while (tableSize < required) {
+			tableSize <<= 1;
+		}
+		return tableSize;
+	}
+
+	private void allocate(int tableSize) {
+		keys = new long[tableSize];
+		values = new long[tableSize];
+		mask = tableSize - 1;
+		resizeAt = Math.min(tableSize - 1, (int) (tableSize * LOAD_FACTOR));
+	}
+
+	private void rehash(int tableSize) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(tableSize);
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key != 0) {
+				int slot = mix(key) & mask;
+				while (keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Spreads the key bits, so sequential keys don't form long probe sequences.
+	 */
+	static int mix(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,697 @@
+package iminto.collection;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * {@link Bag} that keeps elements and their counts in two parallel arrays of an
+ * open-addressing hash table, with linear probing. Unlike {@link HashBag}, there
+ * are no map entries and no <code>MutableInteger</code> counters, and each
+ * operation does a single table lookup.
+ * <p>
+ * Besides the bag operations, the most frequent elements can be found with
+ * {@link #topK(int)} and other bags can be merged in place with {@link #merge(Bag)}.
+ */
+public class ObjectIntHashBag<E> extends AbstractCollection<E> implements Bag<E> {
+
+	public static int initialCapacity = 16;
+
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private Object[] elements;		// null marks empty slots
+	private int[] counts;
+	private int mask;
+	private int distinct;			// number of elements in the table, without null
+	private int resizeAt;
+
+	private int nullCount;			// count of the null element
+
+	protected int size;				// current bag size
+	private int modCount;			// modification count for fail fast iterators
+
+	public ObjectIntHashBag() {
+		this(initialCapacity);
+	}
+
+	/**
+	 * Constructs an empty bag that holds expected number of distinct elements without resizing.
+	 */
+	public ObjectIntHashBag(int expectedDistinct) {
+		if (expectedDistinct < 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + expectedDistinct);
+		}
+		allocate(IntIntHashMap.tableSize(expectedDistinct));
+	}
+
+	public ObjectIntHashBag(Collection<? extends E> coll) {
+		this();
+		addAll(coll);
+	}
+
+	// ---------------------------------------------------------------- table
+
+	private static int hash(Object element) {
+		return IntIntHashMap.mix(element.hashCode());
+	}
+
+	/**
+	 * Returns slot of the element, or <code>-1</code> if there is no such element.
+	 */
+	private int slotOf(Object element) {
+		int slot = hash(element) & mask;
+		Object existing;
+		while ((existing = elements[slot]) != null) {
+			if (existing.equals(element)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes element at the slot, shifting back the following elements of the same probe sequence.
+	 */
+	private void removeSlot(int slot) {
+		int hole = slot;
+		int i = slot;
+		while (true) {
+			i = (i + 1) & mask;
+			Object element = elements[i];
+			if (element == null) {
+				break;
+			}
+			int home = hash(element) & mask;
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				elements[hole] = element;
+				counts[hole] = counts[i];
+				hole = i;
+			}
+		}
+		elements[hole] = null;
+		counts[hole] = 0;
+		distinct--;
+	}
+
+	private void allocate(int tableSize) {
+		elements = new Object[tableSize];
+		counts = new int[tableSize];
+		mask = tableSize - 1;
+		resizeAt = Math.min(tableSize - 1, (int) (tableSize * LOAD_FACTOR));
+	}
+
+	private void rehash(int tableSize) {
+		Object[] oldElements = elements;
+		int[] oldCounts = counts;
+		allocate(tableSize);
+		for (int i = 0; i < oldElements.length; i++) {
+			Object element = oldElements[i];
+			if (element != null) {
+				int slot = hash(element) & mask;
+				while (elements[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				elements[slot] = element;
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------- size
+
+	/**
+	 * Returns the number of elements in the bag.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns <code>true</code> if bag is empty.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of distinct elements in the bag.
+	 */
+	public int distinctSize() {
+		return nullCount == 0 ? distinct : distinct + 1;
+	}
+
+	/**
+	 * Returns the number of occurrence of the given element in bag.
+	 */
+	public int getCount(Object object) {
+		if (object == null) {
+			return nullCount;
+		}
+		int slot = slotOf(object);
+		return slot == -1 ? 0 : counts[slot];
+	}
+
+	// ---------------------------------------------------------------- contains
+
+	/**
+	 * Determines if the bag contains the given element.
+	 */
+	@Override
+	public boolean contains(Object object) {
+		return getCount(object) != 0;
+	}
+
+	/**
+	 * Determines if the bag contains all the collection elements, respecting
+	 * cardinality when the collection is a bag.
+	 */
+	@Override
+	public boolean containsAll(Collection<?> coll) {
+		if (coll instanceof Bag) {
+			Bag<?> other = (Bag<?>) coll;
+			for (Object current : other.uniqueSet()) {
+				if (getCount(current) < other.getCount(current)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		for (Object current : coll) {
+			if (getCount(current) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// ---------------------------------------------------------------- add
+
+	/**
+	 * Adds a new element to the bag, incrementing its count.
+	 *
+	 * @return <code>true</code> if the object was not already in the bag
+	 */
+	@Override
+	public boolean add(E object) {
+		return add(object, 1);
+	}
+
+	/**
+	 * Adds copies of the element to the bag, incrementing its count.
+	 *
+	 * @return <code>true</code> if the object was not already in the bag
+	 */
+	public boolean add(E object, int nCopies) {
+		if (nCopies <= 0) {
+			throw new IllegalArgumentException("Invalid number of bag element copies: " + nCopies);
+		}
+		modCount++;
+		size += nCopies;
+		if (object == null) {
+			boolean added = nullCount == 0;
+			nullCount += nCopies;
+			return added;
+		}
+		int slot = hash(object) & mask;
+		Object existing;
+		while ((existing = elements[slot]) != null) {
+			if (existing.equals(object)) {
+				counts[slot] += nCopies;
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		elements[slot] = object;
+		counts[slot] = nCopies;
+		if (++distinct > resizeAt) {
+			rehash(elements.length << 1);
+		}
+		return true;
+	}
+
+	// ---------------------------------------------------------------- remove
+
+	/**
+	 * Removes all elements from the bag. Capacity is not changed.
+	 */
+	@Override
+	public void clear() {
+		if (size == 0) {
+			return;
+		}
+		modCount++;
+		Arrays.fill(elements, null);
+		Arrays.fill(counts, 0);
+		distinct = 0;
+		nullCount = 0;
+		size = 0;
+	}
+
+	/**
+	 * Removes all copies of the specified object from the bag.
+	 *
+	 * @return <code>true</code> if the bag changed
+	 */
+	@Override
+	public boolean remove(Object object) {
+		return remove(object, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Removes a specified number of copies of an object from the bag.
+	 *
+	 * @return <code>true</code> if the bag changed
+	 */
+	public boolean remove(Object object, int nCopies) {
+		if (nCopies <= 0) {
+			throw new IllegalArgumentException("Invalid number of bag element copies: " + nCopies);
+		}
+		if (object == null) {
+			if (nullCount == 0) {
+				return false;
+			}
+			modCount++;
+			int removed = Math.min(nCopies, nullCount);
+			nullCount -= removed;
+			size -= removed;
+			return true;
+		}
+		int slot = slotOf(object);
+		if (slot == -1) {
+			return false;
+		}
+		modCount++;
+		if (nCopies < counts[slot]) {
+			counts[slot] -= nCopies;
+			size -= nCopies;
+		} else {
+			size -= counts[slot];
+			removeSlot(slot);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes objects from the bag according to their count in the specified collection.
+	 *
+	 * @return <code>true</code> if the bag changed
+	 */
+	@Override
+	public boolean removeAll(Collection<?> coll) {
+		boolean result = false;
+		if (coll != null) {
+			for (Object c : coll) {
+				boolean changed = remove(c, 1);
+				result = result || changed;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes any members of the bag that are not in the given collection,
+	 * respecting cardinality when the collection is a bag.
+	 *
+	 * @return <code>true</code> if the bag changed
+	 */
+	@Override
+	public boolean retainAll(Collection<?> coll) {
+		Bag<?> other = coll instanceof Bag ? (Bag<?>) coll : null;
+		boolean changed = false;
+		if (nullCount != 0) {
+			int retain = other != null ? other.getCount(null) : (coll.contains(null) ? 1 : 0);
+			if (retain < nullCount) {
+				modCount++;
+				size -= nullCount - retain;
+				nullCount = retain;
+				changed = true;
+			}
+		}
+		int slot = 0;
+		while (slot < elements.length) {
+			Object element = elements[slot];
+			if (element != null) {
+				int retain = other != null ? other.getCount(element) : (coll.contains(element) ? 1 : 0);
+				if (retain < counts[slot]) {
+					modCount++;
+					changed = true;
+					size -= counts[slot] - retain;
+					if (retain > 0) {
+						counts[slot] = retain;
+					} else {
+						removeSlot(slot);
+						continue;		// other element might be shifted to this slot
+					}
+				}
+			}
+			slot++;
+		}
+		return changed;
+	}
+
+	// ---------------------------------------------------------------- merge
+
+	/**
+	 * Adds all elements of the other bag to this bag, with their counts.
+	 * Merging the bag into itself doubles the counts.
+	 * Returns <code>true</code> if this bag changed.
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean merge(Bag<? extends E> other) {
+		if (other.isEmpty()) {
+			return false;
+		}
+		if (other == this) {
+			// counts are doubled in place, since adding would iterate the table being updated
+			modCount++;
+			size += size;
+			nullCount += nullCount;
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += counts[i];
+			}
+			return true;
+		}
+		if (other instanceof ObjectIntHashBag) {
+			ObjectIntHashBag<? extends E> bag = (ObjectIntHashBag<? extends E>) other;
+			if (bag.nullCount != 0) {
+				add(null, bag.nullCount);
+			}
+			for (int i = 0; i < bag.elements.length; i++) {
+				if (bag.elements[i] != null) {
+					add((E) bag.elements[i], bag.counts[i]);
+				}
+			}
+			return true;
+		}
+		for (E element : other.uniqueSet()) {
+			add(element, other.getCount(element));
+		}
+		return true;
+	}
+
+	// ---------------------------------------------------------------- top k
+
+	/**
+	 * Returns up to <code>n</code> most frequent elements, the most frequent first.
+	 * Uses a bounded heap of size <code>n</code>, so it takes <code>O(d log n)</code>
+	 * time for <code>d</code> distinct elements.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<E> topK(int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Invalid number of elements: " + n);
+		}
+		// min heap of slots ordered by count, null element has the virtual slot
+		int nullSlot = elements.length;
+		int[] heap = new int[Math.min(n, distinctSize())];
+		int heapSize = 0;
+		for (int slot = 0; slot <= nullSlot && heap.length != 0; slot++) {
+			int count;
+			if (slot == nullSlot) {
+				count = nullCount;
+			} else {
+				count = elements[slot] != null ? counts[slot] : 0;
+			}
+			if (count == 0) {
+				continue;
+			}
+			if (heapSize < heap.length) {
+				heap[heapSize] = slot;
+				siftUp(heap, heapSize++);
+			} else if (count > countAt(heap[0])) {
+				heap[0] = slot;
+				siftDown(heap, heapSize);
+			}
+		}
+
+		Object[] result = new Object[heapSize];
+		for (int i = heapSize - 1; i >= 0; i--) {
+			int slot = heap[0];
+			result[i] = slot == nullSlot ? null : elements[slot];
+			heap[0] = heap[i];
+			siftDown(heap, i);
+		}
+		List<E> list = new ArrayList<E>(result.length);
+		for (Object element : result) {
+			list.add((E) element);
+		}
+		return list;
+	}
+
+	private int countAt(int slot) {
+		return slot == elements.length ? nullCount : counts[slot];
+	}
+
+	private void siftUp(int[] heap, int index) {
+		int slot = heap[index];
+		int count = countAt(slot);
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (countAt(heap[parent]) <= count) {
+				break;
+			}
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = slot;
+	}
+
+	private void siftDown(int[] heap, int heapSize) {
+		int index = 0;
+		int slot = heap[0];
+		int count = countAt(slot);
+		while (true) {
+			int child = (index << 1) + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && countAt(heap[child + 1]) < countAt(heap[child])) {
+				child++;
+			}
+			if (countAt(heap[child]) >= count) {
+				break;
+			}
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = slot;
+	}
+
+	// ---------------------------------------------------------------- iterator
+
+	/**
+	 * Returns an iterator over the bag elements.
+	 * Elements present in the Bag more than once will be returned repeatedly.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new BagIterator();
+	}
+
+	/**
+	 * Iterator over the table slots. Removal may shift elements of the table,
+	 * so after the first removal iterator continues over a copy of the elements.
+	 */
+	class BagIterator implements Iterator<E> {
+		private Object[] iterElements = elements;
+		private int slot = -1;			// current slot, -1 is the null element
+		private int itemCount = nullCount;
+		private int mods = modCount;
+		private Object lastReturned;
+		private boolean canRemove;
+
+		BagIterator() {
+			if (itemCount == 0) {
+				advance();
+			}
+		}
+
+		/**
+		 * Moves to the next slot with an element.
+		 */
+		private void advance() {
+			while (++slot < iterElements.length) {
+				Object element = iterElements[slot];
+				if (element != null) {
+					itemCount = iterElements == elements ? counts[slot] : getCount(element);
+					if (itemCount != 0) {
+						return;
+					}
+				}
+			}
+			itemCount = 0;
+		}
+
+		public boolean hasNext() {
+			return itemCount > 0;
+		}
+
+		@SuppressWarnings("unchecked")
+		public E next() {
+			if (modCount != mods) {
+				throw new ConcurrentModificationException();
+			}
+			if (itemCount == 0) {
+				throw new NoSuchElementException();
+			}
+			lastReturned = slot == -1 ? null : iterElements[slot];
+			canRemove = true;
+			if (--itemCount == 0) {
+				advance();
+			}
+			return (E) lastReturned;
+		}
+
+		public void remove() {
+			if (modCount != mods) {
+				throw new ConcurrentModificationException();
+			}
+			if (canRemove == false) {
+				throw new IllegalStateException();
+			}
+			if (iterElements == elements) {
+				iterElements = elements.clone();
+			}
+			ObjectIntHashBag.this.remove(lastReturned, 1);
+			mods = modCount;
+			canRemove = false;
+		}
+	}
+
+	// ---------------------------------------------------------------- convert
+
+	/**
+	 * Returns a set view of unique elements of the bag.
+	 */
+	public Set<E> uniqueSet() {
+		return new AbstractSet<E>() {
+			@Override
+			public Iterator<E> iterator() {
+				return new UniqueIterator();
+			}
+
+			@Override
+			public int size() {
+				return distinctSize();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return getCount(o) != 0;
+			}
+		};
+	}
+
+	/**
+	 * Iterator over the unique elements.
+	 */
+	class UniqueIterator implements Iterator<E> {
+		private int slot = nullCount != 0 ? -1 : nextSlot(-1);
+		private final int mods = modCount;
+
+		private int nextSlot(int from) {
+			for (int i = from + 1; i < elements.length; i++) {
+				if (elements[i] != null) {
+					return i;
+				}
+			}
+			return elements.length;
+		}
+
+		public boolean hasNext() {
+			return slot < elements.length;
+		}
+
+		@SuppressWarnings("unchecked")
+		public E next() {
+			if (modCount != mods) {
+				throw new ConcurrentModificationException();
+			}
+			if (slot >= elements.length) {
+				throw new NoSuchElementException();
+			}
+			E element = slot == -1 ? null : (E) elements[slot];
+			slot = nextSlot(slot);
+			return element;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	// ---------------------------------------------------------------- object
+
+	/**
+	 * Compares bag to another. This Bag equals another Bag if it contains
+	 * the same number of occurrences of the same elements.
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (object == this) {
+			return true;
+		}
+		if (object instanceof Bag == false) {
+			return false;
+		}
+		Bag<?> other = (Bag<?>) object;
+		if (other.size() != size()) {
+			return false;
+		}
+		if (other.getCount(null) != nullCount) {
+			return false;
+		}
+		for (int i = 0; i < elements.length; i++) {
+			if (elements[i] != null && other.getCount(elements[i]) != counts[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns hash code compatible with {@link HashBag#hashCode()}: the sum of
+	 * <code>(e==null ? 0 : e.hashCode()) ^ noOccurances)</code> of all elements.
+	 */
+	@Override
+	public int hashCode() {
+		int total = nullCount;
+		for (int i = 0; i < elements.length; i++) {
+			if (elements[i] != null) {
+				total += elements[i].hashCode() ^ counts[i];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Implement a toString() method suitable for debugging.
+	 */
+	@Override
+	public String toString() {
+		if (size() == 0) {
+			return "[]";
+		}
+		StringBuilder buf = new StringBuilder();
+		buf.append('[');
+		for (E current : uniqueSet()) {
+			if (buf.length() > 1) {
+				buf.append(',');
+			}
+			buf.append(getCount(current));
+			buf.append(':');
+			buf.append(current);
+		}
+		buf.append(']');
+		return buf.toString();
+	}
+}
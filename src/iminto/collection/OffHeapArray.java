@@ -0,0 +1,302 @@
+package iminto.collection;
+import iminto.io.ByteBufferUtil;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Base of the off-heap primitive lists. Elements are stored outside of the Java heap,
+ * in segments of direct byte buffers, so they are not scanned by the garbage collector.
+ * Lists are indexed by <code>long</code>, so they are not limited to 2^31 elements.
+ * When list grows, new segments are added and no elements are copied.
+ * <p>
+ * Segments may also be mapped from a file, for data larger than the memory; the size of
+ * the list is stored in the file header, so the list can be opened again.
+ * <p>
+ * Memory is released by {@link #close()}, list must not be used after that. If the VM
+ * doesn't support explicit release, memory is released by the garbage collector.
+ * Lists are not synchronized.
+ */
+public abstract class OffHeapArray implements Closeable {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 24;
+
+	private static final int MAGIC = 0x0FF4EA9A;
+	private static final int HEADER_SIZE = 32;
+
+	protected final int elementShift;		// log2 of element size in bytes
+	protected int segmentShift;				// log2 of segment size in bytes
+	protected int segmentMask;
+	protected ByteBuffer[] segments = new ByteBuffer[0];
+	protected long size;
+
+	protected RandomAccessFile file;
+	protected MappedByteBuffer header;
+	protected boolean closed;
+
+	/**
+	 * Creates list in direct buffers of given segment size, in bytes.
+	 */
+	protected OffHeapArray(int elementSize, int segmentSize, long initialCapacity) {
+		this.elementShift = Integer.numberOfTrailingZeros(elementSize);
+		initSegmentSize(segmentSize);
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + initialCapacity);
+		}
+		ensureCapacity(initialCapacity);
+	}
+
+	/**
+	 * Opens list mapped from the file. Existing list in the file is loaded, with its
+	 * segment size; otherwise new list is created with given segment size.
+	 */
+	protected OffHeapArray(int elementSize, int segmentSize, File file) throws IOException {
+		this.elementShift = Integer.numberOfTrailingZeros(elementSize);
+		this.file = new RandomAccessFile(file, "rw");
+		try {
+			boolean exists = this.file.length() != 0;
+			header = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+			if (exists) {
+				if (header.getInt(0) != MAGIC || header.getInt(4) != elementSize) {
+					throw new IOException("Not an off-heap array of " + elementSize + " byte elements: " + file);
+				}
+				initSegmentSize(header.getInt(8));
+				size = header.getLong(12);
+				long segmentCount = (this.file.length() - HEADER_SIZE) >>> segmentShift;
+				ensureCapacity(segmentCount << (segmentShift - elementShift));
+				if (size > capacity()) {
+					throw new IOException("Truncated off-heap array: " + file);
+				}
+			} else {
+				initSegmentSize(segmentSize);
+				header.putInt(0, MAGIC);
+				header.putInt(4, elementSize);
+				header.putInt(8, segmentSize);
+				header.putLong(12, 0);
+			}
+		} catch (IOException ioex) {
+			this.file.close();
+			throw ioex;
+		}
+	}
+
+	private void initSegmentSize(int segmentSize) {
+		if (segmentSize < 64 || segmentSize > (1 << 30) || Integer.bitCount(segmentSize) != 1) {
+			throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+		}
+		this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+		this.segmentMask = segmentSize - 1;
+	}
+
+	// ---------------------------------------------------------------- size
+
+	/**
+	 * Returns the number of elements in this list.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Tests if this list has no elements.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all of the elements from this list. Memory is not released.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Returns number of elements the list can hold without adding segments.
+	 */
+	public long capacity() {
+		return ((long) segments.length << segmentShift) >>> elementShift;
+	}
+
+	/**
+	 * Returns memory used by the segments, in bytes.
+	 */
+	public long getMemorySize() {
+		return (long) segments.length << segmentShift;
+	}
+
+	// ---------------------------------------------------------------- capacity
+
+	/**
+	 * Adds segments, if necessary, so the list can hold at least
+	 * the number of elements specified by the minimum capacity argument.
+	 */
+	public void ensureCapacity(long mincap) {
+		if (mincap <= capacity()) {
+			return;
+		}
+		if (closed) {
+			throw new IllegalStateException("Off-heap array is closed");
+		}
+		long segmentCount = ((mincap << elementShift) + segmentMask) >>> segmentShift;
+		if (segmentCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Capacity too large: " + mincap);
+		}
+		ByteBuffer[] newSegments = new ByteBuffer[(int) segmentCount];
+		System.arraycopy(segments, 0, newSegments, 0, segments.length);
+		for (int i = segments.length; i < newSegments.length; i++) {
+			newSegments[i] = allocateSegment(i).order(ByteOrder.nativeOrder());
+		}
+		segments = newSegments;
+	}
+
+	private ByteBuffer allocateSegment(int index) {
+		if (file == null) {
+			return ByteBuffer.allocateDirect(segmentMask + 1);
+		}
+		try {
+			long position = HEADER_SIZE + ((long) index << segmentShift);
+			return file.getChannel().map(FileChannel.MapMode.READ_WRITE, position, segmentMask + 1);
+		} catch (IOException ioex) {
+			throw new IllegalStateException("Unable to map segment " + index, ioex);
+		}
+	}
+
+	/**
+	 * Releases the segments that are not needed for the current size.
+	 * Memory-mapped file is not truncated.
+	 */
+	public void trimToSize() {
+		int segmentCount = (int) (((size << elementShift) + segmentMask) >>> segmentShift);
+		if (segmentCount == segments.length) {
+			return;
+		}
+		ByteBuffer[] newSegments = new ByteBuffer[segmentCount];
+		System.arraycopy(segments, 0, newSegments, 0, segmentCount);
+		for (int i = segmentCount; i < segments.length; i++) {
+			release(segments[i]);
+		}
+		segments = newSegments;
+	}
+
+	// ---------------------------------------------------------------- close
+
+	/**
+	 * Writes changes of the memory-mapped file to the disk.
+	 */
+	public void flush() {
+		if (file == null) {
+			return;
+		}
+		header.putLong(12, size);
+		header.force();
+		for (ByteBuffer segment : segments) {
+			((MappedByteBuffer) segment).force();
+		}
+	}
+
+	/**
+	 * Releases the memory. Memory-mapped file is flushed and closed.
+	 * List must not be used after this call.
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		flush();
+		ByteBuffer[] oldSegments = segments;
+		segments = new ByteBuffer[0];
+		size = 0;
+		closed = true;
+		for (ByteBuffer segment : oldSegments) {
+			release(segment);
+		}
+		if (file != null) {
+			release(header);
+			header = null;
+			file.close();
+			file = null;
+		}
+	}
+
+	/**
+	 * Releases memory of the direct or mapped buffer immediately, if VM supports it.
+	 */
+	static void release(ByteBuffer buffer) {
+		ByteBufferUtil.release(buffer);
+	}
+
+	// ---------------------------------------------------------------- move
+
+	/**
+	 * Moves <code>length</code> bytes from one position to another, which may overlap.
+	 * Bytes are copied through the small heap buffer, in the order that never
+	 * overwrites bytes that are not copied yet.
+	 */
+	protected void moveBytes(long from, long to, long length) {
+		if (length <= 0 || from == to) {
+			return;
+		}
+		byte[] buffer = new byte[(int) Math.min(length, 8192)];
+		if (to < from) {
+			for (long done = 0; done < length;) {
+				int count = (int) Math.min(buffer.length, length - done);
+				transfer(from + done, buffer, count, false);
+				transfer(to + done, buffer, count, true);
+				done += count;
+			}
+		} else {
+			for (long remaining = length; remaining > 0;) {
+				int count = (int) Math.min(buffer.length, remaining);
+				remaining -= count;
+				transfer(from + remaining, buffer, count, false);
+				transfer(to + remaining, buffer, count, true);
+			}
+		}
+	}
+
+	/**
+	 * Reads bytes starting at the position into the buffer, or writes them from it.
+	 */
+	private void transfer(long position, byte[] buffer, int count, boolean write) {
+		int done = 0;
+		while (done < count) {
+			ByteBuffer segment = segments[(int) (position >>> segmentShift)].duplicate();
+			int offset = (int) (position & segmentMask);
+			int n = Math.min(count - done, segmentMask + 1 - offset);
+			segment.position(offset);
+			if (write) {
+				segment.put(buffer, done, n);
+			} else {
+				segment.get(buffer, done, n);
+			}
+			done += n;
+			position += n;
+		}
+	}
+
+	// ---------------------------------------------------------------- checks
+
+	protected void checkRange(long index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	protected void checkRange(long fromIndex, long toIndex) {
+		if (fromIndex < 0 || fromIndex > toIndex || toIndex > size) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	protected void checkNotEmpty() {
+		if (size == 0) {
+			throw new IllegalStateException("Empty list");
+		}
+	}
+}
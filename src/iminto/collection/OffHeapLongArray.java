@@ -0,0 +1,423 @@
+package iminto.collection;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Off-heap list of long primitives, with the API of {@link LongArrayList}
+ * and <code>long</code> indexes.
+ * @see OffHeapArray
+ */
+public class OffHeapLongArray extends OffHeapArray {
+
+	private static final int ELEMENT_SIZE = 8;
+	private static final int SORT_CHUNK = 1 << 16;	// ranges sorted on the heap
+
+	/**
+	 * Constructs an empty list in direct memory.
+	 */
+	public OffHeapLongArray() {
+		this(0);
+	}
+
+	/**
+	 * Constructs an empty list in direct memory with the specified initial capacity.
+	 */
+	public OffHeapLongArray(long initialCapacity) {
+		this(initialCapacity, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructs an empty list in direct memory with the specified initial capacity
+	 * and segment size in bytes, which must be a power of two.
+	 */
+	public OffHeapLongArray(long initialCapacity, int segmentSize) {
+		super(ELEMENT_SIZE, segmentSize, initialCapacity);
+	}
+
+	/**
+	 * Opens list mapped from the file, creating a new one if the file is empty.
+	 */
+	public OffHeapLongArray(File file) throws IOException {
+		this(file, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Opens list mapped from the file, creating a new one with the
+	 * given segment size if the file is empty.
+	 */
+	public OffHeapLongArray(File file, int segmentSize) throws IOException {
+		super(ELEMENT_SIZE, segmentSize, file);
+	}
+
+	// ---------------------------------------------------------------- conversion
+
+	/**
+	 * Returns an array containing all of the elements in this list in the correct order.
+	 */
+	public long[] toArray() {
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("List too large for an array: " + size);
+		}
+		return toArray(0, (int) size);
+	}
+
+	/**
+	 * Returns an array containing <code>length</code> elements of the list, starting at the index.
+	 */
+	public long[] toArray(long fromIndex, int length) {
+		checkRange(fromIndex, fromIndex + length);
+		long[] result = new long[length];
+		int copied = 0;
+		long position = fromIndex << elementShift;
+		while (copied < length) {
+			int offset = (int) (position & segmentMask);
+			int count = Math.min(length - copied, (segmentMask + 1 - offset) >>> elementShift);
+			view(position).get(result, copied, count);
+			copied += count;
+			position += (long) count << elementShift;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the view of the segment, starting at the position.
+	 */
+	private LongBuffer view(long position) {
+		ByteBuffer segment = segments[(int) (position >>> segmentShift)].duplicate().order(ByteOrder.nativeOrder());
+		segment.position((int) (position & segmentMask));
+		return segment.asLongBuffer();
+	}
+
+	// ---------------------------------------------------------------- methods
+
+	/**
+	 * Returns the element at the specified position in this list.
+	 */
+	public long get(long index) {
+		checkRange(index);
+		long position = index << 3;
+		return segments[(int) (position >>> segmentShift)].getLong((int) (position & segmentMask));
+	}
+
+	/**
+	 * Replaces the element at the specified position in this list with the specified element.
+	 *
+	 * @return the value previously stored at the specified position
+	 */
+	public long set(long index, long element) {
+		checkRange(index);
+		long position = index << 3;
+		ByteBuffer segment = segments[(int) (position >>> segmentShift)];
+		int offset = (int) (position & segmentMask);
+		long oldval = segment.getLong(offset);
+		segment.putLong(offset, element);
+		return oldval;
+	}
+
+	private long read(long index) {
+		long position = index << 3;
+		return segments[(int) (position >>> segmentShift)].getLong((int) (position & segmentMask));
+	}
+
+	private void put(long index, long element) {
+		long position = index << 3;
+		segments[(int) (position >>> segmentShift)].putLong((int) (position & segmentMask), element);
+	}
+
+	/**
+	 * Writes <code>length</code> elements of the array to the list, starting at the index.
+	 */
+	private void write(long index, long[] data, int offset, int length) {
+		long position = index << elementShift;
+		int end = offset + length;
+		while (offset < end) {
+			int count = Math.min(end - offset, (segmentMask + 1 - (int) (position & segmentMask)) >>> elementShift);
+			view(position).put(data, offset, count);
+			offset += count;
+			position += (long) count << elementShift;
+		}
+	}
+
+	/**
+	 * Appends the specified element to the end of this list.
+	 */
+	public void add(long element) {
+		ensureCapacity(size + 1);
+		put(size++, element);
+	}
+
+	/**
+	 * Appends all of the elements in the specified array to the end of this list.
+	 */
+	public void addAll(long[] data) {
+		addAll(data, 0, data.length);
+	}
+
+	/**
+	 * Appends <code>length</code> elements of the array, starting at the offset.
+	 */
+	public void addAll(long[] data, int offset, int length) {
+		if (offset < 0 || length < 0 || offset > data.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		ensureCapacity(size + length);
+		write(size, data, offset, length);
+		size += length;
+	}
+
+	/**
+	 * Inserts the specified element at the specified position in this list.
+	 * Shifts the element currently at that position (if any) and any subsequent
+	 * elements to the right.
+	 */
+	public void add(long index, long element) {
+		checkRange(index, index);
+		ensureCapacity(size + 1);
+		moveBytes(index << 3, (index + 1) << 3, (size - index) << 3);
+		put(index, element);
+		size++;
+	}
+
+	/**
+	 * Appends all of the elements of the list.
+	 */
+	public void addAll(LongArrayList list) {
+		addAll(list.toArray());
+	}
+
+	/**
+	 * Removes the element at the specified position in this list.
+	 * Shifts any subsequent elements to the left.
+	 *
+	 * @return the value of the element that was removed
+	 */
+	public long remove(long index) {
+		long oldval = get(index);
+		moveBytes((index + 1) << 3, index << 3, (size - index - 1) << 3);
+		size--;
+		return oldval;
+	}
+
+	/**
+	 * Removes from this list all of the elements whose index is between fromIndex,
+	 * inclusive and toIndex, exclusive. Shifts any succeeding elements to the left.
+	 */
+	public void removeRange(long fromIndex, long toIndex) {
+		checkRange(fromIndex, toIndex);
+		moveBytes(toIndex << 3, fromIndex << 3, (size - toIndex) << 3);
+		size -= toIndex - fromIndex;
+	}
+
+	// ---------------------------------------------------------------- search
+
+	/**
+	 * Returns true if this list contains the specified element.
+	 */
+	public boolean contains(long data) {
+		return indexOf(data) != -1;
+	}
+
+	/**
+	 * Searches for the first occurrence of the given argument.
+	 */
+	public long indexOf(long data) {
+		for (long i = 0; i < size; i++) {
+			if (get(i) == data) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the last occurrence of the specified object in this list.
+	 */
+	public long lastIndexOf(long data) {
+		for (long i = size - 1; i >= 0; i--) {
+			if (get(i) == data) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Searches sorted list for the element, using binary search.
+	 * Returns index of the element or <code>(-(insertion point) - 1)</code>
+	 * if list doesn't contain it.
+	 */
+	public long binarySearch(long key) {
+		long low = 0;
+		long high = size - 1;
+		while (low <= high) {
+			long middle = (low + high) >>> 1;
+			long value = read(middle);
+			if (less(value, key)) {
+				low = middle + 1;
+			} else if (less(key, value)) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	// ---------------------------------------------------------------- sort
+
+	/**
+	 * Sorts the elements in ascending order, in the order of <code>Arrays.sort</code>.
+	 * Large ranges are partitioned in place by quicksort and ranges of up to
+	 * 64K elements are sorted on the heap, so the list is never copied as a whole.
+	 */
+	public void sort() {
+		sort(0, size - 1);
+	}
+
+	private void sort(long low, long high) {
+		while (high - low >= SORT_CHUNK) {
+			long middle = (low + high) >>> 1;
+			if (less(read(middle), read(low))) {
+				swap(middle, low);
+			}
+			if (less(read(high), read(middle))) {
+				swap(high, middle);
+				if (less(read(middle), read(low))) {
+					swap(middle, low);
+				}
+			}
+			long pivot = read(middle);
+			long i = low;
+			long j = high;
+			while (i <= j) {
+				while (less(read(i), pivot)) {
+					i++;
+				}
+				while (less(pivot, read(j))) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			// recursion only into the smaller part keeps the stack shallow
+			if (j - low < high - i) {
+				sort(low, j);
+				low = i;
+			} else {
+				sort(i, high);
+				high = j;
+			}
+		}
+		if (low < high) {
+			int length = (int) (high - low + 1);
+			long[] chunk = toArray(low, length);
+			Arrays.sort(chunk);
+			write(low, chunk, 0, length);
+		}
+	}
+
+	private void swap(long i, long j) {
+		long value = read(i);
+		put(i, read(j));
+		put(j, value);
+	}
+
+	private static boolean less(long a, long b) {
+		return a < b;
+	}
+
+	// ---------------------------------------------------------------- bulk
+
+	/**
+	 * Applies the procedure to all elements, in order.
+	 */
+	public void forEach(LongArrayList.Procedure procedure) {
+		forEach(0, size, procedure);
+	}
+
+	/**
+	 * Applies the procedure to the elements between fromIndex, inclusive, and toIndex, exclusive.
+	 * Disjoint ranges may be processed by different threads, when list is not modified.
+	 */
+	public void forEach(long fromIndex, long toIndex, LongArrayList.Procedure procedure) {
+		checkRange(fromIndex, toIndex);
+		long end = toIndex << 3;
+		for (long position = fromIndex << 3; position < end; position += ELEMENT_SIZE) {
+			procedure.apply(segments[(int) (position >>> segmentShift)].getLong((int) (position & segmentMask)));
+		}
+	}
+
+	/**
+	 * Removes all elements that satisfy the predicate, preserving the order of others.
+	 * Returns <code>true</code> if any element was removed.
+	 */
+	public boolean removeIf(LongArrayList.Predicate predicate) {
+		long newSize = 0;
+		for (long i = 0; i < size; i++) {
+			long value = get(i);
+			if (predicate.test(value) == false) {
+				put(newSize++, value);
+			}
+		}
+		boolean removed = newSize != size;
+		size = newSize;
+		return removed;
+	}
+
+	/**
+	 * Returns the sum of all elements.
+	 */
+	public long sum() {
+		return sum(0, size);
+	}
+
+	/**
+	 * Returns the sum of the elements between fromIndex, inclusive, and toIndex, exclusive.
+	 */
+	public long sum(long fromIndex, long toIndex) {
+		checkRange(fromIndex, toIndex);
+		long sum = 0;
+		long end = toIndex << 3;
+		for (long position = fromIndex << 3; position < end; position += ELEMENT_SIZE) {
+			sum += segments[(int) (position >>> segmentShift)].getLong((int) (position & segmentMask));
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the smallest element.
+	 * @throws IllegalStateException if list is empty
+	 */
+	public long min() {
+		checkNotEmpty();
+		long min = get(0);
+		for (long i = 1; i < size; i++) {
+			long value = get(i);
+			if (value < min) {
+				min = value;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Returns the largest element.
+	 * @throws IllegalStateException if list is empty
+	 */
+	public long max() {
+		checkNotEmpty();
+		long max = get(0);
+		for (long i = 1; i < size; i++) {
+			long value = get(i);
+			if (value > max) {
+				max = value;
+			}
+		}
+		return max;
+	}
+}
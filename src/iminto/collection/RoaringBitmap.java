@@ -0,0 +1,1461 @@
+package iminto.collection;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Compressed bitmap of <code>int</code> values, in the manner of Roaring bitmaps.
+ * Values are split by their high 16 bits into chunks; each chunk is stored in a
+ * container suited to its density: sorted <code>char</code> array for up to 4096
+ * values, 8KB bitmap for more values, or a list of runs for consecutive values,
+ * after {@link #runOptimize()}. Sparse and dense sets therefore take little memory,
+ * and set operations work on whole containers, not on single values.
+ * <p>
+ * Values are ordered as unsigned integers, so negative values come after positive ones.
+ * Bitmap is not synchronized.
+ */
+public class RoaringBitmap {
+
+	private static final int MAGIC = 0x0A0B1740;
+	private static final int MAX_ARRAY_SIZE = 4096;
+
+	private static final byte ARRAY = 0;
+	private static final byte BITMAP = 1;
+	private static final byte RUN = 2;
+
+	protected char[] keys = new char[4];
+	protected Container[] containers = new Container[4];
+	protected int size;						// number of containers
+
+	public RoaringBitmap() {
+	}
+
+	/**
+	 * Creates bitmap of the values.
+	 */
+	public RoaringBitmap(int... values) {
+		addAll(values);
+	}
+
+	// ---------------------------------------------------------------- access
+
+	/**
+	 * Adds value to the bitmap. Returns <code>true</code> if bitmap has changed.
+	 */
+	public boolean add(int value) {
+		char high = (char) (value >>> 16);
+		int index = indexOf(high);
+		if (index < 0) {
+			index = -index - 1;
+			insert(index, high, new ArrayContainer());
+		}
+		Container container = containers[index];
+		int cardinality = container.cardinality();
+		containers[index] = container.add((char) value);
+		return containers[index].cardinality() != cardinality;
+	}
+
+	/**
+	 * Adds all values of the array to the bitmap.
+	 */
+	public void addAll(int[] values) {
+		for (int value : values) {
+			add(value);
+		}
+	}
+
+	/**
+	 * Removes value from the bitmap. Returns <code>true</code> if bitmap has changed.
+	 */
+	public boolean remove(int value) {
+		int index = indexOf((char) (value >>> 16));
+		if (index < 0) {
+			return false;
+		}
+		Container container = containers[index];
+		int cardinality = container.cardinality();
+		container = container.remove((char) value);
+		if (container.cardinality() == 0) {
+			delete(index);
+		} else {
+			containers[index] = container;
+		}
+		return container.cardinality() != cardinality;
+	}
+
+	/**
+	 * Returns <code>true</code> if bitmap contains the value.
+	 */
+	public boolean contains(int value) {
+		int index = indexOf((char) (value >>> 16));
+		return index >= 0 && containers[index].contains((char) value);
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	public void clear() {
+		Arrays.fill(containers, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Returns number of values in the bitmap.
+	 */
+	public long cardinality() {
+		long cardinality = 0;
+		for (int i = 0; i < size; i++) {
+			cardinality += containers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Returns <code>true</code> if bitmap has no values.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// ---------------------------------------------------------------- rank
+
+	/**
+	 * Returns number of values smaller or equal to the given value.
+	 */
+	public long rank(int value) {
+		char high = (char) (value >>> 16);
+		long rank = 0;
+		for (int i = 0; i < size; i++) {
+			if (keys[i] < high) {
+				rank += containers[i].cardinality();
+			} else {
+				if (keys[i] == high) {
+					rank += containers[i].rank((char) value);
+				}
+				break;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Returns the value at the given position in the bitmap, starting with zero.
+	 * @throws IndexOutOfBoundsException if there are not enough values
+	 */
+	public int select(long position) {
+		if (position >= 0) {
+			for (int i = 0; i < size; i++) {
+				int cardinality = containers[i].cardinality();
+				if (position < cardinality) {
+					return (keys[i] << 16) | containers[i].select((int) position);
+				}
+				position -= cardinality;
+			}
+		}
+		throw new IndexOutOfBoundsException();
+	}
+
+	/**
+	 * Returns the smallest value.
+	 * @throws NoSuchElementException if bitmap is empty
+	 */
+	public int first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return (keys[0] << 16) | containers[0].select(0);
+	}
+
+	/**
+	 * Returns the largest value.
+	 * @throws NoSuchElementException if bitmap is empty
+	 */
+	public int last() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		Container container = containers[size - 1];
+		return (keys[size - 1] << 16) | container.select(container.cardinality() - 1);
+	}
+
+	// ---------------------------------------------------------------- iteration
+
+	/**
+	 * Applies the procedure to all values, in the ascending order.
+	 */
+	public void forEach(IntArrayList.Procedure procedure) {
+		for (int i = 0; i < size; i++) {
+			containers[i].forEach(keys[i] << 16, procedure);
+		}
+	}
+
+	/**
+	 * Adds all values to the list, in the ascending order.
+	 */
+	public IntArrayList toIntArrayList() {
+		final IntArrayList list = new IntArrayList((int) Math.min(cardinality(), Integer.MAX_VALUE - 8));
+		forEach(new IntArrayList.Procedure() {
+			public void apply(int value) {
+				list.add(value);
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * Returns array of all values, in the ascending order.
+	 */
+	public int[] toArray() {
+		return toIntArrayList().toArray();
+	}
+
+	// ---------------------------------------------------------------- set operations
+
+	/**
+	 * Returns intersection of the bitmaps.
+	 */
+	public static RoaringBitmap and(RoaringBitmap x1, RoaringBitmap x2) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i1 = 0, i2 = 0;
+		while (i1 < x1.size && i2 < x2.size) {
+			char k1 = x1.keys[i1];
+			char k2 = x2.keys[i2];
+			if (k1 < k2) {
+				i1++;
+			} else if (k1 > k2) {
+				i2++;
+			} else {
+				result.append(k1, Container.and(x1.containers[i1++], x2.containers[i2++]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns union of the bitmaps.
+	 */
+	public static RoaringBitmap or(RoaringBitmap x1, RoaringBitmap x2) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i1 = 0, i2 = 0;
+		while (i1 < x1.size || i2 < x2.size) {
+			int k1 = i1 < x1.size ? x1.keys[i1] : Integer.MAX_VALUE;
+			int k2 = i2 < x2.size ? x2.keys[i2] : Integer.MAX_VALUE;
+			if (k1 < k2) {
+				result.append((char) k1, x1.containers[i1++].copy());
+			} else if (k1 > k2) {
+				result.append((char) k2, x2.containers[i2++].copy());
+			} else {
+				result.append((char) k1, Container.or(x1.containers[i1++], x2.containers[i2++]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns values of the first bitmap that are not in the second one.
+	 */
+	public static RoaringBitmap andNot(RoaringBitmap x1, RoaringBitmap x2) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i2 = 0;
+		for (int i1 = 0; i1 < x1.size; i1++) {
+			char k1 = x1.keys[i1];
+			while (i2 < x2.size && x2.keys[i2] < k1) {
+				i2++;
+			}
+			if (i2 < x2.size && x2.keys[i2] == k1) {
+				result.append(k1, Container.andNot(x1.containers[i1], x2.containers[i2]));
+			} else {
+				result.append(k1, x1.containers[i1].copy());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns values that are in exactly one of the bitmaps.
+	 */
+	public static RoaringBitmap xor(RoaringBitmap x1, RoaringBitmap x2) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i1 = 0, i2 = 0;
+		while (i1 < x1.size || i2 < x2.size) {
+			int k1 = i1 < x1.size ? x1.keys[i1] : Integer.MAX_VALUE;
+			int k2 = i2 < x2.size ? x2.keys[i2] : Integer.MAX_VALUE;
+			if (k1 < k2) {
+				result.append((char) k1, x1.containers[i1++].copy());
+			} else if (k1 > k2) {
+				result.append((char) k2, x2.containers[i2++].copy());
+			} else {
+				result.append((char) k1, Container.xor(x1.containers[i1++], x2.containers[i2++]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns number of values in both bitmaps, without creating the intersection.
+	 */
+	public static long andCardinality(RoaringBitmap x1, RoaringBitmap x2) {
+		long cardinality = 0;
+		int i1 = 0, i2 = 0;
+		while (i1 < x1.size && i2 < x2.size) {
+			char k1 = x1.keys[i1];
+			char k2 = x2.keys[i2];
+			if (k1 < k2) {
+				i1++;
+			} else if (k1 > k2) {
+				i2++;
+			} else {
+				cardinality += Container.andCardinality(x1.containers[i1++], x2.containers[i2++]);
+			}
+		}
+		return cardinality;
+	}
+
+	// ---------------------------------------------------------------- compression
+
+	/**
+	 * Converts containers of consecutive values to runs, where it saves memory.
+	 * Returns <code>true</code> if any container has been converted.
+	 */
+	public boolean runOptimize() {
+		boolean changed = false;
+		for (int i = 0; i < size; i++) {
+			Container container = containers[i].runOptimize();
+			changed |= container != containers[i];
+			containers[i] = container;
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns size of the serialized bitmap, in bytes. Memory used by the
+	 * bitmap is about the same.
+	 */
+	public long getSizeInBytes() {
+		long bytes = 8;
+		for (int i = 0; i < size; i++) {
+			bytes += 2 + containers[i].serializedSize();
+		}
+		return bytes;
+	}
+
+	// ---------------------------------------------------------------- containers
+
+	/**
+	 * Returns index of the key, or <code>(-(insertion point) - 1)</code>.
+	 */
+	private int indexOf(char key) {
+		// values are usually added in order
+		if (size > 0 && keys[size - 1] == key) {
+			return size - 1;
+		}
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	private void insert(int index, char key, Container container) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size << 1);
+			containers = Arrays.copyOf(containers, size << 1);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(containers, index, containers, index + 1, size - index);
+		keys[index] = key;
+		containers[index] = container;
+		size++;
+	}
+
+	private void delete(int index) {
+		System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+		System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+		containers[--size] = null;
+	}
+
+	/**
+	 * Appends container with the key larger than all keys. Empty containers are skipped.
+	 */
+	private void append(char key, Container container) {
+		if (container.cardinality() != 0) {
+			insert(size, key, container);
+		}
+	}
+
+	// ---------------------------------------------------------------- serialization
+
+	/**
+	 * Writes bitmap to the stream. Stream is not closed.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(out);
+		writeTo((DataOutput) dos);
+		dos.flush();
+	}
+
+	/**
+	 * Writes bitmap to the buffer, e.g. a memory-mapped file, at its position.
+	 * Buffer must have at least {@link #getSizeInBytes()} bytes remaining.
+	 */
+	public void writeTo(final ByteBuffer buffer) throws IOException {
+		writeTo((DataOutput) new DataOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+				buffer.put((byte) b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				buffer.put(b, off, len);
+			}
+		}));
+	}
+
+	private void writeTo(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeChar(keys[i]);
+			containers[i].writeTo(out);
+		}
+	}
+
+	/**
+	 * Reads bitmap written by {@link #writeTo(OutputStream)}. Stream is not closed.
+	 */
+	public static RoaringBitmap readFrom(InputStream in) throws IOException {
+		return readFrom((DataInput) new DataInputStream(in));
+	}
+
+	/**
+	 * Reads bitmap written by {@link #writeTo(ByteBuffer)}, from the buffer position.
+	 */
+	public static RoaringBitmap readFrom(final ByteBuffer buffer) throws IOException {
+		try {
+			return readFrom((DataInput) new DataInputStream(new InputStream() {
+				@Override
+				public int read() {
+					return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) {
+					if (buffer.hasRemaining() == false) {
+						return -1;
+					}
+					len = Math.min(len, buffer.remaining());
+					buffer.get(b, off, len);
+					return len;
+				}
+			}));
+		} catch (BufferUnderflowException buex) {
+			throw new IOException("Truncated roaring bitmap");
+		}
+	}
+
+	private static RoaringBitmap readFrom(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a roaring bitmap");
+		}
+		int count = in.readInt();
+		RoaringBitmap bitmap = new RoaringBitmap();
+		char previous = 0;
+		for (int i = 0; i < count; i++) {
+			char key = in.readChar();
+			if (i > 0 && key <= previous) {
+				throw new IOException("Invalid roaring bitmap key order");
+			}
+			bitmap.append(key, Container.readFrom(in));
+			previous = key;
+		}
+		return bitmap;
+	}
+
+	// ---------------------------------------------------------------- object
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("{");
+		forEach(new IntArrayList.Procedure() {
+			public void apply(int value) {
+				if (sb.length() > 1) {
+					sb.append(',');
+				}
+				sb.append(value & 0xFFFFFFFFL);
+			}
+		});
+		return sb.append('}').toString();
+	}
+
+	// ---------------------------------------------------------------- container classes
+
+	/**
+	 * Set of the low 16 bits of values that share the high 16 bits.
+	 * Mutating methods return the container that holds the result,
+	 * which may be a different one.
+	 */
+	abstract static class Container {
+
+		abstract int cardinality();
+
+		abstract boolean contains(char value);
+
+		abstract Container add(char value);
+
+		abstract Container remove(char value);
+
+		/**
+		 * Returns number of values smaller or equal to the given one.
+		 */
+		abstract int rank(char value);
+
+		abstract char select(int position);
+
+		abstract void forEach(int high, IntArrayList.Procedure procedure);
+
+		abstract Container copy();
+
+		abstract int serializedSize();
+
+		abstract void writeTo(DataOutput out) throws IOException;
+
+		/**
+		 * Returns the container that takes the least memory.
+		 */
+		abstract Container runOptimize();
+
+		/**
+		 * Returns array or bitmap container, for set operations.
+		 */
+		Container toArrayOrBitmap() {
+			return this;
+		}
+
+		static Container readFrom(DataInput in) throws IOException {
+			byte type = in.readByte();
+			switch (type) {
+				case ARRAY: {
+					int cardinality = in.readChar() + 1;
+					char[] content = new char[cardinality];
+					for (int i = 0; i < cardinality; i++) {
+						content[i] = in.readChar();
+					}
+					return new ArrayContainer(content, cardinality);
+				}
+				case BITMAP: {
+					long[] words = new long[1024];
+					for (int i = 0; i < words.length; i++) {
+						words[i] = in.readLong();
+					}
+					return new BitmapContainer(words, -1);
+				}
+				case RUN: {
+					int runCount = in.readChar();
+					char[] runs = new char[runCount << 1];
+					for (int i = 0; i < runs.length; i++) {
+						runs[i] = in.readChar();
+					}
+					return new RunContainer(runs, runCount);
+				}
+				default:
+					throw new IOException("Invalid container type: " + type);
+			}
+		}
+
+		/**
+		 * Returns container of the same values that takes the least memory:
+		 * array, bitmap or runs.
+		 */
+		static Container optimal(Container container, int runCount) {
+			int cardinality = container.cardinality();
+			int runSize = 2 + 4 * runCount;
+			int arraySize = cardinality <= MAX_ARRAY_SIZE ? 2 + 2 * cardinality : Integer.MAX_VALUE;
+			int bitmapSize = 8192;
+			if (runSize < Math.min(arraySize, bitmapSize)) {
+				return container instanceof RunContainer ? container : RunContainer.of(container, runCount);
+			}
+			if (arraySize < bitmapSize) {
+				return container instanceof ArrayContainer ? container : ArrayContainer.of(container);
+			}
+			return container instanceof BitmapContainer ? container : BitmapContainer.of(container);
+		}
+
+		// ---------------------------------------------------------------- set operations
+
+		static Container and(Container c1, Container c2) {
+			// small array is filtered by any container, and runs are combined
+			// with bitmap words, without conversion of either container
+			if (c1 instanceof ArrayContainer) {
+				if (c2 instanceof ArrayContainer) {
+					return ArrayContainer.and((ArrayContainer) c1, (ArrayContainer) c2);
+				}
+				return ((ArrayContainer) c1).filter(c2, true);
+			}
+			if (c2 instanceof ArrayContainer) {
+				return ((ArrayContainer) c2).filter(c1, true);
+			}
+			if (c1 instanceof RunContainer) {
+				if (c2 instanceof RunContainer) {
+					return ((RunContainer) c1).and((RunContainer) c2);
+				}
+				return ((RunContainer) c1).and((BitmapContainer) c2);
+			}
+			if (c2 instanceof RunContainer) {
+				return ((RunContainer) c2).and((BitmapContainer) c1);
+			}
+			long[] w1 = ((BitmapContainer) c1).words;
+			long[] w2 = ((BitmapContainer) c2).words;
+			long[] words = new long[1024];
+			for (int i = 0; i < 1024; i++) {
+				words[i] = w1[i] & w2[i];
+			}
+			return new BitmapContainer(words, -1).toEfficient();
+		}
+
+		/**
+		 * Returns number of values in both containers, without creating the intersection.
+		 */
+		static int andCardinality(Container c1, Container c2) {
+			if (c1 instanceof ArrayContainer) {
+				return ((ArrayContainer) c1).andCardinality(c2);
+			}
+			if (c2 instanceof ArrayContainer) {
+				return ((ArrayContainer) c2).andCardinality(c1);
+			}
+			if (c1 instanceof RunContainer) {
+				return ((RunContainer) c1).andCardinality(c2);
+			}
+			if (c2 instanceof RunContainer) {
+				return ((RunContainer) c2).andCardinality(c1);
+			}
+			long[] w1 = ((BitmapContainer) c1).words;
+			long[] w2 = ((BitmapContainer) c2).words;
+			int cardinality = 0;
+			for (int i = 0; i < 1024; i++) {
+				cardinality += Long.bitCount(w1[i] & w2[i]);
+			}
+			return cardinality;
+		}
+
+		static Container or(Container c1, Container c2) {
+			if (c1 instanceof ArrayContainer && c2 instanceof ArrayContainer) {
+				return ArrayContainer.or((ArrayContainer) c1, (ArrayContainer) c2);
+			}
+			if (c1 instanceof ArrayContainer || c2 instanceof RunContainer) {
+				Container swap = c1;
+				c1 = c2;
+				c2 = swap;
+			}
+			if (c1 instanceof RunContainer) {
+				RunContainer run = (RunContainer) c1;
+				if (c2 instanceof RunContainer) {
+					return run.or((RunContainer) c2);
+				}
+				if (c2 instanceof ArrayContainer) {
+					// values of the array are merged as runs, usually of single values
+					ArrayContainer array = (ArrayContainer) c2;
+					return run.or(RunContainer.of(array, array.runCount()));
+				}
+				BitmapContainer result = (BitmapContainer) c2.copy();
+				run.apply(result.words, null, RunContainer.SET);
+				result.cardinality = -1;
+				return result;
+			}
+			BitmapContainer result = (BitmapContainer) c1.copy();
+			if (c2 instanceof ArrayContainer) {
+				ArrayContainer array = (ArrayContainer) c2;
+				for (int i = 0; i < array.cardinality; i++) {
+					result.add(array.content[i]);
+				}
+				return result;
+			}
+			long[] words = ((BitmapContainer) c2).words;
+			for (int i = 0; i < 1024; i++) {
+				result.words[i] |= words[i];
+			}
+			result.cardinality = -1;
+			return result.toEfficient();
+		}
+
+		static Container andNot(Container c1, Container c2) {
+			c1 = c1.toArrayOrBitmap();
+			if (c1 instanceof ArrayContainer) {
+				return ((ArrayContainer) c1).filter(c2, false);
+			}
+			BitmapContainer result = (BitmapContainer) c1.copy();
+			if (c2 instanceof ArrayContainer) {
+				ArrayContainer array = (ArrayContainer) c2;
+				for (int i = 0; i < array.cardinality; i++) {
+					char value = array.content[i];
+					result.words[value >>> 6] &= ~(1L << value);
+				}
+			} else if (c2 instanceof RunContainer) {
+				((RunContainer) c2).apply(result.words, null, RunContainer.CLEAR);
+			} else {
+				long[] words = ((BitmapContainer) c2).words;
+				for (int i = 0; i < 1024; i++) {
+					result.words[i] &= ~words[i];
+				}
+			}
+			result.cardinality = -1;
+			return result.toEfficient();
+		}
+
+		static Container xor(Container c1, Container c2) {
+			if (c1 instanceof RunContainer && c2 instanceof BitmapContainer) {
+				Container swap = c1;
+				c1 = c2;
+				c2 = swap;
+			}
+			if (c1 instanceof BitmapContainer && c2 instanceof RunContainer) {
+				BitmapContainer result = (BitmapContainer) c1.copy();
+				((RunContainer) c2).apply(result.words, null, RunContainer.FLIP);
+				result.cardinality = -1;
+				return result.toEfficient();
+			}
+			c1 = c1.toArrayOrBitmap();
+			c2 = c2.toArrayOrBitmap();
+			if (c1 instanceof ArrayContainer && c2 instanceof ArrayContainer) {
+				return ArrayContainer.xor((ArrayContainer) c1, (ArrayContainer) c2);
+			}
+			if (c1 instanceof ArrayContainer) {
+				Container swap = c1;
+				c1 = c2;
+				c2 = swap;
+			}
+			BitmapContainer result = (BitmapContainer) c1.copy();
+			if (c2 instanceof ArrayContainer) {
+				ArrayContainer array = (ArrayContainer) c2;
+				for (int i = 0; i < array.cardinality; i++) {
+					char value = array.content[i];
+					result.words[value >>> 6] ^= 1L << value;
+				}
+			} else {
+				long[] words = ((BitmapContainer) c2).words;
+				for (int i = 0; i < 1024; i++) {
+					result.words[i] ^= words[i];
+				}
+			}
+			result.cardinality = -1;
+			return result.toEfficient();
+		}
+	}
+
+	/**
+	 * Sorted array of up to 4096 values.
+	 */
+	static class ArrayContainer extends Container {
+
+		char[] content;
+		int cardinality;
+
+		ArrayContainer() {
+			this(new char[4], 0);
+		}
+
+		ArrayContainer(char[] content, int cardinality) {
+			this.content = content;
+			this.cardinality = cardinality;
+		}
+
+		static ArrayContainer of(Container container) {
+			final ArrayContainer array = new ArrayContainer(new char[container.cardinality()], 0);
+			container.forEach(0, new IntArrayList.Procedure() {
+				public void apply(int value) {
+					array.content[array.cardinality++] = (char) value;
+				}
+			});
+			return array;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(content, 0, cardinality, value) >= 0;
+		}
+
+		@Override
+		Container add(char value) {
+			int index = cardinality > 0 && content[cardinality - 1] < value ? -cardinality - 1 : Arrays.binarySearch(content, 0, cardinality, value);
+			if (index >= 0) {
+				return this;
+			}
+			if (cardinality >= MAX_ARRAY_SIZE) {
+				return BitmapContainer.of(this).add(value);
+			}
+			index = -index - 1;
+			if (cardinality == content.length) {
+				content = Arrays.copyOf(content, Math.min(cardinality << 1, MAX_ARRAY_SIZE));
+			}
+			System.arraycopy(content, index, content, index + 1, cardinality - index);
+			content[index] = value;
+			cardinality++;
+			return this;
+		}
+
+		@Override
+		Container remove(char value) {
+			int index = Arrays.binarySearch(content, 0, cardinality, value);
+			if (index >= 0) {
+				System.arraycopy(content, index + 1, content, index, cardinality - index - 1);
+				cardinality--;
+			}
+			return this;
+		}
+
+		@Override
+		int rank(char value) {
+			int index = Arrays.binarySearch(content, 0, cardinality, value);
+			return index >= 0 ? index + 1 : -index - 1;
+		}
+
+		@Override
+		char select(int position) {
+			return content[position];
+		}
+
+		@Override
+		void forEach(int high, IntArrayList.Procedure procedure) {
+			for (int i = 0; i < cardinality; i++) {
+				procedure.apply(high | content[i]);
+			}
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(content, cardinality), cardinality);
+		}
+
+		@Override
+		int serializedSize() {
+			return 3 + 2 * cardinality;
+		}
+
+		@Override
+		void writeTo(DataOutput out) throws IOException {
+			out.writeByte(ARRAY);
+			out.writeChar(cardinality - 1);
+			for (int i = 0; i < cardinality; i++) {
+				out.writeChar(content[i]);
+			}
+		}
+
+		@Override
+		Container runOptimize() {
+			return optimal(this, runCount());
+		}
+
+		/**
+		 * Returns number of runs of consecutive values.
+		 */
+		int runCount() {
+			int runCount = 0;
+			for (int i = 0; i < cardinality; i++) {
+				if (i == 0 || content[i] != content[i - 1] + 1) {
+					runCount++;
+				}
+			}
+			return runCount;
+		}
+
+		/**
+		 * Returns values that are, or are not, in the other container.
+		 */
+		ArrayContainer filter(Container other, boolean contained) {
+			char[] result = new char[cardinality];
+			int count = 0;
+			if (other instanceof RunContainer) {
+				RunContainer runs = (RunContainer) other;
+				int run = 0;
+				for (int i = 0; i < cardinality; i++) {
+					run = runs.next(run, content[i]);
+					if ((run < runs.runCount && runs.start(run) <= content[i]) == contained) {
+						result[count++] = content[i];
+					}
+				}
+				return new ArrayContainer(result, count);
+			}
+			for (int i = 0; i < cardinality; i++) {
+				if (other.contains(content[i]) == contained) {
+					result[count++] = content[i];
+				}
+			}
+			return new ArrayContainer(result, count);
+		}
+
+		/**
+		 * Returns number of values that are also in the other container.
+		 */
+		int andCardinality(Container other) {
+			if (other instanceof ArrayContainer) {
+				return and(this, (ArrayContainer) other, null);
+			}
+			int count = 0;
+			if (other instanceof RunContainer) {
+				RunContainer runs = (RunContainer) other;
+				int run = 0;
+				for (int i = 0; i < cardinality && run < runs.runCount; i++) {
+					run = runs.next(run, content[i]);
+					if (run < runs.runCount && runs.start(run) <= content[i]) {
+						count++;
+					}
+				}
+				return count;
+			}
+			for (int i = 0; i < cardinality; i++) {
+				if (other.contains(content[i])) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		static ArrayContainer and(ArrayContainer a1, ArrayContainer a2) {
+			char[] result = new char[Math.min(a1.cardinality, a2.cardinality)];
+			return new ArrayContainer(result, and(a1, a2, result));
+		}
+
+		/**
+		 * Returns number of values in both arrays, and stores them to the result, if not null.
+		 * Arrays are merged without branches on the values, which are mispredicted half of the time.
+		 */
+		static int and(ArrayContainer a1, ArrayContainer a2, char[] result) {
+			int count = 0;
+			int i1 = 0, i2 = 0;
+			while (i1 < a1.cardinality && i2 < a2.cardinality) {
+				int v1 = a1.content[i1];
+				int v2 = a2.content[i2];
+				int difference = v1 - v2;
+				if (result != null) {
+					result[count] = (char) v1;		// kept by the count when equal
+				}
+				count += (difference | -difference) >>> 31 ^ 1;
+				i1 += (v2 - v1) >>> 31 ^ 1;
+				i2 += difference >>> 31 ^ 1;
+			}
+			return count;
+		}
+
+		static Container or(ArrayContainer a1, ArrayContainer a2) {
+			if (a1.cardinality + a2.cardinality > MAX_ARRAY_SIZE) {
+				BitmapContainer result = BitmapContainer.of(a1);
+				for (int i = 0; i < a2.cardinality; i++) {
+					result.add(a2.content[i]);
+				}
+				return result.toEfficient();
+			}
+			char[] result = new char[a1.cardinality + a2.cardinality];
+			int count = 0;
+			int i1 = 0, i2 = 0;
+			while (i1 < a1.cardinality || i2 < a2.cardinality) {
+				int v1 = i1 < a1.cardinality ? a1.content[i1] : Integer.MAX_VALUE;
+				int v2 = i2 < a2.cardinality ? a2.content[i2] : Integer.MAX_VALUE;
+				if (v1 <= v2) {
+					result[count++] = (char) v1;
+					i1++;
+					if (v1 == v2) {
+						i2++;
+					}
+				} else {
+					result[count++] = (char) v2;
+					i2++;
+				}
+			}
+			return new ArrayContainer(result, count);
+		}
+
+		static Container xor(ArrayContainer a1, ArrayContainer a2) {
+			if (a1.cardinality + a2.cardinality > MAX_ARRAY_SIZE) {
+				BitmapContainer result = BitmapContainer.of(a1);
+				for (int i = 0; i < a2.cardinality; i++) {
+					char value = a2.content[i];
+					result.words[value >>> 6] ^= 1L << value;
+				}
+				result.cardinality = -1;
+				return result.toEfficient();
+			}
+			char[] result = new char[a1.cardinality + a2.cardinality];
+			int count = 0;
+			int i1 = 0, i2 = 0;
+			while (i1 < a1.cardinality || i2 < a2.cardinality) {
+				int v1 = i1 < a1.cardinality ? a1.content[i1] : Integer.MAX_VALUE;
+				int v2 = i2 < a2.cardinality ? a2.content[i2] : Integer.MAX_VALUE;
+				if (v1 < v2) {
+					result[count++] = (char) v1;
+					i1++;
+				} else if (v1 > v2) {
+					result[count++] = (char) v2;
+					i2++;
+				} else {
+					i1++;
+					i2++;
+				}
+			}
+			return new ArrayContainer(result, count);
+		}
+	}
+
+	/**
+	 * Bitmap of all 65536 values.
+	 */
+	static class BitmapContainer extends Container {
+
+		final long[] words;
+		int cardinality;		// -1 when it has to be counted
+
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		static BitmapContainer of(Container container) {
+			final BitmapContainer bitmap = new BitmapContainer(new long[1024], container.cardinality());
+			container.forEach(0, new IntArrayList.Procedure() {
+				public void apply(int value) {
+					bitmap.words[value >>> 6] |= 1L << value;
+				}
+			});
+			return bitmap;
+		}
+
+		@Override
+		int cardinality() {
+			if (cardinality == -1) {
+				int count = 0;
+				for (long word : words) {
+					count += Long.bitCount(word);
+				}
+				cardinality = count;
+			}
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		Container add(char value) {
+			long word = words[value >>> 6];
+			long bit = 1L << value;
+			if ((word & bit) == 0) {
+				words[value >>> 6] = word | bit;
+				cardinality = cardinality() + 1;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(char value) {
+			long word = words[value >>> 6];
+			long bit = 1L << value;
+			if ((word & bit) != 0) {
+				words[value >>> 6] = word & ~bit;
+				cardinality = cardinality() - 1;
+				if (cardinality <= MAX_ARRAY_SIZE) {
+					return ArrayContainer.of(this);
+				}
+			}
+			return this;
+		}
+
+		@Override
+		int rank(char value) {
+			int wordIndex = value >>> 6;
+			int rank = 0;
+			for (int i = 0; i < wordIndex; i++) {
+				rank += Long.bitCount(words[i]);
+			}
+			long mask = -1L >>> (63 - (value & 63));
+			return rank + Long.bitCount(words[wordIndex] & mask);
+		}
+
+		@Override
+		char select(int position) {
+			for (int i = 0; i < words.length; i++) {
+				int count = Long.bitCount(words[i]);
+				if (position < count) {
+					long word = words[i];
+					for (int j = 0; j < position; j++) {
+						word &= word - 1;
+					}
+					return (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+				}
+				position -= count;
+			}
+			throw new IndexOutOfBoundsException();
+		}
+
+		@Override
+		void forEach(int high, IntArrayList.Procedure procedure) {
+			for (int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while (word != 0) {
+					procedure.apply(high | (i << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(words.clone(), cardinality);
+		}
+
+		@Override
+		int serializedSize() {
+			return 1 + 8192;
+		}
+
+		@Override
+		void writeTo(DataOutput out) throws IOException {
+			out.writeByte(BITMAP);
+			for (long word : words) {
+				out.writeLong(word);
+			}
+		}
+
+		@Override
+		Container runOptimize() {
+			int runCount = 0;
+			long previous = 0;
+			for (long word : words) {
+				// count first bits of the runs
+				runCount += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+				previous = word;
+			}
+			return optimal(this, runCount);
+		}
+
+		/**
+		 * Returns array container if there are few values.
+		 */
+		Container toEfficient() {
+			if (cardinality() > MAX_ARRAY_SIZE) {
+				return this;
+			}
+			char[] content = new char[cardinality];
+			int count = 0;
+			for (int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while (word != 0) {
+					content[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer(content, count);
+		}
+	}
+
+	/**
+	 * Runs of consecutive values, as pairs of the first value and the run length minus one.
+	 */
+	static class RunContainer extends Container {
+
+		// operations of apply()
+		static final int SET = 0;
+		static final int CLEAR = 1;
+		static final int FLIP = 2;
+		static final int AND = 3;
+		static final int COUNT = 4;
+
+		final char[] runs;
+		final int runCount;
+
+		RunContainer(char[] runs, int runCount) {
+			this.runs = runs;
+			this.runCount = runCount;
+		}
+
+		static RunContainer of(Container container, int runCount) {
+			final char[] runs = new char[runCount << 1];
+			container.forEach(0, new IntArrayList.Procedure() {
+				int index = -2;
+
+				public void apply(int value) {
+					if (index >= 0 && runs[index] + runs[index + 1] + 1 == value) {
+						runs[index + 1]++;
+					} else {
+						index += 2;
+						runs[index] = (char) value;
+					}
+				}
+			});
+			return new RunContainer(runs, runCount);
+		}
+
+		private int start(int run) {
+			return runs[run << 1];
+		}
+
+		private int end(int run) {
+			return runs[run << 1] + runs[(run << 1) + 1];
+		}
+
+		/**
+		 * Returns index of the first run, from the given one, that ends at or after the value,
+		 * or number of runs. Sorted values are looked up by the runs in a single pass this way.
+		 */
+		private int next(int run, char value) {
+			while (run < runCount && end(run) < value) {
+				run++;
+			}
+			return run;
+		}
+
+		/**
+		 * Returns index of the last run that starts at or before the value, or -1.
+		 */
+		private int runOf(char value) {
+			int low = 0;
+			int high = runCount - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (start(mid) <= value) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return high;
+		}
+
+		@Override
+		int cardinality() {
+			int cardinality = runCount;
+			for (int i = 0; i < runCount; i++) {
+				cardinality += runs[(i << 1) + 1];
+			}
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(char value) {
+			int run = runOf(value);
+			return run >= 0 && value <= end(run);
+		}
+
+		@Override
+		Container add(char value) {
+			return contains(value) ? this : toArrayOrBitmap().add(value);
+		}
+
+		@Override
+		Container remove(char value) {
+			return contains(value) ? toArrayOrBitmap().remove(value) : this;
+		}
+
+		@Override
+		int rank(char value) {
+			int run = runOf(value);
+			int rank = 0;
+			for (int i = 0; i < run; i++) {
+				rank += runs[(i << 1) + 1] + 1;
+			}
+			if (run >= 0) {
+				rank += Math.min(value, end(run)) - start(run) + 1;
+			}
+			return rank;
+		}
+
+		@Override
+		char select(int position) {
+			for (int i = 0; i < runCount; i++) {
+				int length = runs[(i << 1) + 1] + 1;
+				if (position < length) {
+					return (char) (start(i) + position);
+				}
+				position -= length;
+			}
+			throw new IndexOutOfBoundsException();
+		}
+
+		@Override
+		void forEach(int high, IntArrayList.Procedure procedure) {
+			for (int i = 0; i < runCount; i++) {
+				int end = end(i);
+				for (int value = start(i); value <= end; value++) {
+					procedure.apply(high | value);
+				}
+			}
+		}
+
+		@Override
+		Container copy() {
+			return this;		// run containers are immutable
+		}
+
+		@Override
+		int serializedSize() {
+			return 3 + 4 * runCount;
+		}
+
+		@Override
+		void writeTo(DataOutput out) throws IOException {
+			out.writeByte(RUN);
+			out.writeChar(runCount);
+			for (int i = 0; i < runCount << 1; i++) {
+				out.writeChar(runs[i]);
+			}
+		}
+
+		@Override
+		Container runOptimize() {
+			return optimal(this, runCount);
+		}
+
+		/**
+		 * Returns intersection of the runs.
+		 */
+		Container and(RunContainer other) {
+			char[] result = new char[(runCount + other.runCount) << 1];
+			int count = 0;
+			int i1 = 0, i2 = 0;
+			while (i1 < runCount && i2 < other.runCount) {
+				int start = Math.max(start(i1), other.start(i2));
+				int end = Math.min(end(i1), other.end(i2));
+				if (start <= end) {
+					result[count << 1] = (char) start;
+					result[(count << 1) + 1] = (char) (end - start);
+					count++;
+				}
+				if (end(i1) < other.end(i2)) {
+					i1++;
+				} else {
+					i2++;
+				}
+			}
+			return new RunContainer(result, count).runOptimize();
+		}
+
+		/**
+		 * Returns values of the bitmap that are in the runs.
+		 */
+		Container and(BitmapContainer bitmap) {
+			long[] words = new long[1024];
+			apply(bitmap.words, words, AND);
+			return new BitmapContainer(words, -1).toEfficient();
+		}
+
+		/**
+		 * Returns number of values in both containers, which are runs or bitmap.
+		 */
+		int andCardinality(Container other) {
+			if (other instanceof BitmapContainer) {
+				return apply(((BitmapContainer) other).words, null, COUNT);
+			}
+			RunContainer runs = (RunContainer) other;
+			int cardinality = 0;
+			int i1 = 0, i2 = 0;
+			while (i1 < runCount && i2 < runs.runCount) {
+				int start = Math.max(start(i1), runs.start(i2));
+				int end = Math.min(end(i1), runs.end(i2));
+				if (start <= end) {
+					cardinality += end - start + 1;
+				}
+				if (end(i1) < runs.end(i2)) {
+					i1++;
+				} else {
+					i2++;
+				}
+			}
+			return cardinality;
+		}
+
+		/**
+		 * Combines the runs with bitmap words, a whole word at a time: SET, CLEAR and FLIP
+		 * change values of the runs in the words, AND copies values of the runs from the
+		 * words to the result, and COUNT returns number of values of the runs in the words.
+		 */
+		int apply(long[] words, long[] result, int operation) {
+			int count = 0;
+			for (int i = 0; i < runCount; i++) {
+				int end = end(i) + 1;
+				int lastWord = (end - 1) >>> 6;
+				long mask = -1L << start(i);
+				for (int w = start(i) >>> 6; w <= lastWord; w++) {
+					if (w == lastWord) {
+						mask &= -1L >>> -end;
+					}
+					switch (operation) {
+						case SET:
+							words[w] |= mask;
+							break;
+						case CLEAR:
+							words[w] &= ~mask;
+							break;
+						case FLIP:
+							words[w] ^= mask;
+							break;
+						case AND:
+							result[w] |= words[w] & mask;
+							break;
+						default:
+							count += Long.bitCount(words[w] & mask);
+					}
+					mask = -1L;
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Returns union of the runs.
+		 */
+		Container or(RunContainer other) {
+			char[] result = new char[(runCount + other.runCount) << 1];
+			int count = 0;
+			int i1 = 0, i2 = 0;
+			while (i1 < runCount || i2 < other.runCount) {
+				int start, end;
+				if (i2 == other.runCount || (i1 < runCount && start(i1) <= other.start(i2))) {
+					start = start(i1);
+					end = end(i1++);
+				} else {
+					start = other.start(i2);
+					end = other.end(i2++);
+				}
+				if (count > 0 && start <= result[(count << 1) - 2] + result[(count << 1) - 1] + 1) {
+					// overlaps or touches the previous run
+					int previousStart = result[(count << 1) - 2];
+					int previousEnd = previousStart + result[(count << 1) - 1];
+					result[(count << 1) - 1] = (char) (Math.max(previousEnd, end) - previousStart);
+				} else {
+					result[count << 1] = (char) start;
+					result[(count << 1) + 1] = (char) (end - start);
+					count++;
+				}
+			}
+			return new RunContainer(result, count).runOptimize();
+		}
+
+		@Override
+		Container toArrayOrBitmap() {
+			int cardinality = cardinality();
+			if (cardinality <= MAX_ARRAY_SIZE) {
+				char[] content = new char[cardinality];
+				int count = 0;
+				for (int i = 0; i < runCount; i++) {
+					int end = end(i);
+					for (int value = start(i); value <= end; value++) {
+						content[count++] = (char) value;
+					}
+				}
+				return new ArrayContainer(content, count);
+			}
+			long[] words = new long[1024];
+			apply(words, null, SET);
+			return new BitmapContainer(words, cardinality);
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package iminto.collection;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Bloom filter that grows with the number of insertions, for the case when
+ * it is not known in advance. Filter consists of slices, each one a {@link BloomFilter}.
+ * When the last slice is filled to its capacity, a new slice is added, with
+ * twice the capacity and half the false positive probability of the previous one,
+ * so total false positive probability stays under the given value.
+ * <p>
+ * Value is added only to the last slice and only when no slice contains it yet.
+ * Filter is thread-safe.
+ */
+public class ScalableBloomFilter {
+
+	private static final int MAGIC = 0x5CA1AB1E;
+	private static final int GROWTH = 2;
+	private static final double TIGHTENING = 0.5;
+	private static final int GROWTH_CHECK_MASK = 15;	// large slices are checked on every 16th insertion, on average
+	private static final long GROWTH_CHECK_CAPACITY = 4096;
+
+	protected final long initialCapacity;
+	protected final double fpp;
+	protected volatile BloomFilter[] slices;
+	protected volatile long lastCapacity;
+
+	/**
+	 * Creates filter whose first slice holds <code>initialCapacity</code> values
+	 * and total false positive probability doesn't exceed <code>fpp</code>.
+	 */
+	public ScalableBloomFilter(long initialCapacity, double fpp) {
+		if (initialCapacity <= 0) {
+			throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
+		}
+		if (fpp <= 0 || fpp >= 1) {
+			throw new IllegalArgumentException("Invalid false positive probability: " + fpp);
+		}
+		this.initialCapacity = initialCapacity;
+		this.fpp = fpp;
+		this.slices = new BloomFilter[] {createSlice(0)};
+		this.lastCapacity = initialCapacity;
+	}
+
+	/**
+	 * Creates the slice of given index.
+	 */
+	protected BloomFilter createSlice(int index) {
+		long capacity = sliceCapacity(index);
+		double sliceFpp = fpp * (1 - TIGHTENING) * Math.pow(TIGHTENING, index);
+		return new BloomFilter(capacity, sliceFpp);
+	}
+
+	private long sliceCapacity(int index) {
+		long capacity = initialCapacity;
+		for (int i = 0; i < index; i++) {
+			capacity *= GROWTH;
+		}
+		return capacity;
+	}
+
+	// ---------------------------------------------------------------- add
+
+	/**
+	 * Adds bytes to the filter. Returns <code>true</code> if bytes were definitely not added before.
+	 */
+	public boolean add(byte[] value) {
+		return addHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Adds UTF-8 bytes of the characters to the filter.
+	 * @see #add(byte[])
+	 */
+	public boolean add(CharSequence value) {
+		return addHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Adds long value to the filter.
+	 * @see #add(byte[])
+	 */
+	public boolean add(long value) {
+		return addHash(BloomFilter.hash(value));
+	}
+
+	private boolean addHash(long hash) {
+		BloomFilter[] current = slices;
+		for (BloomFilter slice : current) {
+			if (slice.containsHash(hash)) {
+				return false;
+			}
+		}
+		BloomFilter last = current[current.length - 1];
+		boolean changed = last.addHash(hash);
+		if (changed && isGrowthCheck(hash) && last.getInsertionCount() >= lastCapacity) {
+			grow(current);
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns <code>true</code> if the last slice should be checked for its capacity.
+	 * Summing the insertion counter on every insertion into a large slice
+	 * would be costly, so only insertions chosen by the hash are checked.
+	 */
+	private boolean isGrowthCheck(long hash) {
+		return lastCapacity < GROWTH_CHECK_CAPACITY || (hash & GROWTH_CHECK_MASK) == 0;
+	}
+
+	/**
+	 * Adds new slice, unless some other thread already did it.
+	 */
+	private synchronized void grow(BloomFilter[] current) {
+		if (slices != current) {
+			return;
+		}
+		BloomFilter[] newSlices = new BloomFilter[current.length + 1];
+		System.arraycopy(current, 0, newSlices, 0, current.length);
+		newSlices[current.length] = createSlice(current.length);
+		lastCapacity = sliceCapacity(current.length);
+		slices = newSlices;
+	}
+
+	// ---------------------------------------------------------------- contains
+
+	/**
+	 * Returns <code>true</code> if bytes might have been added to the filter.
+	 */
+	public boolean contains(byte[] value) {
+		if (value == null) {
+			return false;
+		}
+		return containsHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Returns <code>true</code> if characters might have been added to the filter.
+	 */
+	public boolean contains(CharSequence value) {
+		if (value == null) {
+			return false;
+		}
+		return containsHash(BloomFilter.hash(value));
+	}
+
+	/**
+	 * Returns <code>true</code> if long value might have been added to the filter.
+	 */
+	public boolean contains(long value) {
+		return containsHash(BloomFilter.hash(value));
+	}
+
+	private boolean containsHash(long hash) {
+		for (BloomFilter slice : slices) {
+			if (slice.containsHash(hash)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// ---------------------------------------------------------------- properties
+
+	/**
+	 * Returns number of slices.
+	 */
+	public int getSliceCount() {
+		return slices.length;
+	}
+
+	/**
+	 * Returns total number of bits of all slices.
+	 */
+	public long getBitSize() {
+		long bitSize = 0;
+		for (BloomFilter slice : slices) {
+			bitSize += slice.getBitSize();
+		}
+		return bitSize;
+	}
+
+	/**
+	 * Returns number of additions that changed the filter.
+	 */
+	public long getInsertionCount() {
+		long count = 0;
+		for (BloomFilter slice : slices) {
+			count += slice.getInsertionCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the current false positive probability: the probability that
+	 * at least one slice reports a false positive.
+	 */
+	public double getExpectedFpp() {
+		double none = 1;
+		for (BloomFilter slice : slices) {
+			none *= 1 - slice.getExpectedFpp();
+		}
+		return 1 - none;
+	}
+
+	// ---------------------------------------------------------------- merge
+
+	/**
+	 * Merges other filter, created with the same initial capacity and
+	 * false positive probability, into this one.
+	 */
+	public synchronized void merge(ScalableBloomFilter other) {
+		if (initialCapacity != other.initialCapacity || fpp != other.fpp) {
+			throw new IllegalArgumentException("Incompatible bloom filter");
+		}
+		BloomFilter[] otherSlices = other.slices;
+		while (slices.length < otherSlices.length) {
+			grow(slices);
+		}
+		BloomFilter[] current = slices;
+		for (int i = 0; i < otherSlices.length; i++) {
+			current[i].merge(otherSlices[i]);
+		}
+	}
+
+	// ---------------------------------------------------------------- serialization
+
+	/**
+	 * Writes filter to the stream. Stream is not closed.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		BloomFilter[] current = slices;
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.writeInt(MAGIC);
+		dos.writeLong(initialCapacity);
+		dos.writeDouble(fpp);
+		dos.writeInt(current.length);
+		for (BloomFilter slice : current) {
+			slice.writeTo(dos);
+		}
+		dos.flush();
+	}
+
+	/**
+	 * Reads filter written by {@link #writeTo(OutputStream)}. Stream is not closed.
+	 */
+	public static ScalableBloomFilter readFrom(InputStream in) throws IOException {
+		DataInputStream dis = new DataInputStream(in);
+		if (dis.readInt() != MAGIC) {
+			throw new IOException("Not a scalable bloom filter");
+		}
+		long initialCapacity = dis.readLong();
+		double fpp = dis.readDouble();
+		int sliceCount = dis.readInt();
+		ScalableBloomFilter filter = new ScalableBloomFilter(initialCapacity, fpp);
+		BloomFilter[] slices = new BloomFilter[sliceCount];
+		for (int i = 0; i < sliceCount; i++) {
+			slices[i] = BloomFilter.readFrom(dis);
+		}
+		filter.slices = slices;
+		filter.lastCapacity = filter.sliceCapacity(sliceCount - 1);
+		return filter;
+	}
+}
@@ -0,0 +1,71 @@
+package iminto.collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that spreads updates over several cells, so threads that update it
+ * concurrently rarely touch the same cache line. Threads are assigned to cells
+ * by their id. Reading the value sums all the cells, so it is not an atomic
+ * snapshot while the counter is being updated.
+ */
+public class StripedCounter {
+
+	private static final int PADDING = 8;		// 8 longs = 64 bytes, one cache line
+	private static final int STRIPES;
+
+	static {
+		int stripes = 1;
+		int processors = Runtime.getRuntime().availableProcessors();
+		while (stripes < processors && stripes < 64) {
+			stripes <<= 1;
+		}
+		STRIPES = stripes;
+	}
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	/**
+	 * Increments the counter.
+	 */
+	public void increment() {
+		add(1);
+	}
+
+	/**
+	 * Adds the value to the counter.
+	 */
+	public void add(long value) {
+		cells.getAndAdd(index(), value);
+	}
+
+	/**
+	 * Returns the sum of all the cells.
+	 */
+	public long sum() {
+		long sum = 0;
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	/**
+	 * Resets all the cells to zero.
+	 */
+	public void reset() {
+		for (int i = 0; i < STRIPES; i++) {
+			cells.set(i * PADDING, 0);
+		}
+	}
+
+	private static int index() {
+		long id = Thread.currentThread().getId();
+		int h = (int) (id ^ (id >>> 32));
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return (h & (STRIPES - 1)) * PADDING;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(sum());
+	}
+}
@@ -0,0 +1,572 @@
+package iminto.util.common;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 将 JsonParser 的记号直接绑定到指定类型，不经过中间 Map。
+ * 支持 String、基本类型及其包装类、枚举、Map、Collection、数组和 Bean，可任意嵌套。
+ * Bean 需要有无参数构造函数，属性为 set 起始的公有方法，
+ * 没有对应 set 方法的非静态、非 final、非 transient 字段也会被直接赋值。
+ * 各类的绑定方案首次使用时生成并缓存，属性通过 MethodHandle 赋值，
+ * 基本类型属性不经过装箱。未知属性被跳过。
+ * </pre>
+ * @see JsonDecoder#decode(java.io.Reader, Class)
+ */
+final class JsonBinder {
+
+    /**
+     * 各类的绑定方案
+     */
+    private static final ClassValue<BeanBinder> BINDERS = new ClassValue<BeanBinder>() {
+        @Override
+        protected BeanBinder computeValue(Class<?> type) {
+            return new BeanBinder(type);
+        }
+    };
+
+    private JsonBinder() {
+    }
+
+    /**
+     * 从当前记号读取指定类型的值
+     * @param parser
+     * @param type
+     * @return
+     */
+    static Object read(JsonParser parser, Type type) throws IOException {
+        return codecFor(type).read(parser);
+    }
+
+    // ---------------------------------------------------------------- codecs
+
+    /**
+     * 读取某一类型的值，调用时解析器位于值的第一个记号上
+     */
+    abstract static class Codec {
+
+        abstract Object read(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * 取得类型的读取方法
+     * @param type
+     * @return
+     */
+    static Codec codecFor(Type type) {
+        if (type instanceof Class<?>) {
+            return codecFor((Class<?>) type);
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            if (Collection.class.isAssignableFrom(raw)) {
+                return new CollectionCodec(raw, codecFor(parameterized.getActualTypeArguments()[0]));
+            }
+            return codecFor(raw);
+        }
+        if (type instanceof GenericArrayType) {
+            Type component = ((GenericArrayType) type).getGenericComponentType();
+            return new ArrayCodec(rawClass(component), codecFor(component));
+        }
+        if (type instanceof WildcardType) {
+            return codecFor(((WildcardType) type).getUpperBounds()[0]);
+        }
+        // 类型变量
+        return OBJECT;
+    }
+
+    private static Codec codecFor(final Class<?> type) {
+        if (type == String.class) {
+            return STRING;
+        }
+        if (type == Object.class || Map.class.isAssignableFrom(type)) {
+            return OBJECT;
+        }
+        if (type.isPrimitive() || Number.class.isAssignableFrom(type)
+                || type == Boolean.class || type == Character.class) {
+            return new PrimitiveCodec(type);
+        }
+        if (type.isEnum()) {
+            return new Codec() {
+                @Override
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                Object read(JsonParser parser) {
+                    if (parser.getToken() == JsonParser.Token.NULL) {
+                        return null;
+                    }
+                    return Enum.valueOf((Class<? extends Enum>) type, parser.getString());
+                }
+            };
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return new CollectionCodec(type, OBJECT);
+        }
+        if (type.isArray()) {
+            return new ArrayCodec(type.getComponentType(), codecFor(type.getComponentType()));
+        }
+        // Bean 的绑定方案在读取时取得，允许类型引用自身
+        return new Codec() {
+            @Override
+            Object read(JsonParser parser) throws IOException {
+                return BINDERS.get(type).read(parser);
+            }
+        };
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class<?>) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        if (type instanceof WildcardType) {
+            return rawClass(((WildcardType) type).getUpperBounds()[0]);
+        }
+        return Object.class;
+    }
+
+    /**
+     * 字符串，数字和布尔值转换为其文本
+     */
+    private static final Codec STRING = new Codec() {
+        @Override
+        Object read(JsonParser parser) {
+            JsonParser.Token token = parser.getToken();
+            if (token == JsonParser.Token.NULL) {
+                return null;
+            }
+            if (token == JsonParser.Token.START_OBJECT || token == JsonParser.Token.START_ARRAY) {
+                throw parser.error("Expected string, found " + token);
+            }
+            return parser.getString();
+        }
+    };
+
+    /**
+     * 任意值，与 JsonDecoder 的解码结果一致
+     */
+    private static final Codec OBJECT = new Codec() {
+        @Override
+        Object read(JsonParser parser) throws IOException {
+            return parser.readValue();
+        }
+    };
+
+    /**
+     * 基本类型的包装类
+     */
+    private static final class PrimitiveCodec extends Codec {
+
+        private final Class<?> type;
+        private final boolean primitive;
+
+        PrimitiveCodec(Class<?> type) {
+            this.primitive = type.isPrimitive();
+            this.type = wrap(type);
+        }
+
+        @Override
+        Object read(JsonParser parser) {
+            if (parser.getToken() == JsonParser.Token.NULL) {
+                if (primitive) {
+                    throw parser.error("Null for primitive " + type.getSimpleName());
+                }
+                return null;
+            }
+            if (type == Integer.class) {
+                return Integer.valueOf(parser.getInt());
+            }
+            if (type == Long.class) {
+                return Long.valueOf(parser.getLong());
+            }
+            if (type == Double.class) {
+                return Double.valueOf(parser.getDouble());
+            }
+            if (type == Boolean.class) {
+                return Boolean.valueOf(parser.getBoolean());
+            }
+            if (type == Float.class) {
+                return Float.valueOf((float) parser.getDouble());
+            }
+            if (type == Short.class) {
+                return Short.valueOf((short) parser.getInt());
+            }
+            if (type == Byte.class) {
+                return Byte.valueOf((byte) parser.getInt());
+            }
+            if (type == Character.class) {
+                String str = parser.getString();
+                if (str.length() != 1) {
+                    throw parser.error("Expected single character: " + str);
+                }
+                return Character.valueOf(str.charAt(0));
+            }
+            // BigDecimal 等其他数字
+            String str = parser.getString();
+            return ReflectHelper.born(type, new Class<?>[]{String.class}, new Object[]{str});
+        }
+
+        private static Class<?> wrap(Class<?> type) {
+            if (type == int.class) {
+                return Integer.class;
+            }
+            if (type == long.class) {
+                return Long.class;
+            }
+            if (type == double.class) {
+                return Double.class;
+            }
+            if (type == boolean.class) {
+                return Boolean.class;
+            }
+            if (type == float.class) {
+                return Float.class;
+            }
+            if (type == short.class) {
+                return Short.class;
+            }
+            if (type == byte.class) {
+                return Byte.class;
+            }
+            if (type == char.class) {
+                return Character.class;
+            }
+            return type;
+        }
+    }
+
+    /**
+     * 集合，接口类型使用 ArrayList 或 LinkedHashSet
+     */
+    private static final class CollectionCodec extends Codec {
+
+        private final Class<?> type;
+        private final Codec element;
+
+        CollectionCodec(Class<?> type, Codec element) {
+            this.type = type;
+            this.element = element;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object read(JsonParser parser) throws IOException {
+            JsonParser.Token token = parser.getToken();
+            if (token == JsonParser.Token.NULL) {
+                return null;
+            }
+            if (token != JsonParser.Token.START_ARRAY) {
+                throw parser.error("Expected array, found " + token);
+            }
+            Collection<Object> collection;
+            if (type.isAssignableFrom(ArrayList.class)) {
+                collection = new ArrayList<Object>();
+            } else if (type.isAssignableFrom(LinkedHashSet.class)) {
+                collection = new LinkedHashSet<Object>();
+            } else {
+                collection = (Collection<Object>) ReflectHelper.born(type);
+            }
+            while (parser.nextToken() != JsonParser.Token.END_ARRAY) {
+                collection.add(element.read(parser));
+            }
+            return collection;
+        }
+    }
+
+    /**
+     * 数组，int、long、double 数组不经过装箱
+     */
+    private static final class ArrayCodec extends Codec {
+
+        private final Class<?> component;
+        private final Codec element;
+
+        ArrayCodec(Class<?> component, Codec element) {
+            this.component = component;
+            this.element = element;
+        }
+
+        @Override
+        Object read(JsonParser parser) throws IOException {
+            JsonParser.Token token = parser.getToken();
+            if (token == JsonParser.Token.NULL) {
+                return null;
+            }
+            if (token != JsonParser.Token.START_ARRAY) {
+                throw parser.error("Expected array, found " + token);
+            }
+            if (component == int.class) {
+                int[] array = new int[8];
+                int size = 0;
+                while (parser.nextToken() != JsonParser.Token.END_ARRAY) {
+                    if (size == array.length) {
+                        array = Arrays.copyOf(array, size << 1);
+                    }
+                    array[size++] = parser.getInt();
+                }
+                return Arrays.copyOf(array, size);
+            }
+            if (component == long.class) {
+                long[] array = new long[8];
+                int size = 0;
+                while (parser.nextToken() != JsonParser.Token.END_ARRAY) {
+                    if (size == array.length) {
+                        array = Arrays.copyOf(array, size << 1);
+                    }
+                    array[size++] = parser.getLong();
+                }
+                return Arrays.copyOf(array, size);
+            }
+            if (component == double.class) {
+                double[] array = new double[8];
+                int size = 0;
+                while (parser.nextToken() != JsonParser.Token.END_ARRAY) {
+                    if (size == array.length) {
+                        array = Arrays.copyOf(array, size << 1);
+                    }
+                    array[size++] = parser.getDouble();
+                }
+                return Arrays.copyOf(array, size);
+            }
+            List<Object> list = new ArrayList<Object>();
+            while (parser.nextToken() != JsonParser.Token.END_ARRAY) {
+                list.add(element.read(parser));
+            }
+            Object array = Array.newInstance(component, list.size());
+            for (int i = 0; i < list.size(); i++) {
+                Array.set(array, i, list.get(i));
+            }
+            return array;
+        }
+    }
+
+    // ---------------------------------------------------------------- beans
+
+    /**
+     * 属性类型，基本类型直接赋值，不经过装箱
+     */
+    private static final int KIND_OBJECT = 0;
+    private static final int KIND_INT = 1;
+    private static final int KIND_LONG = 2;
+    private static final int KIND_FLOAT = 3;
+    private static final int KIND_DOUBLE = 4;
+    private static final int KIND_BOOLEAN = 5;
+
+    /**
+     * 可写属性
+     */
+    private static final class Property {
+
+        final String name;
+        final int kind;
+        final MethodHandle setter;
+        final Codec codec;
+
+        Property(String name, Class<?> type, Type genericType, MethodHandle setter) {
+            this.name = name;
+            Class<?> handleType;
+            if (type == int.class || type == short.class || type == byte.class) {
+                kind = KIND_INT;
+                handleType = int.class;
+            } else if (type == long.class) {
+                kind = KIND_LONG;
+                handleType = long.class;
+            } else if (type == float.class) {
+                kind = KIND_FLOAT;
+                handleType = float.class;
+            } else if (type == double.class) {
+                kind = KIND_DOUBLE;
+                handleType = double.class;
+            } else if (type == boolean.class) {
+                kind = KIND_BOOLEAN;
+                handleType = boolean.class;
+            } else {
+                kind = KIND_OBJECT;
+                handleType = Object.class;
+            }
+            this.setter = MethodHandles.explicitCastArguments(setter,
+                    MethodType.methodType(void.class, Object.class, handleType));
+            this.codec = kind == KIND_OBJECT ? codecFor(genericType) : null;
+        }
+
+        /**
+         * 读取当前值并赋值
+         */
+        void set(Object bean, JsonParser parser) throws Throwable {
+            if (parser.getToken() == JsonParser.Token.NULL) {
+                // 基本类型保留默认值
+                if (kind == KIND_OBJECT) {
+                    setter.invokeExact(bean, (Object) null);
+                }
+                return;
+            }
+            switch (kind) {
+                case KIND_INT:
+                    setter.invokeExact(bean, parser.getInt());
+                    break;
+                case KIND_LONG:
+                    setter.invokeExact(bean, parser.getLong());
+                    break;
+                case KIND_FLOAT:
+                    setter.invokeExact(bean, (float) parser.getDouble());
+                    break;
+                case KIND_DOUBLE:
+                    setter.invokeExact(bean, parser.getDouble());
+                    break;
+                case KIND_BOOLEAN:
+                    setter.invokeExact(bean, parser.getBoolean());
+                    break;
+                default:
+                    setter.invokeExact(bean, codec.read(parser));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Bean 的绑定方案，属性以名称散列，按解析器中的键文本查找，查找时不创建字符串
+     */
+    private static final class BeanBinder extends Codec {
+
+        private final Class<?> type;
+        private final MethodHandle constructor;
+        private final Property[] table;
+        private final int mask;
+
+        BeanBinder(Class<?> type) {
+            this.type = type;
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+                throw new IllegalArgumentException("Can't bind abstract type: " + type.getName());
+            }
+            try {
+                Constructor<?> ctor = type.getDeclaredConstructor();
+                ctor.setAccessible(true);
+                constructor = MethodHandles.lookup().unreflectConstructor(ctor)
+                        .asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("No default constructor: " + type.getName());
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
+
+            Map<String, Property> properties = new LinkedHashMap<String, Property>();
+            for (Method method : type.getMethods()) {
+                String name = method.getName();
+                if (Modifier.isStatic(method.getModifiers()) || name.startsWith("set") == false
+                        || name.length() <= 3 || method.getParameterTypes().length != 1) {
+                    continue;
+                }
+                name = StringHelper.uncapitalize(name.substring(3));
+                if (properties.containsKey(name)) {
+                    continue;
+                }
+                try {
+                    method.setAccessible(true);
+                    properties.put(name, new Property(name, method.getParameterTypes()[0],
+                            method.getGenericParameterTypes()[0], MethodHandles.lookup().unreflect(method)));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalArgumentException(e);
+                }
+            }
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)
+                            || properties.containsKey(field.getName())) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        properties.put(field.getName(), new Property(field.getName(), field.getType(),
+                                field.getGenericType(), MethodHandles.lookup().unreflectSetter(field)));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalArgumentException(e);
+                    }
+                }
+            }
+
+            int capacity = Integer.highestOneBit(Math.max(properties.size(), 1) * 2 - 1) << 1;
+            table = new Property[capacity];
+            mask = capacity - 1;
+            for (Property property : properties.values()) {
+                int slot = mix(property.name.hashCode()) & mask;
+                while (table[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = property;
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        /**
+         * 查找当前键对应的属性，不存在时返回 null
+         */
+        private Property find(JsonParser parser) {
+            for (int slot = mix(parser.textHash()) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+                if (parser.textEquals(table[slot].name)) {
+                    return table[slot];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Object read(JsonParser parser) throws IOException {
+            JsonParser.Token token = parser.getToken();
+            if (token == JsonParser.Token.NULL) {
+                return null;
+            }
+            if (token != JsonParser.Token.START_OBJECT) {
+                throw parser.error("Expected object for " + type.getName() + ", found " + token);
+            }
+            try {
+                Object bean = constructor.invokeExact();
+                while (parser.nextToken() != JsonParser.Token.END_OBJECT) {
+                    Property property = find(parser);
+                    parser.nextToken();
+                    if (property == null) {
+                        parser.skipChildren();
+                    } else {
+                        property.set(bean, parser);
+                    }
+                }
+                return bean;
+            } catch (IOException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package iminto.util.common;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.text.CharacterIterator;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,7 +26,15 @@ import iminto.format.ZObject;
  *  decoder.setJsonStr(jsonStr);<br />
  *  result = decoder.decode();<br />
  *  vali = decoder.getValidator(); // 验证器可以取得相关的验证信息<br />
+ * 3.<br />
+ *  直接绑定为 Bean、集合或数组，不经过中间 Map：<br />
+ *  user = JsonDecoder.decode(jsonStr, User.class);<br />
+ * 4.<br />
+ *  大型输入或 NDJSON 可使用流式解析器逐个读取记号或值：<br />
+ *  parser = JsonDecoder.parser(reader);<br />
+ *  for (Iterator&lt;Object&gt; it = parser.values(); it.hasNext();) { ... }<br />
  * 注意：本类提供了对16进制数字的支持，但Json规范内并无16进制数字。
+ * @see JsonParser
  */
 public final class JsonDecoder {
 
@@ -575,4 +587,72 @@ public final class JsonDecoder {
     public static Object decode(String jsonStr) {
         return new JsonDecoder(jsonStr).decode();
     }
+
+    /**
+     * <pre>
+     * 从 Reader 解码，经固定大小的缓冲区读取，不需要先读取为字符串。
+     * 格式错误时抛出 IllegalArgumentException。
+     * </pre>
+     * @param reader
+     * @return
+     */
+    public static Object decode(Reader reader) throws IOException {
+        JsonParser parser = new JsonParser(reader);
+        if (parser.nextToken() == null) {
+            throw new IllegalArgumentException("Empty input");
+        }
+        return parser.readValue();
+    }
+
+    /**
+     * <pre>
+     * 解码为指定类型，不经过中间 Map。
+     * 类型可以是 Bean、集合、数组、Map、String、基本类型的包装类和枚举，
+     * Bean 的属性可以是以上任意类型，集合的元素类型由泛型参数确定。
+     * 格式错误时抛出 IllegalArgumentException，类型不符时抛出 IllegalStateException。
+     * </pre>
+     * @param jsonStr Json字符串
+     * @param type
+     * @return
+     */
+    public static <T> T decode(String jsonStr, Class<T> type) {
+        try {
+            return decode(new StringReader(jsonStr), type);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 从 Reader 解码为指定类型，不经过中间 Map。
+     * @see #decode(String, Class)
+     * @param reader
+     * @param type
+     * @return
+     */
+    public static <T> T decode(Reader reader, Class<T> type) throws IOException {
+        JsonParser parser = new JsonParser(reader);
+        if (parser.nextToken() == null) {
+            throw new IllegalArgumentException("Empty input");
+        }
+        return parser.readValue(type);
+    }
+
+    /**
+     * 流式解析器
+     * @param reader
+     * @return
+     */
+    public static JsonParser parser(Reader reader) {
+        return new JsonParser(reader);
+    }
+
+    /**
+     * 流式解析器，以 UTF-8 读取
+     * @param in
+     * @return
+     */
+    public static JsonParser parser(InputStream in) {
+        return new JsonParser(in);
+    }
 }
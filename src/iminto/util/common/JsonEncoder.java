@@ -1,9 +1,20 @@
 package iminto.util.common;
 
+import iminto.io.FastByteArrayOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 /**
  * <pre>
@@ -11,10 +22,13 @@ import java.util.Map.Entry;
  * 可包含类型有：
  * String，Short,Integer,Doubel，Boolean，Character，Number
  * Class直接返回Class名。
- * 其他类型会被认为是Bean转换为Map类型后进行编码
+ * 其他类型会被认为是Bean，按可读属性编码，属性按名称排序
  * 并提供相关容器的自动转换（可任意嵌套）：
  * Array,Map,Collection(List,Set)
  * 这里并不建议使用Beans，请将Beans转换为Map等进行使用。
+ * 除返回字符串外，也可以流式输出到 Writer 或 OutputStream（UTF-8），
+ * 输出经过固定大小的字符缓冲区，缓冲区满时即写出，大型集合不会整体驻留内存。
+ * 编码器可重复使用，但不是线程安全的。
  * Json<a href="http://www.json.org/" >http://www.json.org/</a>
  * </pre>
  * @return
@@ -22,14 +36,87 @@ import java.util.Map.Entry;
 public final class JsonEncoder {
 
     /**
-     * 
+     * 默认缓冲区大小（字符数）
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * 输出缓冲区
+     */
+    private final char[] buffer;
+    /**
+     * 缓冲区内已写入的字符数
+     */
+    private int position;
+    /**
+     * UTF-8 编码缓冲区，仅在输出到 OutputStream 时创建
+     */
+    private byte[] bytes;
+    /**
+     * 输出目标，三者之一
      */
     private StringBuilder strBuilder;
+    private Writer writer;
+    private OutputStream out;
+    /**
+     * 是否将非 ASCII 字符转义为 \\uXXXX
+     */
+    private boolean escapeUnicode = true;
+
+    /**
+     * <pre>
+     * 转义表，ASCII 字符对应的转义序列，无需转义的为 null。
+     * Json.org 说明的需要转义的的字符
+     * \"   \\  \/  \b  \f  \n  \r  \t \ u four-hex-digits
+     * </pre>
+     */
+    private static final char[][] ESCAPES = new char[128][];
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    static {
+        for (char ch = 0; ch < 0x20; ch++) {
+            ESCAPES[ch] = unicode(ch);
+        }
+        ESCAPES[0x7f] = unicode((char) 0x7f);
+        ESCAPES['"'] = "\\\"".toCharArray();
+        ESCAPES['\\'] = "\\\\".toCharArray();
+        ESCAPES['/'] = "\\/".toCharArray();
+        ESCAPES['\b'] = "\\b".toCharArray();
+        ESCAPES['\f'] = "\\f".toCharArray();
+        ESCAPES['\n'] = "\\n".toCharArray();
+        ESCAPES['\r'] = "\\r".toCharArray();
+        ESCAPES['\t'] = "\\t".toCharArray();
+    }
+
+    private static char[] unicode(char ch) {
+        return new char[] {'\\', 'u', HEX[ch >> 12], HEX[(ch >> 8) & 0xf], HEX[(ch >> 4) & 0xf], HEX[ch & 0xf]};
+    }
 
     /**
      *
      */
     public JsonEncoder() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 指定缓冲区大小（字符数）
+     * @param bufferSize
+     */
+    public JsonEncoder(int bufferSize) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size too small: " + bufferSize);
+        }
+        buffer = new char[bufferSize];
+    }
+
+    /**
+     * 是否将非 ASCII 字符转义为 \\uXXXX，默认转义。
+     * 不转义时输出更短，输出到 OutputStream 时以 UTF-8 编码。
+     * @param escapeUnicode
+     */
+    public void setEscapeUnicode(boolean escapeUnicode) {
+        this.escapeUnicode = escapeUnicode;
     }
 
     /**
@@ -39,8 +126,46 @@ public final class JsonEncoder {
      */
     public String getJson(Object obj) {
         strBuilder = new StringBuilder();
-        this.switcher(obj);
-        return strBuilder.toString();
+        try {
+            output(obj);
+            return strBuilder.toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            strBuilder = null;
+        }
+    }
+
+    /**
+     * 流式输出到 Writer，输出后 Writer 不会被刷新或关闭
+     * @param obj
+     * @param writer
+     */
+    public void write(Object obj, Writer writer) throws IOException {
+        this.writer = writer;
+        try {
+            output(obj);
+        } finally {
+            this.writer = null;
+        }
+    }
+
+    /**
+     * 以 UTF-8 流式输出到 OutputStream，不经过中间字符串，
+     * 输出后 OutputStream 不会被刷新或关闭
+     * @param obj
+     * @param out
+     */
+    public void write(Object obj, OutputStream out) throws IOException {
+        if (bytes == null) {
+            bytes = new byte[buffer.length * 3];
+        }
+        this.out = out;
+        try {
+            output(obj);
+        } finally {
+            this.out = null;
+        }
     }
 
     /**
@@ -52,79 +177,331 @@ public final class JsonEncoder {
         return new JsonEncoder().getJson(obj);
     }
 
+    /**
+     * 流式输出到 Writer
+     * @param obj
+     * @param writer
+     */
+    public static void encode(Object obj, Writer writer) throws IOException {
+        new JsonEncoder().write(obj, writer);
+    }
+
+    /**
+     * 以 UTF-8 流式输出到 OutputStream
+     * @param obj
+     * @param out
+     */
+    public static void encode(Object obj, OutputStream out) throws IOException {
+        new JsonEncoder().write(obj, out);
+    }
+
+    /**
+     * 转换为 UTF-8 字节
+     * @param obj
+     * @return
+     */
+    public static byte[] encodeToBytes(Object obj) {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        try {
+            new JsonEncoder().write(obj, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 编码并写出缓冲区中的剩余内容
+     * @param obj
+     */
+    private void output(Object obj) throws IOException {
+        position = 0;
+        try {
+            switcher(obj);
+            flushBuffer(true);
+        } finally {
+            position = 0;
+        }
+    }
+
+    // ---------------------------------------------------------------- buffer
+
+    /**
+     * 写入字符，缓冲区满时先写出
+     * @param ch
+     */
+    private void append(char ch) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer(false);
+        }
+        buffer[position++] = ch;
+    }
+
+    /**
+     * 写入字符串，缓冲区满时先写出
+     * @param str
+     */
+    private void append(String str) throws IOException {
+        append(str, 0, str.length());
+    }
+
+    /**
+     * 写入字符串的一部分，缓冲区满时先写出
+     * @param str
+     * @param from
+     * @param to
+     */
+    private void append(String str, int from, int to) throws IOException {
+        while (from < to) {
+            if (position == buffer.length) {
+                flushBuffer(false);
+            }
+            int count = Math.min(to - from, buffer.length - position);
+            str.getChars(from, from + count, buffer, position);
+            position += count;
+            from += count;
+        }
+    }
+
+    /**
+     * 写入字符数组，缓冲区满时先写出
+     * @param chars
+     */
+    private void append(char[] chars) throws IOException {
+        int length = chars.length;
+        if (position + length <= buffer.length) {
+            System.arraycopy(chars, 0, buffer, position, length);
+            position += length;
+            return;
+        }
+        int offset = 0;
+        while (offset < length) {
+            if (position == buffer.length) {
+                flushBuffer(false);
+            }
+            int count = Math.min(length - offset, buffer.length - position);
+            System.arraycopy(chars, offset, buffer, position, count);
+            position += count;
+            offset += count;
+        }
+    }
+
+    /**
+     * 写入整数，不产生临时对象
+     * @param value
+     */
+    private void append(long value) throws IOException {
+        if (position + 20 > buffer.length) {
+            flushBuffer(false);
+            if (position + 20 > buffer.length) {
+                // 缓冲区小于 20 个字符，或写出后保留了高代理字符
+                append(Long.toString(value));
+                return;
+            }
+        }
+        if (value == Long.MIN_VALUE) {
+            append("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int end = position + 1;
+        for (long rest = value; rest >= 10; rest /= 10) {
+            end++;
+        }
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        position = end;
+    }
+
+    /**
+     * 写入 \\uXXXX，缓冲区剩余空间不足时先写出
+     * @param ch
+     */
+    private void appendUnicode(char ch) throws IOException {
+        if (position + 6 > buffer.length) {
+            flushBuffer(false);
+        }
+        char[] buffer = this.buffer;
+        buffer[position++] = '\\';
+        buffer[position++] = 'u';
+        buffer[position++] = HEX[ch >> 12];
+        buffer[position++] = HEX[(ch >> 8) & 0xf];
+        buffer[position++] = HEX[(ch >> 4) & 0xf];
+        buffer[position++] = HEX[ch & 0xf];
+    }
+
+    /**
+     * 将缓冲区写出到目标
+     * @param last 是否为最后一次写出
+     */
+    private void flushBuffer(boolean last) throws IOException {
+        if (strBuilder != null) {
+            strBuilder.append(buffer, 0, position);
+        } else if (writer != null) {
+            writer.write(buffer, 0, position);
+        } else {
+            writeUtf8(last);
+            return;
+        }
+        position = 0;
+    }
+
+    /**
+     * <pre>
+     * 将缓冲区以 UTF-8 编码写出到 OutputStream。
+     * 缓冲区末尾的高代理字符保留到下一次写出，以便与低代理字符组合；
+     * 无法组合的代理字符输出为 '?'。
+     * </pre>
+     * @param last 是否为最后一次写出
+     */
+    private void writeUtf8(boolean last) throws IOException {
+        int end = position;
+        if (last == false && end > 0 && Character.isHighSurrogate(buffer[end - 1])) {
+            end--;
+        }
+        byte[] bytes = this.bytes;
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            char ch = buffer[i];
+            if (ch < 0x80) {
+                bytes[count++] = (byte) ch;
+            } else if (ch < 0x800) {
+                bytes[count++] = (byte) (0xc0 | (ch >> 6));
+                bytes[count++] = (byte) (0x80 | (ch & 0x3f));
+            } else if (Character.isSurrogate(ch)) {
+                if (Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(buffer[i + 1])) {
+                    int codePoint = Character.toCodePoint(ch, buffer[++i]);
+                    bytes[count++] = (byte) (0xf0 | (codePoint >> 18));
+                    bytes[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    bytes[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    bytes[count++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else {
+                    bytes[count++] = '?';
+                }
+            } else {
+                bytes[count++] = (byte) (0xe0 | (ch >> 12));
+                bytes[count++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+                bytes[count++] = (byte) (0x80 | (ch & 0x3f));
+            }
+        }
+        out.write(bytes, 0, count);
+        if (end < position) {
+            buffer[0] = buffer[end];
+            position = 1;
+        } else {
+            position = 0;
+        }
+    }
+
+    // ---------------------------------------------------------------- values
+
     /**
      * 字符型使用双引号括起来
-     * @param strBuilder
      * @param str
      */
-    private void add(String str) {
-        strBuilder.append('\"');
-        strBuilder.append(StringHelper.utf8_literal(str));
-        strBuilder.append('\"');
+    private void add(String str) throws IOException {
+        append('\"');
+        escape(str);
+        append('\"');
+    }
+
+    /**
+     * <pre>
+     * 转义并写入字符串。
+     * 无需转义的连续字符整段复制到缓冲区，不产生临时对象。
+     * </pre>
+     * @param str
+     */
+    private void escape(String str) throws IOException {
+        int length = str.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = str.charAt(i);
+            char[] escape = null;
+            if (ch < 128) {
+                escape = ESCAPES[ch];
+                if (escape == null) {
+                    continue;
+                }
+            } else if (escapeUnicode == false) {
+                continue;
+            }
+            if (i > start) {
+                append(str, start, i);
+            }
+            if (escape != null) {
+                append(escape);
+            } else {
+                appendUnicode(ch);
+            }
+            start = i + 1;
+        }
+        if (start < length) {
+            append(str, start, length);
+        }
     }
 
     /**
      * 布尔型直接转换为文字
-     * @param strBuilder
      * @param bol
      */
-    private void add(Boolean bol) {
-        strBuilder.append(bol ? "true" : "false");
+    private void add(Boolean bol) throws IOException {
+        append(bol ? "true" : "false");
     }
 
     /**
      * Map的Key在不包含特殊字符的情况下可以不加双引号，但是Php的json_decode无法识别。
-     * @param strBuilder
      * @param str
      */
-    private void addKey(String str) {
+    private void addKey(String str) throws IOException {
 //            boolean isMatch = str.matches("[a-zA-Z]+[a-zA-Z0-9]*");
 //            if (!isMatch) {
-        strBuilder.append('\"');
-        strBuilder.append(StringHelper.utf8_literal(str));
-        strBuilder.append('\"');
+        append('\"');
+        escape(str);
+        append('\"');
     }
 
     /**
      * 整形直接转换为文字
-     * @param strBuilder
      * @param inte
      */
-    private void add(Integer inte) {
-        strBuilder.append(inte);
+    private void add(Integer inte) throws IOException {
+        append(String.valueOf(inte));
     }
 
     /**
      * 数字型直接输出
-     * @param strBuilder
      * @param num
      */
-    private void add(Number num) {
-        strBuilder.append(num);
+    private void add(Number num) throws IOException {
+        append(String.valueOf(num));
     }
 
     /**
      * null 直接输出 null。
-     * @param strBuilder
      */
-    private void addNull() {
-        strBuilder.append("null");
+    private void addNull() throws IOException {
+        append("null");
     }
 
     /**
      * 键值对
-     * @param strBuilder
-     * @param iterator
+     * @param map
      */
-    private void addMap(Map<?, ?> map) {
+    private void addMap(Map<?, ?> map) throws IOException {
         int i = 0;
         Object val = null;
         for (Entry<?, ?> entry : map.entrySet()) {
             if (i != 0) {
-                strBuilder.append(',');
+                append(',');
             }
             addKey(String.valueOf(entry.getKey()));
-            strBuilder.append(':');
+            append(':');
             val = entry.getValue();
             if (!map.equals(val)) {
                 switcher(val);
@@ -135,14 +512,13 @@ public final class JsonEncoder {
 
     /**
      * 值列
-     * @param strBuilder
-     * @param iterator
+     * @param coll
      */
-    private void addCollection(Collection<?> coll) {
+    private void addCollection(Collection<?> coll) throws IOException {
         int i = 0;
         for (Object entry : coll) {
             if (i != 0) {
-                strBuilder.append(',');
+                append(',');
             }
             switcher(entry);
             i++;
@@ -151,10 +527,9 @@ public final class JsonEncoder {
 
     /**
      * 根据不同的类型进行分派填充
-     * @param strBuilder
      * @param obj
      */
-    private void switcher(Object obj) {
+    private void switcher(Object obj) throws IOException {
         do {
             if (obj == null) {
                 addNull();
@@ -190,33 +565,33 @@ public final class JsonEncoder {
             int i = 0;
 
             if (obj.getClass().isArray()) {
-                strBuilder.append('[');
+                append('[');
                 int arSize = Array.getLength(obj);
                 Object _o;
                 while (i < arSize) {
                     _o = Array.get(obj, i);
                     if (i != 0) {
-                        strBuilder.append(',');
+                        append(',');
                     }
                     switcher(_o);
                     i++;
                 }
-                strBuilder.append(']');
+                append(']');
                 break;
             }
             if (obj instanceof Map<?, ?>) {
-                strBuilder.append('{');
+                append('{');
                 Map<?, ?> map = (Map<?, ?>) obj;
                 addMap(map);
-                strBuilder.append('}');
+                append('}');
                 break;
             }
             if (obj instanceof Collection<?>) {
-                // collection  
+                // collection
                 Collection<?> col = (Collection<?>) obj;
-                strBuilder.append('[');
+                append('[');
                 addCollection(col);
-                strBuilder.append(']');
+                append(']');
                 break;
             }
             // enum 仅做参考性支持，并不提供decode
@@ -228,11 +603,194 @@ public final class JsonEncoder {
                 add(((Class<?>) obj).getName());
                 break;
             }
-            // 其他Object转换为Map
+            // 其他Object按Bean编码
             {
-                switcher(BeanHelper.toMapIgnoreClass(obj));
+                addBean(obj);
                 break;
             }
         } while (false);
     }
+
+    // ---------------------------------------------------------------- beans
+
+    /**
+     * 属性类型，基本类型直接输出，不经过装箱
+     */
+    private static final int KIND_OBJECT = 0;
+    private static final int KIND_INT = 1;
+    private static final int KIND_LONG = 2;
+    private static final int KIND_FLOAT = 3;
+    private static final int KIND_DOUBLE = 4;
+    private static final int KIND_BOOLEAN = 5;
+
+    /**
+     * 各类的编码方案，首次编码时生成
+     */
+    private static final ClassValue<BeanPlan> PLANS = new ClassValue<BeanPlan>() {
+        @Override
+        protected BeanPlan computeValue(Class<?> type) {
+            return new BeanPlan(type);
+        }
+    };
+
+    /**
+     * <pre>
+     * Bean 的编码方案。
+     * 可读属性为以get和is起始的公有无参方法，与 BeanHelper#toMapIgnoreClass 一致，
+     * 键预先转义为 "name": 形式，取值方法转换为 MethodHandle，
+     * 编码时不再有反射调用，也不创建中间 Map。
+     * </pre>
+     */
+    private static final class BeanPlan {
+
+        final char[][] keys;
+        final MethodHandle[] getters;
+        final int[] kinds;
+
+        BeanPlan(Class<?> type) {
+            Map<String, Method> methods = new TreeMap<String, Method>();
+            for (Method method : type.getMethods()) {
+                String name = propertyName(method);
+                if (name == null) {
+                    continue;
+                }
+                Method other = methods.get(name);
+                // getName() 优先于 isName()
+                if (other == null || other.getName().startsWith("is")) {
+                    methods.put(name, method);
+                }
+            }
+            int size = 0;
+            keys = new char[methods.size()][];
+            getters = new MethodHandle[methods.size()];
+            kinds = new int[methods.size()];
+            for (Entry<String, Method> entry : methods.entrySet()) {
+                MethodHandle getter = unreflect(entry.getValue());
+                Class<?> returnType = entry.getValue().getReturnType();
+                int kind = kindOf(returnType);
+                Class<?> handleType = returnType;
+                if (kind == KIND_INT) {
+                    handleType = int.class;
+                } else if (kind == KIND_OBJECT) {
+                    handleType = Object.class;
+                }
+                keys[size] = (new JsonEncoder(32).getJson(entry.getKey()) + ':').toCharArray();
+                getters[size] = getter.asType(MethodType.methodType(handleType, Object.class));
+                kinds[size] = kind;
+                size++;
+            }
+        }
+
+        /**
+         * 取值方法对应的属性名，不是取值方法时返回 null
+         */
+        private static String propertyName(Method method) {
+            if (Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length > 0
+                    || method.getReturnType() == void.class) {
+                return null;
+            }
+            String name = method.getName();
+            int len;
+            if (name.startsWith("get") && name.length() > 3) {
+                len = 3;
+            } else if (name.startsWith("is") && name.length() > 2) {
+                len = 2;
+            } else {
+                return null;
+            }
+            if (name.equals("getClass")) {
+                return null;
+            }
+            return StringHelper.uncapitalize(name.substring(len));
+        }
+
+        private static int kindOf(Class<?> type) {
+            if (type == int.class || type == short.class || type == byte.class) {
+                return KIND_INT;
+            }
+            if (type == long.class) {
+                return KIND_LONG;
+            }
+            if (type == float.class) {
+                return KIND_FLOAT;
+            }
+            if (type == double.class) {
+                return KIND_DOUBLE;
+            }
+            if (type == boolean.class) {
+                return KIND_BOOLEAN;
+            }
+            return KIND_OBJECT;
+        }
+
+        /**
+         * 取值方法转换为 MethodHandle，非公有类的公有方法需先设置为可访问
+         */
+        private static MethodHandle unreflect(Method method) {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            try {
+                return lookup.unreflect(method);
+            } catch (IllegalAccessException e) {
+                // 继续尝试
+            }
+            try {
+                method.setAccessible(true);
+                return lookup.unreflect(method);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (SecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 按编码方案输出 Bean
+     * @param bean
+     */
+    private void addBean(Object bean) throws IOException {
+        BeanPlan plan = PLANS.get(bean.getClass());
+        char[][] keys = plan.keys;
+        MethodHandle[] getters = plan.getters;
+        int[] kinds = plan.kinds;
+        append('{');
+        try {
+            for (int i = 0; i < keys.length; i++) {
+                if (i != 0) {
+                    append(',');
+                }
+                append(keys[i]);
+                MethodHandle getter = getters[i];
+                switch (kinds[i]) {
+                    case KIND_INT:
+                        append((long) (int) getter.invokeExact(bean));
+                        break;
+                    case KIND_LONG:
+                        append((long) getter.invokeExact(bean));
+                        break;
+                    case KIND_FLOAT:
+                        append(Float.toString((float) getter.invokeExact(bean)));
+                        break;
+                    case KIND_DOUBLE:
+                        append(Double.toString((double) getter.invokeExact(bean)));
+                        break;
+                    case KIND_BOOLEAN:
+                        append((boolean) getter.invokeExact(bean) ? "true" : "false");
+                        break;
+                    default:
+                        switcher((Object) getter.invokeExact(bean));
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        append('}');
+    }
 }
@@ -0,0 +1,809 @@
+package iminto.util.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * <pre>
+ * Json 流式解析器（拉取模式）。
+ * 从 Reader 或 InputStream 经固定大小的缓冲区读取，逐个返回记号，
+ * 不在内存中保留整个文档，可解析任意大小的输入。
+ * 与 JsonDecoder 相同，支持单行(//)和多行(/* *\/)两种注释，
+ * 大小写不敏感的 true、false、null，以 + 起始的数字和16进制数字。
+ * 顶层可连续出现多个值，以空白或换行分隔，即 NDJSON 格式。
+ * ex.
+ *  JsonParser parser = JsonDecoder.parser(reader);
+ *  while (parser.nextToken() != null) {
+ *      if (parser.getToken() == JsonParser.Token.FIELD_NAME) {
+ *          String name = parser.getString();
+ *          ...
+ *      }
+ *  }
+ * 格式错误时抛出 IllegalArgumentException，包含错误的行和列。
+ * </pre>
+ */
+public final class JsonParser implements Closeable {
+
+    /**
+     * 记号
+     */
+    public static enum Token {
+
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, FIELD_NAME, STRING, NUMBER, TRUE, FALSE, NULL
+    }
+
+    /**
+     * 默认缓冲区大小（字符数）
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * 解析状态：需要值，数组首个值，对象首个键，键，值之后
+     */
+    private static final int STATE_VALUE = 0;
+    private static final int STATE_FIRST_VALUE = 1;
+    private static final int STATE_FIRST_KEY = 2;
+    private static final int STATE_KEY = 3;
+    private static final int STATE_AFTER_VALUE = 4;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    /**
+     * 缓冲区之前已读取的字符数
+     */
+    private long consumed;
+    private int line = 1;
+    private long lineStart;
+
+    /**
+     * 容器栈，true 为对象，false 为数组
+     */
+    private boolean[] stack = new boolean[16];
+    private int depth;
+    private int state = STATE_VALUE;
+    private Token token;
+
+    /**
+     * 当前字符串、键或数字的内容
+     */
+    private char[] text = new char[64];
+    private int textLength;
+    private boolean integer;
+
+    /**
+     * 从 Reader 读取
+     * @param reader
+     */
+    public JsonParser(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 从 Reader 读取，指定缓冲区大小（字符数）
+     * @param reader
+     * @param bufferSize
+     */
+    public JsonParser(Reader reader, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.reader = reader;
+        buffer = new char[bufferSize];
+    }
+
+    /**
+     * 从 InputStream 以 UTF-8 读取
+     * @param in
+     */
+    public JsonParser(InputStream in) {
+        this(new InputStreamReader(in, Charset.forName("UTF-8")));
+    }
+
+    // ---------------------------------------------------------------- tokens
+
+    /**
+     * 读取下一个记号
+     * @return 输入结束时返回 null
+     */
+    public Token nextToken() throws IOException {
+        int ch = skipBlank();
+        switch (state) {
+            case STATE_VALUE:
+                if (ch == -1 && depth == 0) {
+                    return token = null;
+                }
+                return token = readValue(ch);
+            case STATE_FIRST_VALUE:
+                if (ch == ']') {
+                    return token = endContainer(false);
+                }
+                return token = readValue(ch);
+            case STATE_FIRST_KEY:
+                if (ch == '}') {
+                    return token = endContainer(true);
+                }
+                return token = readField(ch);
+            case STATE_KEY:
+                return token = readField(ch);
+            default:
+                boolean inObject = stack[depth - 1];
+                if (ch == ',') {
+                    if (inObject) {
+                        return token = readField(skipBlank());
+                    }
+                    return token = readValue(skipBlank());
+                }
+                if (ch == (inObject ? '}' : ']')) {
+                    return token = endContainer(inObject);
+                }
+                throw unexpected(ch);
+        }
+    }
+
+    /**
+     * 当前记号
+     * @return
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * 当前容器嵌套深度，顶层为 0
+     * @return
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * <pre>
+     * 当前键、字符串或数字的文本，true、false、null 返回对应文字，
+     * 对象和数组的起止记号返回 null
+     * </pre>
+     * @return
+     */
+    public String getString() {
+        if (token == null) {
+            return null;
+        }
+        switch (token) {
+            case FIELD_NAME:
+            case STRING:
+            case NUMBER:
+                return new String(text, 0, textLength);
+            case TRUE:
+                return "true";
+            case FALSE:
+                return "false";
+            case NULL:
+                return "null";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 当前数字是否为整数
+     * @return
+     */
+    public boolean isInteger() {
+        return token == Token.NUMBER && integer;
+    }
+
+    /**
+     * 当前数字或字符串转换为 long，小数被截断
+     * @return
+     */
+    public long getLong() {
+        checkNumber();
+        if (integer == false) {
+            return (long) getDouble();
+        }
+        if (textLength == 0) {
+            throw new NumberFormatException("Empty number");
+        }
+        int i = 0;
+        boolean negative = false;
+        if (text[0] == '-' || text[0] == '+') {
+            negative = text[0] == '-';
+            i++;
+        }
+        if (textLength - i > 2 && text[i] == '0' && (text[i + 1] == 'x' || text[i + 1] == 'X')) {
+            long value = Long.parseLong(new String(text, i + 2, textLength - i - 2), 16);
+            return negative ? -value : value;
+        }
+        if (textLength - i > 18 || textLength == i) {
+            return Long.parseLong(new String(text, 0, textLength));
+        }
+        long value = 0;
+        for (; i < textLength; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid number: " + new String(text, 0, textLength));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * 当前数字或字符串转换为 int
+     * @return
+     */
+    public int getInt() {
+        long value = getLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Number out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * 当前数字或字符串转换为 double
+     * @return
+     */
+    public double getDouble() {
+        checkNumber();
+        if (integer) {
+            return getLong();
+        }
+        return Double.parseDouble(new String(text, 0, textLength));
+    }
+
+    /**
+     * 当前记号是否为 true
+     * @return
+     */
+    public boolean getBoolean() {
+        if (token == Token.TRUE) {
+            return true;
+        }
+        if (token == Token.FALSE) {
+            return false;
+        }
+        throw new IllegalStateException("Not a boolean: " + token);
+    }
+
+    private void checkNumber() {
+        if (token != Token.NUMBER && token != Token.STRING) {
+            throw new IllegalStateException("Not a number: " + token);
+        }
+        if (token == Token.STRING) {
+            integer = isIntegerText();
+        }
+    }
+
+    /**
+     * 当前记号为对象或数组起始时，跳过其全部内容，停在对应的结束记号上
+     */
+    public void skipChildren() throws IOException {
+        if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+            return;
+        }
+        int target = depth - 1;
+        while (depth > target) {
+            nextToken();
+        }
+    }
+
+    /**
+     * <pre>
+     * 读取当前记号开始的值。
+     * 对象转换为 LinkedHashMap，数组转换为 ArrayList，
+     * 整数为 Long，小数为 Double，与 JsonDecoder 一致。
+     * </pre>
+     * @return
+     */
+    public Object readValue() throws IOException {
+        if (token == null) {
+            throw new IllegalStateException("No current token");
+        }
+        switch (token) {
+            case START_OBJECT:
+                Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+                while (nextToken() != Token.END_OBJECT) {
+                    String key = getString();
+                    nextToken();
+                    map.put(key, readValue());
+                }
+                return map;
+            case START_ARRAY:
+                List<Object> list = new ArrayList<Object>();
+                while (nextToken() != Token.END_ARRAY) {
+                    list.add(readValue());
+                }
+                return list;
+            case STRING:
+                return getString();
+            case NUMBER:
+                if (integer) {
+                    return Long.valueOf(getLong());
+                }
+                return Double.valueOf(getDouble());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NULL:
+                return null;
+            default:
+                throw new IllegalStateException("Not a value: " + token);
+        }
+    }
+
+    /**
+     * <pre>
+     * 将当前记号开始的值直接绑定为指定类型，不经过中间 Map。
+     * 类型可以是 Bean、集合、数组、Map、String、基本类型的包装类和枚举。
+     * </pre>
+     * @param type
+     * @return
+     * @see JsonDecoder#decode(Reader, Class)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T readValue(Class<T> type) throws IOException {
+        if (token == null) {
+            throw new IllegalStateException("No current token");
+        }
+        return (T) JsonBinder.read(this, type);
+    }
+
+    /**
+     * <pre>
+     * 逐个读取值。
+     * 在顶层调用时依次返回各个顶层值，适用于 NDJSON；
+     * 在数组起始记号之后调用时依次返回数组元素。
+     * 读取错误时抛出 IllegalStateException。
+     * </pre>
+     * @return
+     */
+    public Iterator<Object> values() {
+        if (depth > 0 && stack[depth - 1]) {
+            throw new IllegalStateException("Values can't be read from an object");
+        }
+        return new Iterator<Object>() {
+
+            private boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                if (ready == false) {
+                    try {
+                        nextToken();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    ready = true;
+                }
+                return token != null && token != Token.END_ARRAY;
+            }
+
+            @Override
+            public Object next() {
+                if (hasNext() == false) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                try {
+                    return readValue();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * 当前行号，从 1 开始
+     * @return
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * 当前列号，从 1 开始
+     * @return
+     */
+    public int getColumn() {
+        return (int) (consumed + position - lineStart) + 1;
+    }
+
+    /**
+     * 关闭 Reader
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // ---------------------------------------------------------------- values
+
+    /**
+     * 读取以 ch 起始的值
+     * @param ch
+     * @return
+     */
+    private Token readValue(int ch) throws IOException {
+        switch (ch) {
+            case '{':
+                push(true);
+                state = STATE_FIRST_KEY;
+                return Token.START_OBJECT;
+            case '[':
+                push(false);
+                state = STATE_FIRST_VALUE;
+                return Token.START_ARRAY;
+            case '"':
+                readString();
+                afterValue();
+                return Token.STRING;
+            case 't':
+            case 'T':
+                readLiteral("rue");
+                afterValue();
+                return Token.TRUE;
+            case 'f':
+            case 'F':
+                readLiteral("alse");
+                afterValue();
+                return Token.FALSE;
+            case 'n':
+            case 'N':
+                readLiteral("ull");
+                afterValue();
+                return Token.NULL;
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+            case '-':
+            case '+':
+            case '.':
+                readNumber((char) ch);
+                afterValue();
+                return Token.NUMBER;
+            default:
+                throw unexpected(ch);
+        }
+    }
+
+    /**
+     * 读取键及其后的冒号
+     * @param ch
+     * @return
+     */
+    private Token readField(int ch) throws IOException {
+        if (ch != '"') {
+            throw unexpected(ch);
+        }
+        readString();
+        ch = skipBlank();
+        if (ch != ':') {
+            throw unexpected(ch);
+        }
+        state = STATE_VALUE;
+        return Token.FIELD_NAME;
+    }
+
+    private Token endContainer(boolean object) {
+        depth--;
+        afterValue();
+        return object ? Token.END_OBJECT : Token.END_ARRAY;
+    }
+
+    private void afterValue() {
+        state = depth == 0 ? STATE_VALUE : STATE_AFTER_VALUE;
+    }
+
+    private void push(boolean object) {
+        if (depth == stack.length) {
+            boolean[] newStack = new boolean[depth << 1];
+            System.arraycopy(stack, 0, newStack, 0, depth);
+            stack = newStack;
+        }
+        stack[depth++] = object;
+    }
+
+    /**
+     * 读取字符串，起始的双引号已读取。
+     * 不含转义的连续字符整段复制。
+     */
+    private void readString() throws IOException {
+        textLength = 0;
+        while (true) {
+            if (position == limit && fill() == false) {
+                throw error("Unterminated string");
+            }
+            char[] buffer = this.buffer;
+            int start = position;
+            int end = limit;
+            int p = start;
+            while (p < end) {
+                char ch = buffer[p];
+                if (ch == '"' || ch == '\\' || ch == '\n') {
+                    break;
+                }
+                p++;
+            }
+            appendText(buffer, start, p - start);
+            position = p;
+            if (p == end) {
+                continue;
+            }
+            char ch = buffer[position++];
+            if (ch == '"') {
+                return;
+            }
+            if (ch == '\n') {
+                appendText('\n');
+                newLine();
+                continue;
+            }
+            readEscape();
+        }
+    }
+
+    /**
+     * 读取转义字符，反斜杠已读取
+     */
+    private void readEscape() throws IOException {
+        int ch = read();
+        switch (ch) {
+            case '"':
+            case '/':
+            case '\\':
+                appendText((char) ch);
+                break;
+            case 'b':
+                appendText('\b');
+                break;
+            case 'f':
+                appendText('\f');
+                break;
+            case 'n':
+                appendText('\n');
+                break;
+            case 'r':
+                appendText('\r');
+                break;
+            case 't':
+                appendText('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                appendText((char) value);
+                break;
+            default:
+                throw unexpected(ch);
+        }
+    }
+
+    /**
+     * 读取数字文本，解析在取值时进行
+     * @param first
+     */
+    private void readNumber(char first) throws IOException {
+        textLength = 0;
+        appendText(first);
+        while (true) {
+            if (position == limit && fill() == false) {
+                break;
+            }
+            char ch = buffer[position];
+            if ((ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F')
+                    || ch == '.' || ch == '-' || ch == '+' || ch == 'x' || ch == 'X') {
+                appendText(ch);
+                position++;
+            } else {
+                break;
+            }
+        }
+        integer = isIntegerText();
+    }
+
+    /**
+     * 当前文本是否为整数，16进制数字总是整数
+     * @return
+     */
+    private boolean isIntegerText() {
+        boolean hex = false;
+        for (int i = 0; i < textLength; i++) {
+            char ch = text[i];
+            if (ch == 'x' || ch == 'X') {
+                hex = true;
+            } else if (ch == '.' || (hex == false && (ch == 'e' || ch == 'E'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取 true、false、null 的其余部分，大小写不敏感
+     * @param rest
+     */
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            int ch = read();
+            if (Character.toLowerCase(ch) != rest.charAt(i)) {
+                throw unexpected(ch);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- input
+
+    /**
+     * <pre>
+     * 剔除空白元素和注释，返回其后的字符，输入结束时返回 -1
+     * 提供单行(//)和多行(/* *\/)两种注释类型
+     * </pre>
+     * @return
+     */
+    private int skipBlank() throws IOException {
+        while (true) {
+            int ch = read();
+            if (ch == '\n') {
+                newLine();
+            } else if (ch == '/') {
+                skipComment();
+            } else if (ch == -1 || Character.isWhitespace(ch) == false) {
+                return ch;
+            }
+        }
+    }
+
+    /**
+     * 跳过注释，斜杠已读取
+     */
+    private void skipComment() throws IOException {
+        int ch = read();
+        if (ch == '/') {
+            while (true) {
+                ch = read();
+                if (ch == '\n') {
+                    newLine();
+                    return;
+                }
+                if (ch == '\r' || ch == -1) {
+                    return;
+                }
+            }
+        } else if (ch == '*') {
+            boolean isEndReady = false;
+            while (true) {
+                ch = read();
+                if (ch == -1 || (isEndReady && ch == '/')) {
+                    return;
+                }
+                if (ch == '\n') {
+                    newLine();
+                }
+                isEndReady = ch == '*';
+            }
+        } else {
+            throw unexpected(ch);
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && fill() == false) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * 读取下一段输入到缓冲区
+     * @return 输入结束时返回 false
+     */
+    private boolean fill() throws IOException {
+        consumed += limit;
+        position = 0;
+        limit = 0;
+        int count;
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        if (count < 0) {
+            return false;
+        }
+        limit = count;
+        return true;
+    }
+
+    private void newLine() {
+        line++;
+        lineStart = consumed + position;
+    }
+
+    /**
+     * 当前文本的散列值，与 String#hashCode 相同
+     */
+    int textHash() {
+        int hash = 0;
+        for (int i = 0; i < textLength; i++) {
+            hash = 31 * hash + text[i];
+        }
+        return hash;
+    }
+
+    /**
+     * 当前文本是否与字符串相同
+     */
+    boolean textEquals(String str) {
+        if (str.length() != textLength) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (text[i] != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendText(char ch) {
+        if (textLength == text.length) {
+            growText(1);
+        }
+        text[textLength++] = ch;
+    }
+
+    private void appendText(char[] chars, int offset, int length) {
+        if (textLength + length > text.length) {
+            growText(length);
+        }
+        System.arraycopy(chars, offset, text, textLength, length);
+        textLength += length;
+    }
+
+    private void growText(int length) {
+        char[] newText = new char[Math.max(text.length << 1, textLength + length)];
+        System.arraycopy(text, 0, newText, 0, textLength);
+        text = newText;
+    }
+
+    private IllegalArgumentException unexpected(int ch) {
+        if (ch == -1) {
+            return error("Unexpected end of input");
+        }
+        return error("Unexpected '" + (char) ch + "'");
+    }
+
+    IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at line " + line + ", column " + getColumn());
+    }
+}
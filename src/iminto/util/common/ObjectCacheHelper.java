@@ -1,14 +1,23 @@
 package iminto.util.common;
 
-import java.util.Map;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
-import iminto.util.Config.Constant;;
+import java.util.concurrent.ConcurrentMap;
+import iminto.cache.Cache;
+import iminto.cache.CacheStats;
+import iminto.cache.ConcurrentCache;
+import iminto.cache.WeakCache;
+import iminto.util.Config.Constant;
 
 /**
  * <pre>
  * 带有可控域的对象缓存。
- * 维持与程序相同的全生命周期。
- * 注意：在remove前重复或覆盖缓存将被忽略.
+ * 未配置的域维持与程序相同的全生命周期,不限制大小。
+ * 可通过 configureDomain 为域指定 iminto.cache 实现:
+ * 大小限制、超时、弱引用键(如以 Class 为键的域)、软引用值。
+ * 每个域有各自的命中率与大小统计,见 getStats。
  * </pre>
  */
 public class ObjectCacheHelper {
@@ -17,11 +26,33 @@ public class ObjectCacheHelper {
      * 默认域
      */
     private static final String DEFAULT_DOMAIN = "iminto.util.common.ObjectCacheHelper";
+    /**
+     * 未配置域的分段数
+     */
+    private static final int CONCURRENCY_LEVEL = 16;
+
+    /**
+     * 域: 缓存实现及其统计
+     */
+    private static class Domain {
+
+        final Cache<Object, Object> cache;
+        final boolean softValues;
+        final boolean configured;
+        final CacheStats stats;
+
+        Domain(Cache<Object, Object> cache, boolean softValues, boolean configured) {
+            this.cache = cache;
+            this.softValues = softValues;
+            this.configured = configured;
+            this.stats = new CacheStats(cache);
+        }
+    }
     /**
      *  
      */
-    private static Map<Object, Map<Object, Object>> cacheMap =
-            new ConcurrentHashMap<Object, Map<Object, Object>>(Constant.CONCURRENT_CAPACITY_SIZE);
+    private static final ConcurrentMap<Object, Domain> cacheMap =
+            new ConcurrentHashMap<Object, Domain>(Constant.CONCURRENT_CAPACITY_SIZE);
 
     /**
      * 锁定创建
@@ -74,28 +105,102 @@ public class ObjectCacheHelper {
      */
     @SuppressWarnings("unchecked")
     public static <V> V get(Object domain, Object key, Object nullReturn) {
-        Map<Object, Object> subMap = cacheMap.get(domain);
-        if (subMap == null) {
+        Domain subDomain = cacheMap.get(domain);
+        if (subDomain == null) {
             return (V) nullReturn;
         }
-        V returnV = (V) subMap.get(key);
-        if (returnV == null) {
+        Object value = subDomain.cache.get(key);
+        if (value != null && subDomain.softValues) {
+            value = ((SoftReference<Object>) value).get();
+            if (value == null) {
+                // 软引用值已被回收
+                subDomain.cache.remove(key);
+                subDomain.stats.recordSizeEviction(1);
+            }
+        }
+        if (value == null) {
+            subDomain.stats.recordMiss();
             return (V) nullReturn;
         }
-        return returnV;
+        subDomain.stats.recordHit();
+        return (V) value;
     }
 
     /**
      * 制取域
      * @param domain
-     * @return 为空时返回新的Map
+     * @return 为空时创建不限大小的域
+     */
+    private static Domain getDomain(Object domain) {
+        Domain subDomain = cacheMap.get(domain);
+        if (subDomain == null) {
+            subDomain = new Domain(ConcurrentCache.<Object, Object>lru(0, 0, CONCURRENCY_LEVEL), false, false);
+            Domain existing = cacheMap.putIfAbsent(domain, subDomain);
+            if (existing != null) {
+                subDomain = existing;
+            }
+        }
+        return subDomain;
+    }
+
+    /**
+     * <pre>
+     * 为域指定缓存实现,域中已有的缓存将被清除。
+     * 配置后的域在 removeAll 时只清空内容,配置保留。
+     * ex.
+     * configureDomain("a.b.xyz", new LFUCache(1000), false);
+     * </pre>
+     * @param domain 域
+     * @param cache 缓存实现,需线程安全
+     * @param softValues 是否以软引用保存值,内存不足时值可被回收
+     */
+    public static void configureDomain(Object domain, Cache<Object, Object> cache, boolean softValues) {
+        cacheMap.put(domain, new Domain(cache, softValues, true));
+    }
+
+    /**
+     * <pre>
+     * 为域指定缓存参数。
+     * weakKeys 为 true 时使用 WeakCache,键不再被引用时自动移除,适用于以 Class 为键的域;
+     * 否则使用分段的 LRU 缓存。
+     * ex.
+     * configureDomain("a.b.xyz", 1000, 60000, false, false);
+     * </pre>
+     * @param domain 域
+     * @param cacheSize 最大缓存数, 0 为不限制
+     * @param timeout 超时毫秒数, 0 为不超时
+     * @param weakKeys 是否以弱引用保存键
+     * @param softValues 是否以软引用保存值
      */
-    private static Map<Object, Object> getMap(Object domain) {
-        Map<Object, Object> subMap = cacheMap.get(domain);
-        if (subMap == null) {
-            return new ConcurrentHashMap<Object, Object>(Constant.CONCURRENT_CAPACITY_SIZE);
+    public static void configureDomain(Object domain, int cacheSize, long timeout, boolean weakKeys, boolean softValues) {
+        Cache<Object, Object> cache;
+        if (weakKeys) {
+            cache = new WeakCache<Object, Object>(cacheSize, timeout);
+        } else {
+            cache = ConcurrentCache.<Object, Object>lru(cacheSize, timeout, CONCURRENCY_LEVEL);
         }
-        return subMap;
+        configureDomain(domain, cache, softValues);
+    }
+
+    /**
+     * <pre>
+     * 获取域的统计: 命中、未命中、大小。
+     * 可通过 CacheStats.registerMBean 发布到 JMX。
+     * </pre>
+     * @param domain 域
+     * @return 域不存在时返回 null
+     */
+    public static CacheStats getStats(Object domain) {
+        Domain subDomain = cacheMap.get(domain);
+        return subDomain == null ? null : subDomain.stats;
+    }
+
+    /**
+     * 获取所有域
+     * @return 域列表
+     */
+    public static List<Object> getDomains() {
+        return new ArrayList<Object>(cacheMap.keySet());
     }
 
     /**
@@ -124,9 +229,8 @@ public class ObjectCacheHelper {
      * @param value 需要缓存的对象
      */
     public static void put(Object domain, Object key, Object value) {
-        Map<Object, Object> subMap = getMap(domain);
-        subMap.put(key, value);
-        cacheMap.put(domain, subMap);
+        Domain subDomain = getDomain(domain);
+        subDomain.cache.put(key, subDomain.softValues ? new SoftReference<Object>(value) : value);
     }
 
     /**
@@ -140,7 +244,7 @@ public class ObjectCacheHelper {
      * @param key 键
      */
     public static void remove(Object key) {
-        cacheMap.remove(key);
+        remove(DEFAULT_DOMAIN, key);
     }
 
     /**
@@ -153,16 +257,19 @@ public class ObjectCacheHelper {
      * @param key 键
      */
     public static void remove(Object domain, Object key) {
-        Map<Object, Object> subMap = getMap(domain);
-        subMap.remove(key);
-        cacheMap.put(domain, subMap);
+        Domain subDomain = cacheMap.get(domain);
+        if (subDomain != null) {
+            subDomain.cache.remove(key);
+        }
     }
 
     /**
      * 清理所有缓存
      */
-    public static synchronized void removeAll() {
-        cacheMap = new ConcurrentHashMap<Object, Map<Object, Object>>();
+    public static void removeAll() {
+        for (Object domain : cacheMap.keySet()) {
+            removeAll(domain);
+        }
     }
 
     /**
@@ -176,13 +283,21 @@ public class ObjectCacheHelper {
      * @param domain 域名称
      */
     public static void removeAll(Object domain) {
-        cacheMap.remove(domain);
+        Domain subDomain = cacheMap.get(domain);
+        if (subDomain == null) {
+            return;
+        }
+        if (subDomain.configured) {
+            subDomain.cache.clear();
+        } else {
+            cacheMap.remove(domain, subDomain);
+        }
     }
 
     /**
      * 清理默认域所有缓存
      */
     public static void removeDefaultDomainAll() {
-        cacheMap.remove(DEFAULT_DOMAIN);
+        removeAll(DEFAULT_DOMAIN);
     }
 }
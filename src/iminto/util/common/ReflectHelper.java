@@ -44,6 +44,11 @@ public class ReflectHelper {
      */
     private static final String CACHE_DOMAIN = "org.zoeey.core.util.ReflectCacheHelper";
 
+    static {
+        // 值引用了类本身,故以软引用保存,使类可被卸载
+        ObjectCacheHelper.configureDomain(CACHE_DOMAIN, 0, 0, true, true);
+    }
+
     /**
      * 锁定创建
      */
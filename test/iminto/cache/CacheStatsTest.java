@@ -0,0 +1,51 @@
+package iminto.cache;
+import iminto.util.common.JmxClient;
+import java.lang.management.ManagementFactory;
+import java.rmi.registry.LocateRegistry;
+import java.util.Random;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * Registers cache statistics as MBean and reads them with {@link JmxClient}.
+ */
+public class CacheStatsTest {
+
+	public static void main(String[] args) throws Exception {
+		LRUCache<Integer, String> cache = new LRUCache<Integer, String>(100, 50);
+		cache.getStats().registerMBean("test");
+
+		Random random = new Random(1);
+		for (int i = 0; i < 1000; i++) {
+			Integer key = Integer.valueOf(random.nextInt(150));
+			if (cache.get(key) == null) {
+				cache.put(key, key.toString());
+			}
+		}
+		Thread.sleep(100);
+		cache.prune();
+		cache.put(1, "1");
+		cache.remove(1);
+		System.out.println(cache.getStats());
+
+		LocateRegistry.createRegistry(9999);
+		JMXServiceURL url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:9999/jmxrmi");
+		JMXConnectorServer server = JMXConnectorServerFactory.newJMXConnectorServer(url, null, ManagementFactory.getPlatformMBeanServer());
+		server.start();
+		try {
+			JmxClient client = new JmxClient(url.toString());
+			String mbeanName = "iminto.cache:type=Cache,name=test";
+			System.out.println("HitRatio: " + client.getAttribute(mbeanName, "HitRatio"));
+			System.out.println("SizeEvictionCount: " + client.getAttribute(mbeanName, "SizeEvictionCount"));
+			CacheStatsMBean proxy = client.getMBeanProxy(mbeanName, CacheStatsMBean.class);
+			System.out.println("ExpirationCount: " + proxy.getExpirationCount() + ", RemovalCount: " + proxy.getRemovalCount());
+			client.setAttribute(mbeanName, "Enabled", Boolean.FALSE);
+			System.out.println("Enabled: " + cache.getStats().isEnabled());
+			client.close();
+		} finally {
+			server.stop();
+			cache.getStats().unregisterMBean();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package iminto.cache;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput test for {@link ConcurrentCache}: many threads run a mix of
+ * get/put against a single-segment cache (one lock, as the plain caches)
+ * and against a striped one.
+ */
+public class ConcurrentCacheTest {
+
+	static final int CACHE_SIZE = 2000;
+	static final int KEY_SPACE = 4000;
+	static final int OPS_PER_THREAD = 200000;
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+
+		for (int round = 0; round < 2; round++) {
+			System.out.println("---------------- round " + round + ", threads: " + threads);
+			run("LRU  1 segment ", ConcurrentCache.<Integer, Integer>lru(CACHE_SIZE, 0, 1), threads);
+			run("LRU  striped   ", ConcurrentCache.<Integer, Integer>lru(CACHE_SIZE, 0, threads * 4), threads);
+			run("LFU  1 segment ", ConcurrentCache.<Integer, Integer>lfu(CACHE_SIZE, 0, 1), threads);
+			run("LFU  striped   ", ConcurrentCache.<Integer, Integer>lfu(CACHE_SIZE, 0, threads * 4), threads);
+			run("FIFO 1 segment ", ConcurrentCache.<Integer, Integer>fifo(CACHE_SIZE, 0, 1), threads);
+			run("FIFO striped   ", ConcurrentCache.<Integer, Integer>fifo(CACHE_SIZE, 0, threads * 4), threads);
+		}
+	}
+
+	static void run(String name, final Cache<Integer, Integer> cache, int threads) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicLong hits = new AtomicLong();
+
+		for (int t = 0; t < threads; t++) {
+			final long seed = t;
+			new Thread() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					long localHits = 0;
+					try {
+						start.await();
+						for (int i = 0; i < OPS_PER_THREAD; i++) {
+							Integer key = Integer.valueOf(random.nextInt(KEY_SPACE));
+							if (cache.get(key) != null) {
+								localHits++;
+							} else {
+								cache.put(key, key);
+							}
+						}
+					} catch (InterruptedException ignore) {
+					} finally {
+						hits.addAndGet(localHits);
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+
+		long time = System.nanoTime();
+		start.countDown();
+		done.await();
+		time = System.nanoTime() - time;
+
+		long ops = (long) threads * OPS_PER_THREAD;
+		if (cache.size() > cache.getCacheSize()) {
+			throw new IllegalStateException("Cache size exceeded: " + cache.size());
+		}
+		System.out.println(name + ": " + (ops * 1000 / (time / 1000000 + 1)) + " ops/s, hit ratio: " + (hits.get() * 100 / ops) + "%, size: " + cache.size());
+	}
+}
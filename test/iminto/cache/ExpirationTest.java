@@ -0,0 +1,78 @@
+package iminto.cache;
+
+/**
+ * Objects with their own timeout: expired objects are removed by prune through the
+ * timing wheel, while accessed and replaced objects stay in the cache. Also measures
+ * puts into full caches with a few objects with timeout, which must not scan the cache.
+ */
+public class ExpirationTest {
+
+	static class ManualTicker implements Ticker {
+		long time = 1000000;
+
+		public long currentTimeMillis() {
+			return time;
+		}
+	}
+
+	public static void main(String[] args) {
+		test("LRU", new LRUCache<Integer, Integer>(1000, 0));
+		test("LFU", new LFUCache<Integer, Integer>(1000, 0));
+		test("FIFO", new FIFOCache<Integer, Integer>(1000, 0));
+		test("TinyLFU", new TinyLFUCache<Integer, Integer>(1000, 0));
+		test("Timed", new TimedCache<Integer, Integer>(0));
+
+		speed("LRU", new LRUCache<Integer, Integer>(100000, 0));
+		speed("LFU", new LFUCache<Integer, Integer>(100000, 0));
+		speed("FIFO", new FIFOCache<Integer, Integer>(100000, 0));
+		speed("TinyLFU", new TinyLFUCache<Integer, Integer>(100000, 0));
+	}
+
+	private static void test(String name, AbstractCacheMap<Integer, Integer> cache) {
+		ManualTicker ticker = new ManualTicker();
+		cache.setTicker(ticker);
+		for (int i = 0; i < 100; i++) {
+			cache.put(Integer.valueOf(i), Integer.valueOf(i), i < 50 ? 1000 : 0);
+		}
+		cache.put(Integer.valueOf(10), Integer.valueOf(10), 100000);	// replaced, longer timeout
+		cache.remove(Integer.valueOf(20));
+
+		ticker.time += 500;
+		cache.get(Integer.valueOf(30));									// accessed, expires later
+		ticker.time += 600;
+		int count = cache.prune();
+		check(count == 47, name + ": expired " + count);
+		check(cache.size() == 52, name + ": size " + cache.size());
+		check(cache.get(Integer.valueOf(10)) != null && cache.get(Integer.valueOf(30)) != null, name + ": accessed");
+		check(cache.get(Integer.valueOf(0)) == null && cache.get(Integer.valueOf(60)) != null, name + ": expired");
+
+		ticker.time += 2000;
+		check(cache.prune() == 1 && cache.size() == 51, name + ": accessed expired");
+		ticker.time += 10000000;
+		check(cache.prune() == 1 && cache.size() == 50, name + ": long timeout");
+
+		cache.put(Integer.valueOf(1), Integer.valueOf(1), 1000);
+		cache.clear();
+		ticker.time += 2000;
+		check(cache.prune() == 0 && cache.size() == 0, name + ": clear");
+		check(cache.getStats().getExpirationCount() == 49, name + ": stats " + cache.getStats());
+	}
+
+	private static void speed(String name, AbstractCacheMap<Integer, Integer> cache) {
+		int size = cache.getCacheSize();
+		for (int i = 0; i < size; i++) {
+			cache.put(Integer.valueOf(i), Integer.valueOf(i), i % 1000 == 0 ? 60000 : 0);
+		}
+		long start = System.nanoTime();
+		for (int i = size; i < 2 * size; i++) {
+			cache.put(Integer.valueOf(i), Integer.valueOf(i));
+		}
+		System.out.println(name + ": " + size + " puts into the full cache in " + (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package iminto.cache;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares hit ratios of LRU, LFU, FIFO and W-TinyLFU caches on the same access trace.
+ * Trace is read from the file given as first argument (one key per line); when not
+ * specified, a synthetic trace is generated: zipfian distributed accesses interrupted
+ * by the sequential scans.
+ */
+public class HitRatioTest {
+
+	public static void main(String[] args) throws IOException {
+		int cacheSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		List<String> trace = args.length > 0 ? readTrace(args[0]) : generateTrace(500000, 50000);
+
+		System.out.println("trace size: " + trace.size() + ", cache size: " + cacheSize);
+		replay("LRU     ", new LRUCache<String, String>(cacheSize), trace);
+		replay("LFU     ", new LFUCache<String, String>(cacheSize), trace);
+		replay("FIFO    ", new FIFOCache<String, String>(cacheSize), trace);
+		TinyLFUCache<String, String> tinyLFU = new TinyLFUCache<String, String>(cacheSize);
+		replay("TinyLFU ", tinyLFU, trace);
+		System.out.println("TinyLFU admitted: " + tinyLFU.getAdmittedCount() + ", rejected: " + tinyLFU.getRejectedCount());
+	}
+
+	static void replay(String name, AbstractCacheMap<String, String> cache, List<String> trace) {
+		long time = System.currentTimeMillis();
+		for (String key : trace) {
+			if (cache.get(key) == null) {
+				cache.put(key, key);
+			}
+		}
+		time = System.currentTimeMillis() - time;
+		long hits = cache.getHitCount();
+		long total = hits + cache.getMissCount();
+		System.out.println(name + ": hit ratio " + (hits * 10000 / total) / 100.0 + "%, " + time + "ms");
+	}
+
+	static List<String> readTrace(String fileName) throws IOException {
+		List<String> trace = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() != 0) {
+					trace.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return trace;
+	}
+
+	static List<String> generateTrace(int length, int keySpace) {
+		double[] cumulative = new double[keySpace];
+		double sum = 0;
+		for (int i = 0; i < keySpace; i++) {
+			sum += 1.0 / Math.pow(i + 1, 0.9);
+			cumulative[i] = sum;
+		}
+		Random random = new Random(1);
+		List<String> trace = new ArrayList<String>(length);
+		int scanKey = 0;
+		while (trace.size() < length) {
+			if (random.nextInt(20000) == 0) {
+				// sequential scan over keys that are never accessed again
+				for (int i = 0; i < 2000; i++) {
+					trace.add("scan" + scanKey++);
+				}
+				continue;
+			}
+			double value = random.nextDouble() * sum;
+			int low = 0;
+			int high = keySpace - 1;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (cumulative[mid] < value) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			trace.add("key" + low);
+		}
+		return trace;
+	}
+}
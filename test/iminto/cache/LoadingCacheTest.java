@@ -0,0 +1,73 @@
+package iminto.cache;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cold start of {@link LoadingCache}: many threads ask for the same keys at once,
+ * each key has to be loaded only once.
+ */
+public class LoadingCacheTest {
+
+	public static void main(String[] args) throws Exception {
+		final AtomicInteger loadCount = new AtomicInteger();
+		final LoadingCache.Loader<Integer, String> loader = new LoadingCache.Loader<Integer, String>() {
+			public String load(Integer key) throws Exception {
+				loadCount.incrementAndGet();
+				Thread.sleep(100);
+				return "value" + key + "@" + System.currentTimeMillis();
+			}
+		};
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		final LoadingCache<Integer, String> cache = new LoadingCache<Integer, String>(
+				ConcurrentCache.<Integer, LoadingCache.LoadedValue<String>>lru(1000, 0, 16), 500, executor);
+
+		int threads = 200;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			final Integer key = Integer.valueOf(i % 4);
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						cache.get(key, loader);
+					} catch (InterruptedException ignore) {
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		done.await();
+		System.out.println("threads: " + threads + ", loads: " + loadCount.get() + " (expected 4)");
+
+		loadCount.set(0);
+		Map<Integer, String> values = cache.getAll(Arrays.asList(1, 2, 3, 4, 5, 6), new LoadingCache.BulkLoader<Integer, String>() {
+			public Map<Integer, String> loadAll(Collection<Integer> keys) throws Exception {
+				System.out.println("bulk load: " + keys);
+				Map<Integer, String> result = new HashMap<Integer, String>();
+				for (Integer key : keys) {
+					result.put(key, "bulk" + key);
+				}
+				return result;
+			}
+		});
+		System.out.println("getAll: " + values);
+
+		Thread.sleep(600);
+		System.out.println("stale: " + cache.get(0, loader));
+		Thread.sleep(200);
+		System.out.println("refreshed: " + cache.get(0, loader) + ", loads: " + loadCount.get() + " (expected 1)");
+
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,71 @@
+package iminto.cache;
+import java.io.File;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Fills {@link OffHeapCache} over its capacity, with values of different sizes,
+ * and reopens the memory-mapped cache to check that entries survive the restart.
+ * Weight of the cache is the memory of used chunks, which is released on close.
+ */
+public class OffHeapCacheTest {
+
+	public static void main(String[] args) throws Exception {
+		OffHeapCache<String, String> cache = new OffHeapCache<String, String>(16 << 20, Serializer.STRING, Serializer.STRING);
+		StringBuilder value = new StringBuilder();
+		long start = System.nanoTime();
+		for (int i = 0; i < 200000; i++) {
+			value.setLength(0);
+			for (int j = 0, len = i % 200; j < len; j++) {
+				value.append((char) ('a' + j % 26));
+			}
+			cache.put("key" + i, value.toString());
+			if (i % 10 == 0) {
+				cache.get("key" + (i / 2));
+			}
+		}
+		System.out.println("put: " + (System.nanoTime() - start) / 200000 + " ns/op, size: " + cache.size());
+		System.out.println("last: " + cache.get("key199999"));
+		System.out.println(cache.getStats());
+		long weight = cache.getStats().getTotalWeight();
+		check(weight > 8 << 20 && weight <= cache.getCapacity(), "weight: " + weight);
+		cache.remove("key199999");
+		check(cache.getTotalWeight() < weight, "weight after remove");
+		long used = bufferMemoryUsed("direct");
+		cache.close();
+		check(bufferMemoryUsed("direct") <= used - (16 << 20), "memory not released");
+
+		File file = File.createTempFile("offheap", ".cache");
+		file.deleteOnExit();
+		OffHeapCache<String, String> mapped = new OffHeapCache<String, String>(file, 4 << 20, 1 << 16, 0, Serializer.STRING, Serializer.STRING);
+		for (int i = 0; i < 1000; i++) {
+			mapped.put("key" + i, "value" + i);
+		}
+		mapped.remove("key1");
+		weight = mapped.getTotalWeight();
+		mapped.close();
+
+		mapped = new OffHeapCache<String, String>(file, 4 << 20, 1 << 16, 0, Serializer.STRING, Serializer.STRING);
+		System.out.println("reopened size: " + mapped.size() + " (expected 999)");
+		System.out.println("key0: " + mapped.get("key0") + ", key1: " + mapped.get("key1") + ", key999: " + mapped.get("key999"));
+		check(mapped.getTotalWeight() == weight, "reopened weight");
+		used = bufferMemoryUsed("mapped");
+		mapped.close();
+		check(bufferMemoryUsed("mapped") <= used - (4 << 20), "mapped memory not released");
+	}
+
+	static long bufferMemoryUsed(String name) {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals(name)) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
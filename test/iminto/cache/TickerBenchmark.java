@@ -0,0 +1,45 @@
+package iminto.cache;
+
+/**
+ * Compares cache hit latency with the system time source and with the {@link CachedTicker}.
+ */
+public class TickerBenchmark {
+
+	static final int KEYS = 1024;
+	static final int LOOPS = 20000000;
+
+	public static void main(String[] args) {
+		CachedTicker cachedTicker = new CachedTicker();
+		try {
+			for (int round = 0; round < 3; round++) {
+				System.out.println("---------------- round " + round);
+				run("LRU  system ", new LRUCache<Integer, Integer>(KEYS, 60000), Ticker.SYSTEM);
+				run("LRU  cached ", new LRUCache<Integer, Integer>(KEYS, 60000), cachedTicker);
+				run("LFU  system ", new LFUCache<Integer, Integer>(KEYS, 60000), Ticker.SYSTEM);
+				run("LFU  cached ", new LFUCache<Integer, Integer>(KEYS, 60000), cachedTicker);
+				run("Timed system", new TimedCache<Integer, Integer>(60000), Ticker.SYSTEM);
+				run("Timed cached", new TimedCache<Integer, Integer>(60000), cachedTicker);
+			}
+		} finally {
+			cachedTicker.stop();
+		}
+	}
+
+	static void run(String name, AbstractCacheMap<Integer, Integer> cache, Ticker ticker) {
+		cache.setTicker(ticker);
+		Integer[] keys = new Integer[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = Integer.valueOf(i);
+			cache.put(keys[i], keys[i]);
+		}
+
+		long sum = 0;
+		long time = System.nanoTime();
+		for (int i = 0; i < LOOPS; i++) {
+			sum += cache.get(keys[i & (KEYS - 1)]).intValue();
+		}
+		time = System.nanoTime() - time;
+
+		System.out.println(name + ": " + (time * 100 / LOOPS) / 100.0 + " ns/get (" + sum + ")");
+	}
+}
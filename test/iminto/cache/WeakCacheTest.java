@@ -0,0 +1,51 @@
+package iminto.cache;
+import iminto.util.common.ObjectCacheHelper;
+
+/**
+ * Objects of {@link WeakCache} are removed once their keys are collected,
+ * also when the cache backs a weak domain of <code>ObjectCacheHelper</code>.
+ */
+public class WeakCacheTest {
+
+	static final int SIZE = 10000;
+
+	public static void main(String[] args) throws InterruptedException {
+		WeakCache<Object, Object> cache = new WeakCache<Object, Object>();
+		Object[] keys = new Object[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			keys[i] = new Object();
+			cache.put(keys[i], Integer.valueOf(i));
+		}
+		collect();
+		check(cache.size() == SIZE, "referenced keys collected: " + cache.size());
+		check(cache.get(keys[SIZE - 1]).equals(Integer.valueOf(SIZE - 1)), "value");
+		keys = null;
+		for (int i = 0; i < 5 && cache.size() > 0; i++) {
+			collect();
+		}
+		check(cache.size() == 0, "cache size " + cache.size());
+
+		String domain = "weak domain";
+		ObjectCacheHelper.configureDomain(domain, 0, 0, true, false);
+		for (int i = 0; i < SIZE; i++) {
+			ObjectCacheHelper.put(domain, new Object(), Integer.valueOf(i));
+		}
+		CacheStats stats = ObjectCacheHelper.getStats(domain);
+		check(stats.getSize() == SIZE, "domain size " + stats.getSize());
+		for (int i = 0; i < 5 && stats.getSize() > 0; i++) {
+			collect();
+		}
+		check(stats.getSize() == 0, "domain size " + stats.getSize());
+	}
+
+	static void collect() throws InterruptedException {
+		System.gc();
+		Thread.sleep(100);
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
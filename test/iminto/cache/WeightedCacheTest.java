@@ -0,0 +1,76 @@
+package iminto.cache;
+import java.util.Iterator;
+
+/**
+ * Weight-limited caches: values of very different sizes are put into the caches
+ * limited to 1MB, total weight must stay under the limit.
+ */
+public class WeightedCacheTest {
+
+	public static void main(String[] args) {
+		Weigher<Integer, byte[]> weigher = new Weigher<Integer, byte[]>() {
+			public int weigh(Integer key, byte[] object) {
+				return object.length;
+			}
+		};
+		long maxWeight = 1 << 20;
+
+		test("LRU", new LRUCache<Integer, byte[]>(maxWeight, weigher, 0));
+		test("LFU", new LFUCache<Integer, byte[]>(maxWeight, weigher, 0));
+		test("FIFO", new FIFOCache<Integer, byte[]>(maxWeight, weigher, 0));
+
+		Weigher<Integer, Integer> unit = new Weigher<Integer, Integer>() {
+			public int weigh(Integer key, Integer object) {
+				return 1;
+			}
+		};
+		admit("LRU", new LRUCache<Integer, Integer>(3, unit, 0));
+		admit("LFU", new LFUCache<Integer, Integer>(3, unit, 0));
+		admit("FIFO", new FIFOCache<Integer, Integer>(3, unit, 0));
+		admit("LFU by size", new LFUCache<Integer, Integer>(3));
+
+		FIFOCache<Integer, byte[]> cache = new FIFOCache<Integer, byte[]>(1000, weigher, 0);
+		cache.put(Integer.valueOf(1), new byte[10]);
+		cache.put(Integer.valueOf(1), new byte[2000]);
+		if (cache.get(Integer.valueOf(1)) != null || cache.getTotalWeight() != 0) {
+			throw new IllegalStateException("object heavier than max weight cached");
+		}
+	}
+
+	/**
+	 * New objects must be admitted when cached objects were already hit,
+	 * as they are by the cache limited by size.
+	 */
+	private static void admit(String name, AbstractCacheMap<Integer, Integer> cache) {
+		for (int i = 1; i <= 3; i++) {
+			cache.put(Integer.valueOf(i), Integer.valueOf(i));
+			for (int j = 0; j < 5; j++) {
+				cache.get(Integer.valueOf(i));
+			}
+		}
+		for (int i = 4; i <= 6; i++) {
+			cache.put(Integer.valueOf(i), Integer.valueOf(i));
+			if (cache.get(Integer.valueOf(i)) == null || cache.size() != 3) {
+				throw new IllegalStateException(name + ": new object not admitted: " + i);
+			}
+		}
+	}
+
+	private static void test(String name, AbstractCacheMap<Integer, byte[]> cache) {
+		int[] sizes = {100, 1000, 10000, 100000, 500000};
+		for (int i = 0; i < 10000; i++) {
+			cache.put(Integer.valueOf(i), new byte[sizes[i % sizes.length]]);
+			if (cache.getTotalWeight() > cache.getMaxWeight()) {
+				throw new IllegalStateException(name + ": max weight exceeded: " + cache.getTotalWeight());
+			}
+			cache.get(Integer.valueOf(i / 2));
+		}
+		long total = 0;
+		Iterator<byte[]> values = cache.iterator();
+		while (values.hasNext()) {
+			total += values.next().length;
+		}
+		System.out.println(name + ": size=" + cache.size() + ", weight=" + cache.getTotalWeight() + " (counted " + total + ")");
+		System.out.println(cache.getStats());
+	}
+}
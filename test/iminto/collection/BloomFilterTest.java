@@ -0,0 +1,85 @@
+package iminto.collection;
+import iminto.io.FastByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+
+/**
+ * Measures false positive rates of {@link BloomFilter} and {@link ScalableBloomFilter},
+ * with concurrent insertions, merge and serialization round trip.
+ */
+public class BloomFilterTest {
+
+	public static void main(String[] args) throws Exception {
+		final int count = 1000000;
+		final BloomFilter filter = new BloomFilter(count, 0.01);
+		System.out.println("bits: " + filter.getBitSize() + ", hashes: " + filter.getHashCount());
+
+		int threads = 4;
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			final int from = t * (count / threads);
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = from; i < from + count / 4; i++) {
+						filter.add("event-" + i);
+					}
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		System.out.println("add: " + (System.nanoTime() - start) / count + " ns/op");
+
+		for (int i = 0; i < count; i++) {
+			if (filter.contains("event-" + i) == false) {
+				throw new IllegalStateException("false negative: " + i);
+			}
+		}
+		System.out.println("fpp: " + falsePositives(filter, count) + " (expected " + filter.getExpectedFpp() + ")");
+
+		BloomFilter other = new BloomFilter(count, 0.01);
+		other.add(-1L);
+		filter.merge(other);
+		System.out.println("merged contains -1: " + filter.contains(-1L));
+		BloomFilter overlapping = new BloomFilter(count, 0.01);
+		for (int i = 0; i < 1000; i++) {
+			overlapping.add("event-" + i);
+		}
+		long insertions = filter.getInsertionCount();
+		filter.merge(overlapping);
+		if (filter.getInsertionCount() != insertions) {
+			throw new IllegalStateException("merged insertions: " + filter.getInsertionCount() + " != " + insertions);
+		}
+
+		FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+		filter.writeTo(out);
+		BloomFilter copy = BloomFilter.readFrom(new ByteArrayInputStream(out.toByteArray()));
+		System.out.println("serialized: " + out.size() + " bytes, fpp: " + falsePositives(copy, count));
+
+		ScalableBloomFilter scalable = new ScalableBloomFilter(10000, 0.01);
+		for (long i = 0; i < count; i++) {
+			scalable.add(i);
+		}
+		int falsePositives = 0;
+		for (long i = count; i < 2L * count; i++) {
+			if (scalable.contains(i)) {
+				falsePositives++;
+			}
+		}
+		System.out.println("scalable slices: " + scalable.getSliceCount() + ", bits: " + scalable.getBitSize() +
+				", fpp: " + (double) falsePositives / count + " (expected " + scalable.getExpectedFpp() + ")");
+	}
+
+	private static double falsePositives(BloomFilter filter, int count) {
+		int falsePositives = 0;
+		for (int i = count; i < 2 * count; i++) {
+			if (filter.contains("event-" + i)) {
+				falsePositives++;
+			}
+		}
+		return (double) falsePositives / count;
+	}
+}
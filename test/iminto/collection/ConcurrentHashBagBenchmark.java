@@ -0,0 +1,85 @@
+package iminto.collection;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares {@link ConcurrentHashBag} with synchronized {@link HashBag} when
+ * words are counted by 1 to 64 threads, and checks that counts are not lost.
+ */
+public class ConcurrentHashBagBenchmark {
+
+	static final int WORDS = 10000;
+	static final int OPS = 4000000;
+
+	public static void main(String[] args) throws InterruptedException {
+		String[] dictionary = new String[WORDS];
+		for (int i = 0; i < WORDS; i++) {
+			dictionary[i] = "word" + i;
+		}
+		final String[] data = new String[OPS];
+		Random random = new Random(1);
+		for (int i = 0; i < OPS; i++) {
+			double r = random.nextDouble();
+			data[i] = dictionary[(int) (r * r * WORDS)];
+		}
+
+		for (int threads = 1; threads <= 64; threads <<= 1) {
+			final ConcurrentHashBag<String> concurrentBag = new ConcurrentHashBag<String>();
+			long concurrentTime = run(threads, data, new Counter() {
+				public void count(String word) {
+					concurrentBag.add(word);
+				}
+			});
+
+			final HashBag<String> hashBag = new HashBag<String>();
+			long synchronizedTime = run(threads, data, new Counter() {
+				public void count(String word) {
+					synchronized (hashBag) {
+						hashBag.add(word);
+					}
+				}
+			});
+
+			if (concurrentBag.size() != OPS || concurrentBag.equals(hashBag) == false) {
+				throw new IllegalStateException("lost updates");
+			}
+			System.out.println(threads + " threads\tConcurrentHashBag: " + concurrentTime / OPS
+					+ " ns/op\tsynchronized HashBag: " + synchronizedTime / OPS + " ns/op");
+		}
+	}
+
+	interface Counter {
+		void count(String word);
+	}
+
+	/**
+	 * Counts all words, split between threads. Returns elapsed time in nanoseconds.
+	 */
+	static long run(int threads, final String[] data, final Counter counter) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final int chunk = data.length / threads;
+		for (int t = 0; t < threads; t++) {
+			final int from = t * chunk;
+			final int to = t == threads - 1 ? data.length : from + chunk;
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = from; i < to; i++) {
+							counter.count(data[i]);
+						}
+					} catch (InterruptedException ignore) {
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		long time = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - time;
+	}
+}
@@ -0,0 +1,97 @@
+package iminto.collection;
+
+/**
+ * Compares {@link BloomFilter}, {@link CountingBloomFilter} and {@link CuckooFilter}:
+ * throughput of add and contains, false positive rate and memory per element.
+ * Removal is checked for filters that support it.
+ */
+public class FilterBenchmark {
+
+	static final int COUNT = 1000000;
+	static final double FPP = 0.001;
+
+	public static void main(String[] args) {
+		for (int round = 0; round < 2; round++) {
+			System.out.println("round " + round);
+			bloom();
+			counting();
+			cuckoo();
+		}
+	}
+
+	static void bloom() {
+		BloomFilter filter = new BloomFilter(COUNT, FPP);
+		long start = System.nanoTime();
+		for (long i = 0; i < COUNT; i++) {
+			filter.add(i);
+		}
+		long addTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		int falsePositives = 0;
+		for (long i = COUNT; i < 2L * COUNT; i++) {
+			if (filter.contains(i)) {
+				falsePositives++;
+			}
+		}
+		long containsTime = System.nanoTime() - start;
+		report("bloom", addTime, containsTime, falsePositives, filter.getBitsPerElement(), true);
+	}
+
+	static void counting() {
+		CountingBloomFilter filter = new CountingBloomFilter(COUNT, FPP);
+		long start = System.nanoTime();
+		for (long i = 0; i < COUNT; i++) {
+			filter.add(i);
+		}
+		long addTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		int falsePositives = 0;
+		for (long i = COUNT; i < 2L * COUNT; i++) {
+			if (filter.contains(i)) {
+				falsePositives++;
+			}
+		}
+		long containsTime = System.nanoTime() - start;
+		double bitsPerElement = filter.getBitsPerElement();
+		boolean removed = true;
+		for (long i = 0; i < COUNT; i += 2) {
+			removed &= filter.remove(i);
+		}
+		for (long i = 1; i < COUNT; i += 2) {
+			removed &= filter.contains(i);
+		}
+		report("counting", addTime, containsTime, falsePositives, bitsPerElement, removed);
+	}
+
+	static void cuckoo() {
+		CuckooFilter filter = new CuckooFilter(COUNT);
+		long start = System.nanoTime();
+		for (long i = 0; i < COUNT; i++) {
+			filter.add(i);
+		}
+		long addTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		int falsePositives = 0;
+		for (long i = COUNT; i < 2L * COUNT; i++) {
+			if (filter.contains(i)) {
+				falsePositives++;
+			}
+		}
+		long containsTime = System.nanoTime() - start;
+		double bitsPerElement = filter.getBitsPerElement();
+		boolean removed = true;
+		for (long i = 0; i < COUNT; i += 2) {
+			removed &= filter.remove(i);
+		}
+		for (long i = 1; i < COUNT; i += 2) {
+			removed &= filter.contains(i);
+		}
+		report("cuckoo", addTime, containsTime, falsePositives, bitsPerElement, removed);
+	}
+
+	static void report(String name, long addTime, long containsTime, int falsePositives, double bitsPerElement, boolean removed) {
+		System.out.println(name + ": add " + addTime / COUNT + " ns, contains " + containsTime / COUNT +
+				" ns, fpp " + (double) falsePositives / COUNT +
+				", bits/element " + Math.round(bitsPerElement * 10) / 10.0 + (removed ? "" : ", REMOVAL FAILED"));
+	}
+}
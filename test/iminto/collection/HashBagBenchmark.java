@@ -0,0 +1,113 @@
+package iminto.collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares {@link ObjectIntHashBag} with {@link HashBag} on word counting and checks
+ * that both bags end with the same counts. Prints the most frequent words.
+ */
+public class HashBagBenchmark {
+
+	static final int WORDS = 50000;
+	static final int OPS = 5000000;
+
+	public static void main(String[] args) {
+		String[] dictionary = new String[WORDS];
+		for (int i = 0; i < WORDS; i++) {
+			dictionary[i] = "word" + i;
+		}
+		// skewed distribution, so there are distinct top words
+		String[] data = new String[OPS];
+		Random random = new Random(1);
+		for (int i = 0; i < OPS; i++) {
+			double r = random.nextDouble();
+			data[i] = dictionary[(int) (r * r * r * WORDS)];
+		}
+
+		ObjectIntHashBag<String> bag = null;
+		HashBag<String> hashBag = null;
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			bag = new ObjectIntHashBag<String>();
+			for (String word : data) {
+				bag.add(word);
+			}
+			long bagTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			hashBag = new HashBag<String>();
+			for (String word : data) {
+				hashBag.add(word);
+			}
+			long hashBagTime = System.nanoTime() - start;
+
+			System.out.println("ObjectIntHashBag: " + bagTime / OPS + " ns/op, HashBag: " + hashBagTime / OPS + " ns/op");
+		}
+
+		check(bag.equals(hashBag) && hashBag.equals(bag), "equals");
+		check(bag.hashCode() == hashBag.hashCode(), "hashCode");
+		check(bag.uniqueSet().size() == hashBag.uniqueSet().size(), "unique size");
+
+		List<String> top = bag.topK(10);
+		System.out.println("top 10:");
+		for (String word : top) {
+			System.out.println("\t" + word + ": " + bag.getCount(word));
+		}
+		for (int i = 1; i < top.size(); i++) {
+			check(bag.getCount(top.get(i - 1)) >= bag.getCount(top.get(i)), "topK order");
+		}
+
+		// merge doubles the counts
+		ObjectIntHashBag<String> merged = new ObjectIntHashBag<String>();
+		merged.merge(bag);
+		merged.merge(hashBag);
+		check(merged.size() == 2 * OPS, "merge size");
+		check(merged.getCount("word0") == 2 * bag.getCount("word0"), "merge count");
+		ObjectIntHashBag<String> self = new ObjectIntHashBag<String>();
+		self.merge(bag);
+		self.add(null, 3);
+		self.merge(self);
+		check(self.size() == 2 * (OPS + 3) && self.getCount(null) == 6, "merge itself size");
+		for (String word : bag.uniqueSet()) {
+			check(self.getCount(word) == 2 * bag.getCount(word), "merge itself " + word);
+		}
+
+		// removal by iterator, with shifting of the table
+		Iterator<String> iterator = merged.iterator();
+		int removed = 0;
+		while (iterator.hasNext()) {
+			String word = iterator.next();
+			if (word.hashCode() % 3 == 0) {
+				iterator.remove();
+				removed++;
+			}
+		}
+		check(merged.size() == 2 * OPS - removed, "iterator remove");
+		for (String word : dictionary) {
+			if (word.hashCode() % 3 == 0) {
+				check(merged.contains(word) == false, "removed " + word);
+			} else {
+				check(merged.getCount(word) == 2 * bag.getCount(word), "kept " + word);
+			}
+		}
+
+		// null element and retainAll
+		ObjectIntHashBag<String> small = new ObjectIntHashBag<String>();
+		small.add(null, 3);
+		small.add("a", 2);
+		small.add("b");
+		HashBag<String> other = new HashBag<String>();
+		other.add(null);
+		other.add("a", 5);
+		small.retainAll(other);
+		check(small.size() == 3 && small.getCount(null) == 1 && small.getCount("b") == 0, "retainAll");
+		System.out.println(small);
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package iminto.collection;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks off-heap lists in direct memory, with small segments so elements
+ * cross segment boundaries, and lists mapped from a file, which are reopened.
+ * Memory of closed lists must be released without the garbage collector.
+ */
+public class OffHeapArrayTest {
+
+	public static void main(String[] args) throws IOException {
+		OffHeapIntArray ints = new OffHeapIntArray(0, 4096);
+		int[] data = new int[10000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = i;
+		}
+		for (int i = 0; i < 100; i++) {
+			ints.addAll(data);
+			ints.add(-1);
+		}
+		check(ints.size() == 1000100, "size");
+		check(ints.get(10001) == 0 && ints.get(10000) == -1 && ints.get(1000099) == -1, "get");
+		check(ints.sum() == 100L * (9999L * 10000 / 2) - 100, "sum");
+		check(ints.min() == -1 && ints.max() == 9999, "min and max");
+		int[] part = ints.toArray(10001, 10000);
+		for (int i = 0; i < part.length; i++) {
+			check(part[i] == i, "toArray");
+		}
+		ints.removeIf(new IntArrayList.Predicate() {
+			public boolean test(int value) {
+				return value < 0;
+			}
+		});
+		check(ints.size() == 1000000 && ints.indexOf(-1) == -1 && ints.get(10000) == 0, "removeIf");
+		System.out.println("direct: " + ints.size() + " ints in " + ints.getMemorySize() / 1024 + "KB");
+
+		ints.add(0, -5);
+		ints.add(ints.size(), -6);
+		ints.add(5000, -7);
+		check(ints.get(0) == -5 && ints.get(5000) == -7 && ints.get(5001) == 4999 && ints.get(ints.size() - 1) == -6, "insert");
+		ints.removeRange(0, 10002);
+		check(ints.size() == 990001 && ints.get(0) == 0 && ints.get(9999) == 9999 && ints.get(ints.size() - 1) == -6, "removeRange");
+		ints.remove(ints.size() - 1);
+
+		Random random = new Random(7);
+		int[] values = new int[(int) ints.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt();
+			ints.set(i, values[i]);
+		}
+		long start = System.nanoTime();
+		ints.sort();
+		System.out.println("sort: " + ints.size() + " ints in " + (System.nanoTime() - start) / 1000000 + "ms");
+		Arrays.sort(values);
+		check(Arrays.equals(ints.toArray(), values), "sort");
+		check(ints.binarySearch(values[12345]) >= 0 && ints.binarySearch(Integer.MIN_VALUE) < 0, "binarySearch");
+		long used = directMemoryUsed();
+		ints.close();
+		check(directMemoryUsed() <= used - 4000000, "memory not released: " + directMemoryUsed() + " of " + used);
+
+		File file = File.createTempFile("offheap", ".bin");
+		file.deleteOnExit();
+		OffHeapDoubleArray doubles = new OffHeapDoubleArray(file, 1 << 16);
+		for (int i = 0; i < 100000; i++) {
+			doubles.add(i / 2.0);
+		}
+		doubles.close();
+
+		doubles = new OffHeapDoubleArray(file);
+		check(doubles.size() == 100000 && doubles.get(99999) == 99999 / 2.0, "reopen");
+		check(doubles.contains(50.5, 0.1) && doubles.indexOf(50.5, 0.1) == 101, "search");
+		check(doubles.binarySearch(50.5) == 101 && doubles.binarySearch(50.25) == -102, "binarySearch");
+		doubles.add(-1);
+		System.out.println("mapped: " + doubles.size() + " doubles, sum " + doubles.sum() + ", file " + file.length() / 1024 + "KB");
+		doubles.close();
+
+		OffHeapLongArray longs = new OffHeapLongArray();
+		longs.add(Long.MAX_VALUE);
+		longs.set(0, 7);
+		check(longs.get(0) == 7 && longs.remove(0) == 7 && longs.isEmpty(), "long");
+		longs.close();
+		System.out.println("ok");
+	}
+
+	static long directMemoryUsed() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("direct")) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
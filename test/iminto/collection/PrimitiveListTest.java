@@ -0,0 +1,105 @@
+package iminto.collection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks bulk operations of {@link IntArrayList} and {@link DoubleArrayList}
+ * and sums a list in chunks, by several threads.
+ */
+public class PrimitiveListTest {
+
+	public static void main(String[] args) throws Exception {
+		Random random = new Random(1);
+		final IntArrayList ints = new IntArrayList();
+		int[] data = new int[1000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = random.nextInt(1000);
+		}
+		ints.addAll(data, 500, 500);
+		ints.addAll(new IntArrayList(data));
+		check(ints.size() == 1500, "addAll");
+
+		final long[] sum = new long[1];
+		ints.forEach(new IntArrayList.Procedure() {
+			public void apply(int value) {
+				sum[0] += value;
+			}
+		});
+		check(sum[0] == ints.sum(), "forEach");
+
+		ints.removeIf(new IntArrayList.Predicate() {
+			public boolean test(int value) {
+				return value % 2 == 1;
+			}
+		});
+		ints.sort();
+		for (int i = 1; i < ints.size(); i++) {
+			check(ints.get(i - 1) <= ints.get(i) && ints.get(i) % 2 == 0, "sort and removeIf");
+		}
+		check(ints.binarySearch(ints.get(10)) >= 0 && ints.min() == ints.get(0) && ints.max() == ints.get(ints.size() - 1), "search");
+
+		DoubleArrayList doubles = new DoubleArrayList();
+		for (int i = 0; i < 100; i++) {
+			doubles.add(i / 10.0);
+		}
+		doubles.removeIf(new DoubleArrayList.Predicate() {
+			public boolean test(double value) {
+				return value >= 5;
+			}
+		});
+		check(doubles.size() == 50 && doubles.max() == 4.9 && doubles.min() == 0, "double removeIf");
+		check(doubles.binarySearch(2.5) == 25, "double binarySearch");
+
+		// generated lists
+		LongArrayList timestamps = new LongArrayList();
+		for (long time = 1000000000000L; timestamps.size() < 1000; time += random.nextInt(1000)) {
+			timestamps.add(time);
+		}
+		check(timestamps.binarySearch(timestamps.get(500)) == 500 && timestamps.min() == timestamps.get(0), "long list");
+		BooleanArrayList flags = new BooleanArrayList();
+		flags.addAll(new boolean[] {true, false, true});
+		flags.removeIf(new BooleanArrayList.Predicate() {
+			public boolean test(boolean value) {
+				return value == false;
+			}
+		});
+		check(flags.size() == 2 && flags.contains(false) == false, "boolean list");
+
+		// parallel sum over disjoint chunks
+		final IntArrayList large = new IntArrayList(10000000);
+		for (int i = 0; i < 10000000; i++) {
+			large.add(random.nextInt(100));
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Long>> parts = new ArrayList<Future<Long>>();
+		int chunk = (large.size() + threads - 1) / threads;
+		for (int from = 0; from < large.size(); from += chunk) {
+			final int start = from;
+			final int end = Math.min(from + chunk, large.size());
+			parts.add(executor.submit(new Callable<Long>() {
+				public Long call() {
+					return large.sum(start, end);
+				}
+			}));
+		}
+		long total = 0;
+		for (Future<Long> part : parts) {
+			total += part.get();
+		}
+		executor.shutdown();
+		check(total == large.sum(), "parallel sum");
+		System.out.println("ok, sum of " + large.size() + " ints by " + threads + " threads: " + total);
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package iminto.collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares {@link IntIntHashMap} and {@link LongObjectHashMap} with boxed <code>HashMap</code>:
+ * counting of random keys and lookups. Results of both maps are checked to be equal.
+ */
+public class PrimitiveMapBenchmark {
+
+	static final int KEYS = 100000;
+	static final int OPS = 5000000;
+
+	public static void main(String[] args) {
+		int[] data = new int[OPS];
+		Random random = new Random(1);
+		for (int i = 0; i < OPS; i++) {
+			data[i] = random.nextInt(KEYS) - KEYS / 2;
+		}
+
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			IntIntHashMap counts = new IntIntHashMap();
+			for (int key : data) {
+				counts.addTo(key, 1);
+			}
+			long sum = 0;
+			for (int key : data) {
+				sum += counts.get(key);
+			}
+			long primitiveTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			Map<Integer, MutableInteger> boxedCounts = new HashMap<Integer, MutableInteger>();
+			for (int key : data) {
+				MutableInteger count = boxedCounts.get(key);
+				if (count == null) {
+					boxedCounts.put(key, new MutableInteger(1));
+				} else {
+					count.value++;
+				}
+			}
+			long boxedSum = 0;
+			for (int key : data) {
+				boxedSum += boxedCounts.get(key).value;
+			}
+			long boxedTime = System.nanoTime() - start;
+
+			if (sum != boxedSum || counts.size() != boxedCounts.size()) {
+				throw new IllegalStateException("different results");
+			}
+			System.out.println("IntIntHashMap: " + primitiveTime / OPS + " ns/op, HashMap<Integer, MutableInteger>: " + boxedTime / OPS + " ns/op");
+		}
+
+		// random operations checked against HashMap
+		LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+		Map<Long, String> expected = new HashMap<Long, String>();
+		IntHashSet set = new IntHashSet();
+		for (int i = 0; i < 1000000; i++) {
+			long key = random.nextInt(1000) - 500;
+			if (random.nextInt(3) == 0) {
+				boolean contained = expected.containsKey(key);
+				if (equals(map.remove(key), expected.remove(key)) == false || set.remove((int) key) != contained) {
+					throw new IllegalStateException("remove " + key);
+				}
+			} else {
+				String value = "v" + i;
+				if (equals(map.put(key, value), expected.put(key, value)) == false) {
+					throw new IllegalStateException("put " + key);
+				}
+				set.add((int) key);
+			}
+		}
+		if (map.size() != expected.size() || set.size() != expected.size()) {
+			throw new IllegalStateException("size " + map.size() + " != " + expected.size());
+		}
+		for (int slot = map.nextSlot(-1); slot != -1; slot = map.nextSlot(slot)) {
+			if (map.valueAt(slot).equals(expected.get(map.keyAt(slot))) == false || set.contains((int) map.keyAt(slot)) == false) {
+				throw new IllegalStateException("iteration " + map.keyAt(slot));
+			}
+		}
+		System.out.println("random operations: ok, size " + map.size());
+	}
+
+	private static boolean equals(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -0,0 +1,211 @@
+package iminto.collection;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Checks {@link RoaringBitmap} against <code>BitSet</code> on sparse, dense and
+ * consecutive values, and compares memory and intersection speed.
+ */
+public class RoaringBitmapTest {
+
+	static final int RANGE = 10000000;
+
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(1);
+		RoaringBitmap r1 = new RoaringBitmap();
+		RoaringBitmap r2 = new RoaringBitmap();
+		BitSet b1 = new BitSet();
+		BitSet b2 = new BitSet();
+		fill(random, r1, b1);
+		fill(random, r2, b2);
+		check(r1, b1);
+		check(r2, b2);
+
+		// removal, down to array containers
+		for (int i = 0; i < 200000; i++) {
+			int value = random.nextInt(RANGE);
+			check(r1.remove(value) == b1.get(value), "remove " + value);
+			b1.clear(value);
+		}
+		check(r1, b1);
+
+		BitSet and = (BitSet) b1.clone();
+		and.and(b2);
+		BitSet or = (BitSet) b1.clone();
+		or.or(b2);
+		BitSet andNot = (BitSet) b1.clone();
+		andNot.andNot(b2);
+		BitSet xor = (BitSet) b1.clone();
+		xor.xor(b2);
+		for (int round = 0; round < 3; round++) {
+			check(RoaringBitmap.and(r1, r2), and);
+			check(RoaringBitmap.and(r2, r1), and);
+			check(RoaringBitmap.or(r1, r2), or);
+			check(RoaringBitmap.or(r2, r1), or);
+			check(RoaringBitmap.andNot(r1, r2), andNot);
+			check(RoaringBitmap.xor(r1, r2), xor);
+			check(RoaringBitmap.xor(r2, r1), xor);
+			check(RoaringBitmap.andCardinality(r1, r2) == and.cardinality(), "andCardinality");
+			check(RoaringBitmap.andCardinality(r2, r1) == and.cardinality(), "andCardinality");
+			// the same with run containers in one, and then in both bitmaps
+			if (round == 0) {
+				r1.runOptimize();
+			} else {
+				r2.runOptimize();
+			}
+		}
+		check(r1, b1);
+		mixed(random);
+
+		// rank and select
+		for (int i = 0; i < 1000; i++) {
+			int value = random.nextInt(RANGE);
+			long rank = r1.rank(value);
+			check(rank == b1.get(0, value + 1).cardinality(), "rank " + value);
+			if (rank > 0) {
+				check(r1.select(rank - 1) == b1.previousSetBit(value), "select " + rank);
+			}
+		}
+		check(r1.first() == b1.nextSetBit(0) && r1.last() == b1.length() - 1, "first and last");
+
+		// serialization
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		r1.writeTo(out);
+		check(out.size() == r1.getSizeInBytes(), "serialized size");
+		check(RoaringBitmap.readFrom(new ByteArrayInputStream(out.toByteArray())), b1);
+		ByteBuffer buffer = ByteBuffer.allocateDirect((int) r2.getSizeInBytes());
+		r2.writeTo(buffer);
+		buffer.flip();
+		check(RoaringBitmap.readFrom(buffer), b2);
+
+		System.out.println("values: " + r1.cardinality() + ", roaring: " + r1.getSizeInBytes() / 1024
+				+ "KB, BitSet: " + b1.size() / 8 / 1024 + "KB, IntArrayList: " + r1.cardinality() * 4 / 1024 + "KB");
+
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			long count = 0;
+			for (int i = 0; i < 10; i++) {
+				count += RoaringBitmap.and(r1, r2).cardinality();
+			}
+			long roaringTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			long cardinality = 0;
+			for (int i = 0; i < 10; i++) {
+				cardinality += RoaringBitmap.andCardinality(r1, r2);
+			}
+			long cardinalityTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			long bitSetCount = 0;
+			for (int i = 0; i < 10; i++) {
+				BitSet result = (BitSet) b1.clone();
+				result.and(b2);
+				bitSetCount += result.cardinality();
+			}
+			long bitSetTime = System.nanoTime() - start;
+			check(count == bitSetCount && cardinality == bitSetCount, "and count");
+			System.out.println("and: roaring " + roaringTime / 10000 + "us, andCardinality " + cardinalityTime / 10000
+					+ "us, BitSet " + bitSetTime / 10000 + "us");
+		}
+	}
+
+	/**
+	 * Combines array, bitmap and run containers of the same keys, with runs that start
+	 * and end inside words, span whole words and share words with other runs.
+	 */
+	static void mixed(Random random) {
+		for (int round = 0; round < 200; round++) {
+			RoaringBitmap[] roarings = new RoaringBitmap[3];
+			BitSet[] bitSets = new BitSet[3];
+			for (int i = 0; i < 3; i++) {
+				roarings[i] = new RoaringBitmap();
+				bitSets[i] = new BitSet();
+			}
+			for (int i = 0; i < 100; i++) {
+				int value = random.nextInt(65536);
+				roarings[0].add(value);
+				bitSets[0].set(value);
+			}
+			for (int i = 0; i < 10000; i++) {
+				int value = random.nextInt(65536);
+				roarings[1].add(value);
+				bitSets[1].set(value);
+			}
+			for (int i = 0; i < 20; i++) {
+				int from = random.nextInt(65536);
+				int to = Math.min(65536, from + 1 + random.nextInt(i % 2 == 0 ? 100 : 5000));
+				for (int value = from; value < to; value++) {
+					roarings[2].add(value);
+				}
+				bitSets[2].set(from, to);
+			}
+			roarings[2].runOptimize();
+			for (int i = 0; i < 3; i++) {
+				for (int j = 0; j < 3; j++) {
+					RoaringBitmap x1 = roarings[i];
+					RoaringBitmap x2 = roarings[j];
+					BitSet result = (BitSet) bitSets[i].clone();
+					result.and(bitSets[j]);
+					check(RoaringBitmap.and(x1, x2), result);
+					check(RoaringBitmap.andCardinality(x1, x2) == result.cardinality(), "andCardinality " + i + ", " + j);
+					result = (BitSet) bitSets[i].clone();
+					result.or(bitSets[j]);
+					check(RoaringBitmap.or(x1, x2), result);
+					result = (BitSet) bitSets[i].clone();
+					result.andNot(bitSets[j]);
+					check(RoaringBitmap.andNot(x1, x2), result);
+					result = (BitSet) bitSets[i].clone();
+					result.xor(bitSets[j]);
+					check(RoaringBitmap.xor(x1, x2), result);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds sparse random values, dense random values and ranges of consecutive values.
+	 */
+	static void fill(Random random, RoaringBitmap roaring, BitSet bitSet) {
+		for (int i = 0; i < 100000; i++) {
+			int value = random.nextInt(RANGE);
+			roaring.add(value);
+			bitSet.set(value);
+		}
+		int denseStart = random.nextInt(RANGE - 200000);
+		for (int i = 0; i < 100000; i++) {
+			int value = denseStart + random.nextInt(200000);
+			roaring.add(value);
+			bitSet.set(value);
+		}
+		for (int i = 0; i < 20; i++) {
+			int from = random.nextInt(RANGE - 100000);
+			int to = from + random.nextInt(100000);
+			for (int value = from; value < to; value++) {
+				roaring.add(value);
+			}
+			bitSet.set(from, to);
+		}
+	}
+
+	static void check(RoaringBitmap roaring, BitSet bitSet) {
+		check(roaring.cardinality() == bitSet.cardinality(), "cardinality " + roaring.cardinality() + " != " + bitSet.cardinality());
+		int[] values = roaring.toArray();
+		int index = 0;
+		for (int value = bitSet.nextSetBit(0); value >= 0; value = bitSet.nextSetBit(value + 1)) {
+			check(values[index++] == value, "value " + value);
+		}
+		for (int i = 0; i < 1000; i++) {
+			int value = i * (RANGE / 1000) + i;
+			check(roaring.contains(value) == bitSet.get(value), "contains " + value);
+		}
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package iminto.collection;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Checks {@link CountMinSketch} against exact counts of {@link ObjectIntHashBag} and
+ * {@link HyperLogLog} against the real number of distinct values; both are also merged
+ * from partial sketches and written to a stream.
+ */
+public class SketchTest {
+
+	public static void main(String[] args) throws IOException {
+		countMinSketch();
+		hyperLogLog();
+	}
+
+	static void countMinSketch() throws IOException {
+		int words = 100000;
+		int ops = 2000000;
+		CountMinSketch sketch = new CountMinSketch(0.0001, 0.99);
+		CountMinSketch part1 = new CountMinSketch(sketch.getDepth(), sketch.getWidth());
+		CountMinSketch part2 = new CountMinSketch(sketch.getDepth(), sketch.getWidth());
+		ObjectIntHashBag<String> exact = new ObjectIntHashBag<String>();
+		Random random = new Random(1);
+		for (int i = 0; i < ops; i++) {
+			double r = random.nextDouble();
+			String word = "word" + (int) (r * r * words);
+			sketch.add(word);
+			(i % 2 == 0 ? part1 : part2).add(word);
+			exact.add(word);
+		}
+		part1.merge(part2);
+
+		long maxError = (long) (sketch.getRelativeError() * sketch.size());
+		int exceeded = 0;
+		long totalError = 0;
+		for (String word : exact.uniqueSet()) {
+			long estimate = sketch.estimateCount(word);
+			long error = estimate - exact.getCount(word);
+			check(error >= 0, "underestimated " + word);
+			check(part1.estimateCount(word) >= exact.getCount(word), "merged underestimated " + word);
+			if (error > maxError) {
+				exceeded++;
+			}
+			totalError += error;
+		}
+		System.out.println("CountMinSketch " + sketch.getDepth() + "x" + sketch.getWidth() + ", " + sketch.getMemorySize() / 1024 + "KB"
+				+ ": average error " + (double) totalError / exact.uniqueSet().size() + ", bound " + maxError + " exceeded " + exceeded + " times");
+		for (String word : exact.topK(3)) {
+			System.out.println("\t" + word + ": " + exact.getCount(word) + " ~ " + sketch.estimateCount(word));
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		sketch.writeTo(out);
+		CountMinSketch read = CountMinSketch.readFrom(new ByteArrayInputStream(out.toByteArray()));
+		check(read.size() == sketch.size() && read.estimateCount("word1") == sketch.estimateCount("word1"), "serialization");
+		System.out.println("\tserialized: " + out.size() / 1024 + "KB");
+	}
+
+	static void hyperLogLog() throws IOException {
+		for (int cardinality = 10; cardinality <= 10000000; cardinality *= 10) {
+			HyperLogLog hll = new HyperLogLog();
+			HyperLogLog part1 = new HyperLogLog();
+			HyperLogLog part2 = new HyperLogLog();
+			for (long i = 0; i < cardinality; i++) {
+				hll.add(i);
+				hll.add(i);		// duplicates don't count
+				(i % 3 == 0 ? part1 : part2).add(i);
+			}
+			part1.merge(part2);
+			double error = (double) (hll.cardinality() - cardinality) / cardinality;
+			check(Math.abs(error) < 5 * hll.getStandardError(), "estimation error " + error);
+			check(part1.cardinality() == hll.cardinality(), "merge");
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			hll.writeTo(out);
+			HyperLogLog read = HyperLogLog.readFrom(new ByteArrayInputStream(out.toByteArray()));
+			check(read.cardinality() == hll.cardinality(), "serialization");
+
+			System.out.println("HyperLogLog " + cardinality + " ~ " + hll.cardinality() + (hll.isSparse() ? " sparse" : " dense")
+					+ ", error " + String.format("%.3f%%", error * 100) + ", serialized " + out.size() + " bytes");
+		}
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
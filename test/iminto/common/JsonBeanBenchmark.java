@@ -0,0 +1,137 @@
+package iminto.common;
+import iminto.util.common.BeanHelper;
+import iminto.util.common.JsonDecoder;
+import iminto.util.common.JsonEncoder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that beans encoded through cached serializers of {@link JsonEncoder}
+ * decode to the same maps as beans converted by <code>BeanHelper</code>, and
+ * compares the speed of both on a list of beans.
+ */
+public class JsonBeanBenchmark {
+
+	static final int BEANS = 1000000;
+
+	public static class Item {
+		private int id;
+		private long time;
+		private double score;
+		private float ratio;
+		private boolean active;
+		private String name;
+		private List<String> tags;
+		private Item parent;
+
+		public int getId() {
+			return id;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public double getScore() {
+			return score;
+		}
+
+		public float getRatio() {
+			return ratio;
+		}
+
+		public boolean isActive() {
+			return active;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public List<String> getTags() {
+			return tags;
+		}
+
+		public Item getParent() {
+			return parent;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		List<Item> items = new ArrayList<Item>(BEANS);
+		for (int i = 0; i < BEANS; i++) {
+			Item item = new Item();
+			item.id = i - 10;
+			item.time = 1400000000000L + i;
+			item.score = i / 3.0;
+			item.ratio = i / 7f;
+			item.active = i % 2 == 0;
+			item.name = "item \"" + i + "\"";
+			item.tags = Arrays.asList("a", "b");
+			if (i % 10 == 0) {
+				item.parent = new Item();
+			}
+			items.add(item);
+		}
+
+		List<Item> sample = items.subList(0, 1000);
+		Object decoded = JsonDecoder.decode(JsonEncoder.encode(sample));
+		Object expected = JsonDecoder.decode(JsonEncoder.encode(toMaps(sample)));
+		check(decoded != null && decoded.equals(expected), "decoded beans differ");
+		check(JsonEncoder.encode(new Item()).startsWith("{\"active\":false,\"id\":0,\"name\":null,\"parent\":null,"), "order");
+
+		for (int round = 0; round < 3; round++) {
+			CountingOutputStream out = new CountingOutputStream();
+			long start = System.nanoTime();
+			new JsonEncoder().write(items, out);
+			long planTime = System.nanoTime() - start;
+			CountingOutputStream mapOut = new CountingOutputStream();
+			start = System.nanoTime();
+			new JsonEncoder().write(toMaps(items), mapOut);
+			long mapTime = System.nanoTime() - start;
+			System.out.println(BEANS + " beans, " + out.count / 1024 / 1024 + "MB: cached serializers "
+					+ planTime / 1000000 + "ms, BeanHelper maps " + mapTime / 1000000 + "ms");
+		}
+	}
+
+	static List<Object> toMaps(List<Item> items) {
+		List<Object> maps = new ArrayList<Object>(items.size());
+		for (Item item : items) {
+			maps.add(toMap(item));
+		}
+		return maps;
+	}
+
+	static Object toMap(Item item) {
+		if (item == null) {
+			return null;
+		}
+		Map<String, Object> map = BeanHelper.toMapIgnoreClass(item);
+		map.put("parent", toMap(item.parent));
+		return map;
+	}
+
+	static class CountingOutputStream extends OutputStream {
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
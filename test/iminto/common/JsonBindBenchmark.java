@@ -0,0 +1,145 @@
+package iminto.common;
+import iminto.util.common.BeanHelper;
+import iminto.util.common.JsonDecoder;
+import iminto.util.common.JsonEncoder;
+import iminto.util.common.JsonParser;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks binding of JSON to beans with {@link JsonDecoder#decode(String, Class)},
+ * and compares its speed with decoding to maps followed by <code>BeanHelper.fromMap()</code>.
+ */
+public class JsonBindBenchmark {
+
+	static final int BEANS = 200000;
+
+	public enum Level {
+		LOW, HIGH
+	}
+
+	public static class Order {
+		private long id;
+		private String customer;
+		private double total;
+		private boolean paid;
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public String getCustomer() {
+			return customer;
+		}
+
+		public void setCustomer(String customer) {
+			this.customer = customer;
+		}
+
+		public double getTotal() {
+			return total;
+		}
+
+		public void setTotal(double total) {
+			this.total = total;
+		}
+
+		public boolean isPaid() {
+			return paid;
+		}
+
+		public void setPaid(boolean paid) {
+			this.paid = paid;
+		}
+	}
+
+	public static class Account {
+		int id;
+		short flags;
+		float rate;
+		Integer boxed;
+		char initial;
+		Level level;
+		int[] codes;
+		String[] names;
+		List<Order> orders;
+		Set<String> tags;
+		Map<String, Object> extra;
+		Account parent;
+		transient int ignored;
+	}
+
+	public static void main(String[] args) throws IOException {
+		String json = "{\"id\": 7, \"flags\": 3, \"rate\": 0.25, \"boxed\": null, \"initial\": \"x\", \"level\": \"HIGH\","
+				+ " \"codes\": [1, 2, 3], \"names\": [\"a\", null], \"unknown\": {\"a\": [1, {}]}, \"ignored\": 5,"
+				+ " \"orders\": [{\"id\": 1, \"customer\": \"c\\u00e9\", \"total\": 2.5, \"paid\": true}, null],"
+				+ " \"tags\": [\"t1\", \"t2\", \"t1\"], \"extra\": {\"k\": [1]}, \"parent\": {\"id\": 1, \"parent\": null}}";
+		Account account = JsonDecoder.decode(json, Account.class);
+		check(account.id == 7 && account.flags == 3 && account.rate == 0.25f && account.boxed == null, "primitives");
+		check(account.initial == 'x' && account.level == Level.HIGH && account.ignored == 0, "char, enum, transient");
+		check(account.codes.length == 3 && account.codes[2] == 3 && account.names[0].equals("a") && account.names[1] == null, "arrays");
+		Order order = account.orders.get(0);
+		check(order.id == 1 && order.customer.equals("cé") && order.total == 2.5 && order.paid && account.orders.get(1) == null, "orders");
+		check(account.tags.size() == 2 && account.extra.get("k").toString().equals("[1]"), "collections");
+		check(account.parent.id == 1 && account.parent.parent == null, "parent");
+
+		Order[] orders = JsonDecoder.decode("[{\"id\": 1}, {\"id\": 2}]", Order[].class);
+		check(orders.length == 2 && orders[1].id == 2, "bean array");
+		JsonParser parser = JsonDecoder.parser(new StringReader("{\"id\": 1}\n{\"id\": 2}\n"));
+		long ids = 0;
+		while (parser.nextToken() != null) {
+			ids += parser.readValue(Order.class).id;
+		}
+		check(ids == 3, "ndjson");
+		try {
+			JsonDecoder.decode("{\"codes\": {}}", Account.class);
+			throw new IllegalStateException("type mismatch accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// speed
+		List<Order> list = new ArrayList<Order>(BEANS);
+		for (int i = 0; i < BEANS; i++) {
+			Order o = new Order();
+			o.id = i;
+			o.customer = "customer " + i;
+			o.total = i / 4.0;
+			o.paid = i % 3 == 0;
+			list.add(o);
+		}
+		String data = JsonEncoder.encode(list);
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			Order[] bound = JsonDecoder.decode(data, Order[].class);
+			long bindTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			List<?> maps = (List<?>) JsonDecoder.decode(data);
+			Order[] converted = new Order[maps.size()];
+			for (int i = 0; i < converted.length; i++) {
+				@SuppressWarnings("unchecked")
+				Map<String, Object> map = (Map<String, Object>) maps.get(i);
+				converted[i] = (Order) BeanHelper.fromMap(map, Order.class);
+			}
+			long mapTime = System.nanoTime() - start;
+			check(bound.length == BEANS && converted[BEANS - 1].total == bound[BEANS - 1].total
+					&& bound[BEANS - 1].customer.equals(converted[BEANS - 1].customer), "results differ");
+			System.out.println(BEANS + " beans: decode to class " + bindTime / 1000000 + "ms, decode and fromMap "
+					+ mapTime / 1000000 + "ms");
+		}
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
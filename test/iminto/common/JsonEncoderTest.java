@@ -0,0 +1,127 @@
+package iminto.common;
+import iminto.io.FastByteArrayOutputStream;
+import iminto.util.common.JsonEncoder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that streaming output of {@link JsonEncoder} to a writer and to an
+ * output stream, with a small buffer, matches the string output, and streams
+ * a large list with bounded memory.
+ */
+public class JsonEncoderTest {
+
+	public static void main(String[] args) throws IOException {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("name", "json \"streaming\"\n中文 😀");
+		map.put("count", Integer.valueOf(42));
+		map.put("ratio", Double.valueOf(0.5));
+		map.put("flag", Boolean.TRUE);
+		map.put("none", null);
+		map.put("ints", new int[] {1, 2, 3});
+		List<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < 1000; i++) {
+			list.add("item" + i);
+		}
+		map.put("list", list);
+
+		String json = JsonEncoder.encode(map);
+		check(json.startsWith("{\"name\":\"json \\\"streaming\\\"\\n\\u4e2d\\u6587 ") && json.contains("\"ints\":[1,2,3]"), json);
+
+		JsonEncoder encoder = new JsonEncoder(16);
+		check(encoder.getJson(map).equals(json), "small buffer");
+		StringWriter writer = new StringWriter();
+		encoder.write(map, writer);
+		check(writer.toString().equals(json), "writer");
+		FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+		encoder.write(map, out);
+		check(out.toString("UTF-8").equals(json), "output stream");
+		check(new String(JsonEncoder.encodeToBytes(map), "UTF-8").equals(json), "bytes");
+
+		// unescaped characters, surrogate pairs cross the buffer boundary
+		encoder.setEscapeUnicode(false);
+		String text = "\u0001/\u007f 中文 😀😀😀😀😀😀😀😀";
+		String raw = encoder.getJson(text);
+		check(raw.equals("\"\\u0001\\/\\u007f 中文 😀😀😀😀😀😀😀😀\""), raw);
+		out.reset();
+		encoder.write(text, out);
+		check(out.toString("UTF-8").equals(raw), "unescaped output stream");
+
+		// long properties of beans, longer than the smallest buffer
+		List<Object> items = new ArrayList<Object>();
+		for (int i = 0; i < 16; i++) {
+			items.add(new Item(-1234567890123456789L + i, "item" + i));
+		}
+		items.add(new Item(Long.MIN_VALUE, "min"));
+		String itemsJson = encoder.getJson(items);
+		check(itemsJson.startsWith("[{\"id\":-1234567890123456789,\"name\":\"item0\"}") && itemsJson.contains("-9223372036854775808"), itemsJson);
+		out.reset();
+		encoder.write(items, out);
+		check(out.toString("UTF-8").equals(itemsJson), "items output stream");
+
+		// large list, counted as it is written
+		List<Object> rows = new ArrayList<Object>();
+		for (int i = 0; i < 100000; i++) {
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put("id", Integer.valueOf(i));
+			row.put("value", "row " + i);
+			rows.add(row);
+		}
+		CountingOutputStream counter = new CountingOutputStream();
+		long start = System.nanoTime();
+		new JsonEncoder().write(rows, counter);
+		long streamTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		int length = JsonEncoder.encode(rows).length();
+		long stringTime = System.nanoTime() - start;
+		check(counter.count == length, "counted " + counter.count + " != " + length);
+		System.out.println("streamed " + counter.count / 1024 + "KB in " + counter.writes + " writes, "
+				+ streamTime / 1000000 + "ms, string " + stringTime / 1000000 + "ms");
+	}
+
+	public static class Item {
+		private final long id;
+		private final String name;
+
+		Item(long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	static class CountingOutputStream extends OutputStream {
+		long count;
+		int writes;
+
+		@Override
+		public void write(int b) {
+			count++;
+			writes++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+			writes++;
+		}
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package iminto.common;
+import iminto.util.common.JsonEncoder;
+import iminto.util.common.StringHelper;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares string escaping of {@link JsonEncoder} with the previous escaping
+ * through <code>StringHelper.utf8_literal()</code>, on ASCII, CJK and
+ * escape-heavy payloads.
+ */
+public class JsonEscapeBenchmark {
+
+	static final int STRINGS = 20000;
+	static final int ROUNDS = 20;
+
+	public static void main(String[] args) {
+		run("ascii", payload("The quick brown fox jumps over the lazy dog "));
+		run("cjk", payload("敏捷的棕色狐狸跳过了懒狗，"));
+		run("escapes", payload("\"a\"\\b/\n\t\r"));
+	}
+
+	static List<String> payload(String part) {
+		List<String> list = new ArrayList<String>(STRINGS);
+		StringBuilder str = new StringBuilder();
+		for (int i = 0; i < STRINGS; i++) {
+			str.setLength(0);
+			for (int j = 0; j <= i % 8; j++) {
+				str.append(part);
+			}
+			str.append(i);
+			list.add(str.toString());
+		}
+		return list;
+	}
+
+	static void run(String name, List<String> payload) {
+		JsonEncoder encoder = new JsonEncoder();
+		JsonEncoder raw = new JsonEncoder();
+		raw.setEscapeUnicode(false);
+		check(encoder.getJson(payload).equals(literal(payload)), name + " output differs");
+
+		long literalTime = Long.MAX_VALUE;
+		long encoderTime = Long.MAX_VALUE;
+		long rawTime = Long.MAX_VALUE;
+		int length = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			length += literal(payload).length();
+			literalTime = Math.min(literalTime, System.nanoTime() - start);
+			start = System.nanoTime();
+			length += encoder.getJson(payload).length();
+			encoderTime = Math.min(encoderTime, System.nanoTime() - start);
+			start = System.nanoTime();
+			length += raw.getJson(payload).length();
+			rawTime = Math.min(rawTime, System.nanoTime() - start);
+		}
+		System.out.println(name + ": utf8_literal " + literalTime / 1000 + "us, escape table "
+				+ encoderTime / 1000 + "us, without unicode escapes " + rawTime / 1000 + "us (" + length + ")");
+	}
+
+	/**
+	 * Encodes list of strings the way the encoder did before.
+	 */
+	static String literal(List<String> list) {
+		StringBuilder strBuilder = new StringBuilder();
+		strBuilder.append('[');
+		for (int i = 0; i < list.size(); i++) {
+			if (i != 0) {
+				strBuilder.append(',');
+			}
+			strBuilder.append('\"');
+			strBuilder.append(StringHelper.utf8_literal(list.get(i)));
+			strBuilder.append('\"');
+		}
+		strBuilder.append(']');
+		return strBuilder.toString();
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
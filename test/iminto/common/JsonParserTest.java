@@ -0,0 +1,135 @@
+package iminto.common;
+import iminto.util.common.JsonDecoder;
+import iminto.util.common.JsonEncoder;
+import iminto.util.common.JsonParser;
+import iminto.util.common.JsonParser.Token;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Checks {@link JsonParser} against <code>JsonDecoder</code> with buffers of
+ * different sizes, token reading and skipping, and reads a generated NDJSON
+ * stream that is never held in memory.
+ */
+public class JsonParserTest {
+
+	static final String JSON = "// comment\n{\"name\" : \"json \\\"pull\\\" \\u4e2d\\u6587\\n\", /* block\n comment */"
+			+ "\"count\": 42, \"big\": -9007199254740993, \"ratio\": 0.5e1, \"hex\": 0x1F, \"flag\": TRUE, \"none\": null,"
+			+ "\"list\": [1, [\"a\", {\"b\": false}]], \"empty\": \"\"}";
+
+	public static void main(String[] args) throws IOException {
+		Object expected = JsonDecoder.decode(JSON);
+		for (int bufferSize : new int[] {1, 2, 7, 8192}) {
+			JsonParser parser = new JsonParser(new StringReader(JSON), bufferSize);
+			check(parser.nextToken() == Token.START_OBJECT, "start");
+			check(parser.readValue().equals(expected), "value with buffer " + bufferSize);
+			check(parser.nextToken() == null, "end");
+		}
+		check(JsonDecoder.decode(new StringReader(JSON)).equals(expected), "decode reader");
+		check(JsonDecoder.decode(new StringReader("[[], {}, [[]], \"\"]")).toString().equals("[[], {}, [[]], ]"), "empty");
+		check(JsonDecoder.parser(new ByteArrayInputStream(JsonEncoder.encodeToBytes(expected))).values().next().equals(expected), "input stream");
+
+		// tokens
+		JsonParser parser = new JsonParser(new StringReader(JSON), 3);
+		long sum = 0;
+		while (parser.nextToken() != null) {
+			if (parser.getToken() == Token.FIELD_NAME && parser.getString().equals("list")) {
+				check(parser.nextToken() == Token.START_ARRAY, "list");
+				parser.skipChildren();
+				check(parser.getToken() == Token.END_ARRAY && parser.getDepth() == 1, "skip");
+			} else if (parser.getToken() == Token.NUMBER) {
+				sum += parser.getLong();
+			}
+		}
+		check(sum == 42 - 9007199254740993L + 5 + 31, "sum " + sum);
+
+		// errors
+		String[] invalid = {"{\"a\" 1}", "[1, 2", "{\"a\": tru}", "[1 2]", "{1: 2}", "[\"\\x\"]", "]"};
+		for (String json : invalid) {
+			try {
+				JsonDecoder.decode(new StringReader(json));
+				throw new IllegalStateException("invalid json accepted: " + json);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		try {
+			JsonDecoder.decode(new StringReader("{\n  \"a\": [1,\n  }"));
+			throw new IllegalStateException("invalid json accepted");
+		} catch (IllegalArgumentException e) {
+			check(e.getMessage().equals("Unexpected '}' at line 3, column 4"), e.getMessage());
+		}
+
+		// NDJSON
+		final int lines = 1000000;
+		long start = System.nanoTime();
+		parser = JsonDecoder.parser(new LineReader(lines));
+		long count = 0;
+		long ids = 0;
+		for (Iterator<Object> it = parser.values(); it.hasNext();) {
+			Map<?, ?> row = (Map<?, ?>) it.next();
+			ids += (Long) row.get("id");
+			count++;
+		}
+		check(count == lines && ids == (long) lines * (lines - 1) / 2, "ndjson");
+		System.out.println("ndjson: " + count + " lines in " + (System.nanoTime() - start) / 1000000 + "ms");
+
+		// the same with tokens only
+		start = System.nanoTime();
+		parser = JsonDecoder.parser(new LineReader(lines));
+		ids = 0;
+		while (parser.nextToken() != null) {
+			if (parser.getToken() == Token.NUMBER && parser.getDepth() == 1 && parser.isInteger()) {
+				ids += parser.getLong();
+			} else if (parser.getToken() == Token.START_ARRAY) {
+				parser.skipChildren();
+			}
+		}
+		check(ids == (long) lines * (lines - 1) / 2, "ndjson tokens");
+		System.out.println("ndjson tokens: " + (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	/**
+	 * Generates NDJSON lines as they are read.
+	 */
+	static class LineReader extends Reader {
+		final int lines;
+		int line;
+		String current = "";
+		int offset;
+
+		LineReader(int lines) {
+			this.lines = lines;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) {
+			if (offset == current.length()) {
+				if (line == lines) {
+					return -1;
+				}
+				current = "{\"id\":" + line + ",\"name\":\"row " + line + "\",\"tags\":[\"a\",\"b\"],\"score\":" + line / 2.0 + "}\n";
+				offset = 0;
+				line++;
+			}
+			int count = Math.min(len, current.length() - offset);
+			current.getChars(offset, offset + count, cbuf, off);
+			offset += count;
+			return count;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	static void check(boolean condition, String message) {
+		if (condition == false) {
+			throw new IllegalStateException(message);
+		}
+	}
+}